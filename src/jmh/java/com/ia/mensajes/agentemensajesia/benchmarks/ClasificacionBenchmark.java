@@ -0,0 +1,112 @@
+package com.ia.mensajes.agentemensajesia.benchmarks;
+
+import com.ia.mensajes.agentemensajesia.ia.CacheClasificacion;
+import com.ia.mensajes.agentemensajesia.ia.ClasificadorMensajes;
+import com.ia.mensajes.agentemensajesia.ia.ResultadoClasificacion;
+import com.ia.mensajes.agentemensajesia.services.ContextAnalysisService;
+import com.ia.mensajes.agentemensajesia.services.SentimentAnalysisService;
+import com.ia.mensajes.agentemensajesia.services.SpellCheckService;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Camino crítico de la clasificación sobre el corpus sintético (ver CorpusMensajes).
+ * Cada operación procesa el siguiente mensaje del corpus, así se recorren textos distintos.
+ * En clasificar y ortografia, con "memoria=vacia" se vacían antes de cada operación la caché de
+ * clasificación y el memo ortográfico, para medir el coste sin aciertos; con "llena" se mide el
+ * régimen estable.
+ * Con "-prof gc" se ve además la memoria asignada por operación.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ClasificacionBenchmark {
+
+    private static final int TAMANO_CORPUS = 512;
+
+    @Param({"corta", "larga", "plantilla", "errores"})
+    public String tipo;
+
+    private List<String> corpus;
+    private int siguiente;
+
+    private ClasificadorMensajes clasificador;
+    private ContextAnalysisService contexto;
+    private SpellCheckService ortografia;
+    private SentimentAnalysisService sentimiento;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        corpus = CorpusMensajes.generar(tipo, TAMANO_CORPUS, 42);
+        clasificador = ClasificadorMensajes.getInstance();
+        clasificador.init();
+        contexto = ContextAnalysisService.getInstance();
+        ortografia = SpellCheckService.getInstance();
+        sentimiento = SentimentAnalysisService.getInstance();
+    }
+
+    /**
+     * Estado de las memorias de resultados; solo lo usan los benchmarks a los que afecta.
+     */
+    @State(Scope.Thread)
+    public static class Memoria {
+        @Param({"llena", "vacia"})
+        public String memoria;
+
+        @Setup(Level.Invocation)
+        public void vaciar() {
+            if ("vacia".equals(memoria)) {
+                CacheClasificacion.getInstance().vaciar();
+                SpellCheckService.getInstance().vaciarMemo();
+            }
+        }
+    }
+
+    private String siguienteMensaje() {
+        String mensaje = corpus.get(siguiente);
+        siguiente = (siguiente + 1) % corpus.size();
+        return mensaje;
+    }
+
+    @Benchmark
+    public ResultadoClasificacion clasificar(Memoria memoria) {
+        return clasificador.clasificar(siguienteMensaje());
+    }
+
+    @Benchmark
+    public ResultadoClasificacion clasificarSoloRiesgo() {
+        return clasificador.clasificarSoloRiesgo(siguienteMensaje());
+    }
+
+    @Benchmark
+    public boolean esContextoDeRiesgo() {
+        // El método anterior del clasificador: tokeniza la oración para cada término encontrado.
+        return contexto.esContextoDeRiesgo(siguienteMensaje(), "embargo");
+    }
+
+    @Benchmark
+    public Map<String, String> ortografia(Memoria memoria) {
+        return ortografia.findMisspelledWordsWithSuggestions(siguienteMensaje());
+    }
+
+    @Benchmark
+    public String sentimiento() {
+        return sentimiento.getSentiment(siguienteMensaje());
+    }
+}
@@ -0,0 +1,130 @@
+package com.ia.mensajes.agentemensajesia.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Corpus sintético de mensajes de cobranza en español para los benchmarks. Con la misma semilla
+ * siempre genera los mismos mensajes. Tipos:
+ * <ul>
+ *   <li>corta: una oración breve, como un recordatorio por WhatsApp;</li>
+ *   <li>larga: varias oraciones con montos, fechas, términos de alerta y negaciones;</li>
+ *   <li>plantilla: la misma campaña con distinto cliente, monto y fecha;</li>
+ *   <li>errores: mensajes con faltas de ortografía (letras cambiadas u omitidas, sin tildes).</li>
+ * </ul>
+ */
+public final class CorpusMensajes {
+
+    public static final String[] TIPOS = {"corta", "larga", "plantilla", "errores"};
+
+    private static final String[] NOMBRES = {"Juan Pérez", "María Gómez", "Carlos Rodríguez", "Ana Martínez", "Luis Hernández",
+            "Paula Díaz", "Andrés Torres", "Camila Ramírez", "Jorge Castro", "Valentina Rojas"};
+    private static final String[] CORTAS = {
+            "Señor %s, recuerde que su cuota vence hoy.",
+            "Hola %s, tiene un crédito preaprobado con descuento.",
+            "Su pago fue recibido, gracias por su puntualidad.",
+            "Evite el reporte negativo, pague hoy por PSE.",
+            "Le ofrecemos un acuerdo de pago sin recargos.",
+            "No habrá embargo si se pone al día esta semana.",
+            "Escríbanos al WhatsApp para conocer su saldo.",
+            "Su obligación presenta mora de %d días."};
+    private static final String[] ORACIONES_LARGAS = {
+            "Estimado señor %s, le informamos que su obligación presenta un saldo en mora de $ %d.",
+            "Si no realiza el pago antes del %s, su caso pasará a cobro jurídico.",
+            "Se generará un reporte negativo en las centrales de riesgo y podría iniciarse un proceso de embargo.",
+            "No queremos llegar a una demanda, por eso le ofrecemos un acuerdo de pago con descuento.",
+            "Comuníquese al 300 123 4567 o escríbanos al WhatsApp para revisar su caso.",
+            "Recuerde que puede pagar por PSE, Efecty o en cualquier oficina de su banco.",
+            "Nunca compartimos su información con terceros sin su autorización.",
+            "Agradecemos su atención y quedamos atentos a su respuesta."};
+    private static final String[] PLANTILLAS = {
+            "Hola %s, su saldo de $ %d vence el %s. Evite el reporte negativo pagando a tiempo.",
+            "Señor(a) %s: su crédito tiene %d días de mora. Si no paga antes del %s iniciaremos el cobro jurídico.",
+            "Estimado %s, aproveche el descuento del %d%% en su deuda hasta el %s. Escríbanos al WhatsApp."};
+    private static final String[] CON_ERRORES = {
+            "Buenos dias, su informasion fue actualisada correctamente.",
+            "Recuerde qe su cuota bence mañana, evite intereses de mora.",
+            "Señor %s, comuniquese con nosotros para aser un acuerdo de pago.",
+            "Su credito esta aprovado, solo falta la firma del documento.",
+            "Le recordamos que deve pagar antes del biernes para evitar el reporte."};
+
+    private CorpusMensajes() {}
+
+    public static List<String> generar(String tipo, int cantidad, long semilla) {
+        Random aleatorio = new Random(semilla);
+        List<String> mensajes = new ArrayList<>(cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            mensajes.add(generarMensaje(tipo, aleatorio));
+        }
+        return mensajes;
+    }
+
+    private static String generarMensaje(String tipo, Random aleatorio) {
+        switch (tipo) {
+            case "corta":
+                return rellenar(elegir(CORTAS, aleatorio), aleatorio);
+            case "larga": {
+                StringBuilder sb = new StringBuilder();
+                int oraciones = 4 + aleatorio.nextInt(4);
+                for (int i = 0; i < oraciones; i++) {
+                    if (i > 0) sb.append(' ');
+                    sb.append(rellenar(elegir(ORACIONES_LARGAS, aleatorio), aleatorio));
+                }
+                return sb.toString();
+            }
+            case "plantilla":
+                return rellenar(elegir(PLANTILLAS, aleatorio), aleatorio);
+            case "errores":
+                return desordenarLetras(rellenar(elegir(CON_ERRORES, aleatorio), aleatorio), aleatorio);
+            default:
+                throw new IllegalArgumentException("Tipo de mensaje desconocido: " + tipo);
+        }
+    }
+
+    private static String elegir(String[] opciones, Random aleatorio) {
+        return opciones[aleatorio.nextInt(opciones.length)];
+    }
+
+    // Sustituye en orden los %s (nombre o fecha) y %d (número) de la plantilla.
+    private static String rellenar(String plantilla, Random aleatorio) {
+        StringBuilder sb = new StringBuilder(plantilla.length() + 32);
+        boolean nombreUsado = false;
+        for (int i = 0; i < plantilla.length(); i++) {
+            char c = plantilla.charAt(i);
+            if (c != '%' || i + 1 == plantilla.length()) {
+                sb.append(c);
+                continue;
+            }
+            char marca = plantilla.charAt(++i);
+            if (marca == 's') {
+                if (!nombreUsado) {
+                    sb.append(elegir(NOMBRES, aleatorio));
+                    nombreUsado = true;
+                } else {
+                    sb.append(1 + aleatorio.nextInt(28)).append('/').append(1 + aleatorio.nextInt(12));
+                }
+            } else if (marca == 'd') {
+                sb.append(String.format("%,d", (1 + aleatorio.nextInt(500)) * 1000).replace(',', '.'));
+            } else {
+                sb.append(marca);
+            }
+        }
+        return sb.toString();
+    }
+
+    // Intercambia dos letras seguidas de una palabra al azar para añadir otra falta.
+    private static String desordenarLetras(String texto, Random aleatorio) {
+        String[] palabras = texto.split(" ");
+        int indice = aleatorio.nextInt(palabras.length);
+        String palabra = palabras[indice];
+        if (palabra.length() > 4 && Character.isLetter(palabra.charAt(1)) && Character.isLetter(palabra.charAt(2))) {
+            char[] letras = palabra.toCharArray();
+            char temporal = letras[1];
+            letras[1] = letras[2];
+            letras[2] = temporal;
+            palabras[indice] = new String(letras);
+        }
+        return String.join(" ", palabras);
+    }
+}
@@ -0,0 +1,97 @@
+package com.ia.mensajes.agentemensajesia.benchmarks;
+
+import com.ia.mensajes.agentemensajesia.services.LectorExcelStreaming;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Lectura SAX de un Excel con el formato de carga (columnas A, B, H, J y K) generado con el
+ * corpus sintético. Mide solo la lectura, sin clasificar ni guardar.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class LectorExcelBenchmark {
+
+    @Param({"1000", "10000"})
+    public int filas;
+
+    private File archivo;
+
+    @Setup(Level.Trial)
+    public void generarArchivo() throws IOException {
+        archivo = Files.createTempFile("benchmark-lote-", ".xlsx").toFile();
+        try (SXSSFWorkbook libro = new SXSSFWorkbook(100)) {
+            Sheet hoja = libro.createSheet("Mensajes");
+            CellStyle estiloFecha = libro.createCellStyle();
+            estiloFecha.setDataFormat(libro.getCreationHelper().createDataFormat().getFormat("dd/mm/yyyy hh:mm"));
+            Row encabezado = hoja.createRow(0);
+            encabezado.createCell(0).setCellValue("Aplicación");
+            encabezado.createCell(1).setCellValue("Cliente");
+            encabezado.createCell(7).setCellValue("Texto");
+            encabezado.createCell(9).setCellValue("Asesor");
+            encabezado.createCell(10).setCellValue("Fecha");
+
+            int porTipo = (filas + CorpusMensajes.TIPOS.length - 1) / CorpusMensajes.TIPOS.length;
+            int numeroFila = 1;
+            for (String tipo : CorpusMensajes.TIPOS) {
+                List<String> mensajes = CorpusMensajes.generar(tipo, porTipo, 42);
+                for (String mensaje : mensajes) {
+                    if (numeroFila > filas) break;
+                    Row fila = hoja.createRow(numeroFila);
+                    fila.createCell(0).setCellValue("app" + (numeroFila % 3));
+                    fila.createCell(1).setCellValue(100000 + numeroFila);
+                    fila.createCell(7).setCellValue(mensaje);
+                    fila.createCell(9).setCellValue("Asesor " + (numeroFila % 20));
+                    Cell fecha = fila.createCell(10);
+                    fecha.setCellValue(LocalDateTime.of(2024, 1 + numeroFila % 12, 1 + numeroFila % 28, 9, 30));
+                    fecha.setCellStyle(estiloFecha);
+                    numeroFila++;
+                }
+            }
+            try (FileOutputStream salida = new FileOutputStream(archivo)) {
+                libro.write(salida);
+            }
+            libro.dispose();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void borrarArchivo() throws IOException {
+        Files.deleteIfExists(archivo.toPath());
+    }
+
+    @Benchmark
+    public long leer() throws Exception {
+        LongAdder leidas = new LongAdder();
+        new LectorExcelStreaming().leer(archivo, fila -> leidas.increment(), progreso -> { });
+        return leidas.sum();
+    }
+}
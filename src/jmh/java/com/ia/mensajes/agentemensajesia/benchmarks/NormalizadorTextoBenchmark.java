@@ -0,0 +1,65 @@
+package com.ia.mensajes.agentemensajesia.benchmarks;
+
+import com.ia.mensajes.agentemensajesia.util.NormalizadorTexto;
+import java.text.Normalizer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * NormalizadorTexto frente a la normalización anterior (Normalizer.normalize + tres replaceAll),
+ * que se copia aquí tal cual estaba en ClasificadorMensajes y SentimentAnalysisService.
+ * Con "-prof gc" se ve además la memoria asignada por operación.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NormalizadorTextoBenchmark {
+
+    @Param({"corta", "larga"})
+    public String tipo;
+
+    private String texto;
+    private final StringBuilder buffer = new StringBuilder(512);
+
+    @Setup
+    public void preparar() {
+        texto = "corta".equals(tipo)
+                ? "Señor Pérez, su crédito tiene un saldo de $ 350.000."
+                : "Estimado señor Pérez: le informamos que su obligación N° 45821 presenta un saldo en mora de $ 1.250.000. "
+                + "Si no realiza el pago antes del 15/08, su caso pasará a cobro jurídico y se generará un reporte negativo "
+                + "en las centrales de riesgo. ¿Desea un acuerdo de pago? Comuníquese al 300 123 4567. ¡Gracias por su atención!";
+    }
+
+    @Benchmark
+    public String anterior() {
+        String textoNormalizado = texto.toLowerCase();
+        textoNormalizado = Normalizer.normalize(textoNormalizado, Normalizer.Form.NFD)
+                .replaceAll("[\\p{InCombiningDiacriticalMarks}]", "");
+        textoNormalizado = textoNormalizado.replaceAll("[^a-zñ\\s]", " ");
+        return textoNormalizado.trim().replaceAll("\\s+", " ");
+    }
+
+    @Benchmark
+    public String normalizador() {
+        return NormalizadorTexto.normalizar(texto);
+    }
+
+    @Benchmark
+    public CharSequence normalizadorConBuffer() {
+        NormalizadorTexto.normalizar(texto, buffer);
+        return buffer;
+    }
+}
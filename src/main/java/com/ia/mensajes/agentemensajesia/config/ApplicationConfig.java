@@ -1,13 +1,16 @@
 package com.ia.mensajes.agentemensajesia.config;
 
+import com.ia.mensajes.agentemensajesia.resources.AdminResource;
 import com.ia.mensajes.agentemensajesia.resources.AuthResource;
 import com.ia.mensajes.agentemensajesia.resources.MensajeResource;
+import com.ia.mensajes.agentemensajesia.resources.SaludResource;
 import com.ia.mensajes.agentemensajesia.resources.UsuarioResource;
 import com.ia.mensajes.agentemensajesia.security.AuthenticationFilter;
 import jakarta.ws.rs.core.Application;
 import java.util.HashSet;
 import java.util.Set;
 import org.glassfish.jersey.media.multipart.MultiPartFeature;
+import org.glassfish.jersey.media.sse.SseFeature;
 
 public class ApplicationConfig extends Application {
     @Override
@@ -16,8 +19,11 @@ public class ApplicationConfig extends Application {
         classes.add(AuthResource.class);
         classes.add(UsuarioResource.class);
         classes.add(MensajeResource.class);
+        classes.add(AdminResource.class);
+        classes.add(SaludResource.class);
         classes.add(AuthenticationFilter.class);
         classes.add(MultiPartFeature.class);
+        classes.add(SseFeature.class);
         return classes;
     }
 }
\ No newline at end of file
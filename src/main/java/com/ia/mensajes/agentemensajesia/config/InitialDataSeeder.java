@@ -1,7 +1,13 @@
 package com.ia.mensajes.agentemensajesia.config;
 
 import com.ia.mensajes.agentemensajesia.ia.ClasificadorMensajes;
+import com.ia.mensajes.agentemensajesia.ia.EjecutorClasificacion;
 import com.ia.mensajes.agentemensajesia.model.Usuario;
+import com.ia.mensajes.agentemensajesia.services.DifusorProgresoLotes;
+import com.ia.mensajes.agentemensajesia.services.PlanificadorExportaciones;
+import com.ia.mensajes.agentemensajesia.services.PlanificadorLotes;
+import com.ia.mensajes.agentemensajesia.services.RegistroTrabajos;
+import com.ia.mensajes.agentemensajesia.services.RevisorOrtografiaDiferida;
 import com.ia.mensajes.agentemensajesia.util.JPAUtil;
 import com.ia.mensajes.agentemensajesia.util.PasswordHasherUtil;
 import jakarta.persistence.EntityManager;
@@ -18,12 +24,18 @@ public class InitialDataSeeder implements ServletContextListener {
     public void contextInitialized(ServletContextEvent sce) {
         System.out.println("INICIADOR: La aplicación web ha arrancado.");
 
-        // Inicia la carga de la IA en un hilo separado para no bloquear el despliegue.
-        new Thread(() -> {
-            System.out.println("INICIADOR: Iniciando la carga de modelos de IA en segundo plano...");
-            ClasificadorMensajes.getInstance().init(); // Llama al método de inicialización.
-            System.out.println("INICIADOR: Modelos de IA cargados y listos para usar.");
-        }).start();
+        // La carga de la IA corre en segundo plano para no bloquear el despliegue; /salud/listo
+        // responde 503 y los lotes esperan en PlanificadorLotes hasta que termina.
+        System.out.println("INICIADOR: Iniciando la carga de modelos de IA en segundo plano...");
+        ClasificadorMensajes.getInstance().iniciar()
+                .thenRun(() -> {
+                    System.out.println("INICIADOR: Modelos de IA cargados y listos para usar.");
+                    RevisorOrtografiaDiferida.getInstance().retomarPendientes();
+                })
+                .exceptionally(falla -> {
+                    System.err.println("INICIADOR: Los modelos de IA no se pudieron cargar: " + falla.getMessage());
+                    return null;
+                });
         
         System.out.println("INICIADOR: Verificando datos iniciales de la base de datos...");
         EntityManager em = null;
@@ -65,6 +77,13 @@ public class InitialDataSeeder implements ServletContextListener {
 
     @Override
     public void contextDestroyed(ServletContextEvent sce) {
+        // Primero se drenan los lotes: todavía necesitan el clasificador y la BD.
+        PlanificadorLotes.getInstance().shutdown();
+        PlanificadorExportaciones.getInstance().shutdown();
+        DifusorProgresoLotes.getInstance().shutdown();
+        RevisorOrtografiaDiferida.getInstance().shutdown();
+        EjecutorClasificacion.getInstance().shutdown();
+        RegistroTrabajos.getInstance().shutdown();
         JPAUtil.shutdown();
         System.out.println("INICIADOR: La aplicación se ha detenido. EntityManagerFactory cerrado.");
     }
@@ -0,0 +1,78 @@
+package com.ia.mensajes.agentemensajesia.dao;
+
+import com.ia.mensajes.agentemensajesia.model.Mensaje;
+
+/**
+ * Escritor de mensajes para cargas masivas. Los mensajes se envían a la BD a medida que se
+ * escriben y se confirman por tramos, así quien produce los mensajes no tiene que acumularlos
+ * en una lista. Al cerrarlo se confirma el último tramo.
+ */
+public abstract class EscritorMensajes implements AutoCloseable {
+
+    private final long inicioNanos = System.nanoTime();
+    private long filasEscritas = 0;
+    private boolean fallido = false;
+
+    public final void escribir(Mensaje mensaje) {
+        try {
+            escribirFila(mensaje);
+            filasEscritas++;
+        } catch (Exception e) {
+            fallido = true;
+            throw new RuntimeException("Error al escribir el mensaje en la carga masiva", e);
+        }
+    }
+
+    /**
+     * Confirma lo escrito hasta ahora sin esperar a completar el tramo, p. ej. cuando
+     * llegan pocos mensajes y se quiere que los ya escritos sean visibles.
+     */
+    public final void confirmarTramo() {
+        try {
+            confirmar();
+        } catch (Exception e) {
+            fallido = true;
+            throw new RuntimeException("Error al confirmar el tramo de la carga masiva", e);
+        }
+    }
+
+    @Override
+    public final void close() {
+        try {
+            if (fallido) {
+                descartar();
+            } else {
+                confirmar();
+                registrarRendimiento();
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Error al cerrar la carga masiva de mensajes", e);
+        } finally {
+            liberar();
+        }
+    }
+
+    public long getFilasEscritas() {
+        return filasEscritas;
+    }
+
+    protected abstract String getNombreModo();
+
+    protected abstract void escribirFila(Mensaje mensaje) throws Exception;
+
+    /** Confirma lo pendiente del último tramo. */
+    protected abstract void confirmar() throws Exception;
+
+    /** Deshace lo pendiente del tramo en curso (los tramos ya confirmados se conservan). */
+    protected abstract void descartar();
+
+    /** Libera la conexión o el EntityManager. */
+    protected abstract void liberar();
+
+    private void registrarRendimiento() {
+        double segundos = (System.nanoTime() - inicioNanos) / 1_000_000_000.0;
+        long filasPorSegundo = segundos > 0 ? Math.round(filasEscritas / segundos) : filasEscritas;
+        System.out.println("MensajeDAO [" + getNombreModo() + "]: " + filasEscritas + " mensajes guardados en "
+                + String.format("%.2f", segundos) + " s (" + filasPorSegundo + " filas/s).");
+    }
+}
@@ -0,0 +1,177 @@
+package com.ia.mensajes.agentemensajesia.dao;
+
+import com.ia.mensajes.agentemensajesia.model.Mensaje;
+import com.ia.mensajes.agentemensajesia.util.JPAUtil;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayDeque;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+/**
+ * Escritura con COPY ... FROM STDIN de PostgreSQL (formato CSV). Cada mensaje se codifica y
+ * se envía al servidor en cuanto se escribe; cada filasPorTransaccion filas se cierra el COPY
+ * y se confirma, para que el lote sea visible por tramos mientras se sigue cargando.
+ */
+class EscritorMensajesCopy extends EscritorMensajes {
+
+    private static final String SQL_COPY = "COPY mensaje (id, aplicacion, idcliente, texto, nombreasesor, "
+            + "fechahoramensaje, clasificacion, observacion, lote, fechaprocesamiento, plantilla_id, ortografia_pendiente) FROM STDIN WITH (FORMAT csv)";
+
+    private final Connection conexion;
+    private final boolean autoCommitOriginal;
+    private final PGConnection pgConexion;
+    private final int filasPorTransaccion;
+    private final StringBuilder linea = new StringBuilder(512);
+
+    private CopyIn copyActual;
+    private int filasEnTransaccion = 0;
+    // Bloques de ids reservados en mensaje_seq (extremo superior de cada uno) y bloque en uso: [siguienteId, ultimoIdDelBloque].
+    private final ArrayDeque<Long> bloquesReservados = new ArrayDeque<>();
+    private long siguienteId = 1;
+    private long ultimoIdDelBloque = 0;
+
+    /**
+     * @throws SQLException Si la conexión no es de PostgreSQL o no admite COPY; el DAO
+     *                      usa entonces la escritura por JPA.
+     */
+    EscritorMensajesCopy(int filasPorTransaccion) throws SQLException {
+        this.filasPorTransaccion = filasPorTransaccion;
+        this.conexion = JPAUtil.obtenerConexionJdbc();
+        try {
+            this.pgConexion = conexion.unwrap(PGConnection.class);
+            this.autoCommitOriginal = conexion.getAutoCommit();
+            conexion.setAutoCommit(false);
+        } catch (SQLException e) {
+            JPAUtil.liberarConexionJdbc(conexion);
+            throw e;
+        }
+    }
+
+    @Override
+    protected String getNombreModo() {
+        return "copy";
+    }
+
+    @Override
+    protected void escribirFila(Mensaje mensaje) throws SQLException {
+        if (copyActual == null) {
+            // Mientras el COPY está abierto la conexión no admite otras sentencias,
+            // así que los ids de todo el tramo se reservan antes de abrirlo.
+            reservarIds(filasPorTransaccion);
+            copyActual = pgConexion.getCopyAPI().copyIn(SQL_COPY);
+        }
+        mensaje.setId(siguienteId());
+
+        linea.setLength(0);
+        agregarValor(mensaje.getId());
+        agregarTexto(mensaje.getAplicacion());
+        agregarTexto(mensaje.getIdCliente());
+        agregarTexto(mensaje.getTexto());
+        agregarTexto(mensaje.getNombreAsesor());
+        agregarValor(mensaje.getFechaHoraMensaje());
+        agregarTexto(mensaje.getClasificacion());
+        agregarTexto(mensaje.getObservacion());
+        agregarTexto(mensaje.getLote());
+        agregarValor(mensaje.getFechaProcesamiento() != null ? new Timestamp(mensaje.getFechaProcesamiento().getTime()) : null);
+        agregarTexto(mensaje.getPlantillaId());
+        agregarValor(mensaje.isOrtografiaPendiente());
+        linea.setCharAt(linea.length() - 1, '\n');
+
+        byte[] bytes = linea.toString().getBytes(StandardCharsets.UTF_8);
+        copyActual.writeToCopy(bytes, 0, bytes.length);
+
+        filasEnTransaccion++;
+        if (filasEnTransaccion >= filasPorTransaccion) {
+            confirmar();
+        }
+    }
+
+    /**
+     * Reserva los ids igual que el optimizador "pooled" de Hibernate: cada nextval de
+     * mensaje_seq (que avanza de Mensaje.INCREMENTO_SECUENCIA en Mensaje.INCREMENTO_SECUENCIA)
+     * es el extremo superior de un bloque propio, así COPY y JPA nunca repiten ids.
+     */
+    private void reservarIds(int cantidad) throws SQLException {
+        long disponibles = (ultimoIdDelBloque - siguienteId + 1) + (long) bloquesReservados.size() * Mensaje.INCREMENTO_SECUENCIA;
+        if (disponibles >= cantidad) return;
+        int bloques = (int) ((cantidad - disponibles + Mensaje.INCREMENTO_SECUENCIA - 1) / Mensaje.INCREMENTO_SECUENCIA);
+        try (Statement st = conexion.createStatement();
+             ResultSet rs = st.executeQuery("SELECT nextval('mensaje_seq') FROM generate_series(1, " + (bloques + 1) + ")")) {
+            while (rs.next()) {
+                long valor = rs.getLong(1);
+                // El primer valor de la secuencia (1) no define un bloque completo: se descarta.
+                if (valor - Mensaje.INCREMENTO_SECUENCIA + 1 >= 1) {
+                    bloquesReservados.add(valor);
+                }
+            }
+        }
+    }
+
+    private long siguienteId() {
+        if (siguienteId > ultimoIdDelBloque) {
+            ultimoIdDelBloque = bloquesReservados.remove();
+            siguienteId = ultimoIdDelBloque - Mensaje.INCREMENTO_SECUENCIA + 1;
+        }
+        return siguienteId++;
+    }
+
+    private void agregarValor(Object valor) {
+        if (valor != null) {
+            linea.append(valor);
+        }
+        linea.append(',');
+    }
+
+    // En CSV un campo vacío sin comillas es NULL; los textos siempre van entre comillas.
+    private void agregarTexto(String valor) {
+        if (valor != null) {
+            linea.append('"');
+            for (int i = 0; i < valor.length(); i++) {
+                char c = valor.charAt(i);
+                if (c == '"') linea.append('"');
+                linea.append(c);
+            }
+            linea.append('"');
+        }
+        linea.append(',');
+    }
+
+    @Override
+    protected void confirmar() throws SQLException {
+        if (copyActual != null) {
+            copyActual.endCopy();
+            copyActual = null;
+        }
+        conexion.commit();
+        filasEnTransaccion = 0;
+    }
+
+    @Override
+    protected void descartar() {
+        try {
+            if (copyActual != null && copyActual.isActive()) {
+                copyActual.cancelCopy();
+            }
+            conexion.rollback();
+        } catch (SQLException e) {
+            System.err.println("Error al deshacer la carga COPY: " + e.getMessage());
+        } finally {
+            copyActual = null;
+        }
+    }
+
+    @Override
+    protected void liberar() {
+        try {
+            conexion.setAutoCommit(autoCommitOriginal);
+        } catch (SQLException e) {
+            System.err.println("No se pudo restaurar el autocommit de la conexión: " + e.getMessage());
+        }
+        JPAUtil.liberarConexionJdbc(conexion);
+    }
+}
@@ -0,0 +1,69 @@
+package com.ia.mensajes.agentemensajesia.dao;
+
+import com.ia.mensajes.agentemensajesia.model.Mensaje;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+
+/**
+ * Escritura por JPA con lotes JDBC. Cada tamanoLoteJdbc filas se hace flush (que envía el
+ * lote) y clear (para que el contexto de persistencia no crezca), y cada filasPorTransaccion
+ * filas se confirma la transacción.
+ */
+class EscritorMensajesJpa extends EscritorMensajes {
+
+    private final EntityManager em;
+    private final int tamanoLoteJdbc;
+    private final int filasPorTransaccion;
+    private int filasEnTransaccion = 0;
+
+    EscritorMensajesJpa(EntityManager em, int tamanoLoteJdbc, int filasPorTransaccion) {
+        this.em = em;
+        this.tamanoLoteJdbc = tamanoLoteJdbc;
+        this.filasPorTransaccion = filasPorTransaccion;
+        em.unwrap(Session.class).setJdbcBatchSize(tamanoLoteJdbc);
+    }
+
+    @Override
+    protected String getNombreModo() {
+        return "jpa";
+    }
+
+    @Override
+    protected void escribirFila(Mensaje mensaje) {
+        if (!em.getTransaction().isActive()) {
+            em.getTransaction().begin();
+        }
+        em.persist(mensaje);
+        filasEnTransaccion++;
+        if (filasEnTransaccion % tamanoLoteJdbc == 0) {
+            em.flush();
+            em.clear();
+        }
+        if (filasEnTransaccion >= filasPorTransaccion) {
+            confirmar();
+        }
+    }
+
+    @Override
+    protected void confirmar() {
+        if (em.getTransaction().isActive()) {
+            em.getTransaction().commit();
+            em.clear();
+        }
+        filasEnTransaccion = 0;
+    }
+
+    @Override
+    protected void descartar() {
+        if (em.getTransaction() != null && em.getTransaction().isActive()) {
+            em.getTransaction().rollback();
+        }
+    }
+
+    @Override
+    protected void liberar() {
+        if (em.isOpen()) {
+            em.close();
+        }
+    }
+}
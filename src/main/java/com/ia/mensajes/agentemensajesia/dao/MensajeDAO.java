@@ -2,35 +2,59 @@ package com.ia.mensajes.agentemensajesia.dao;
 
 import com.ia.mensajes.agentemensajesia.model.AsesorStats;
 import com.ia.mensajes.agentemensajesia.model.EstadisticaMensaje;
+import com.ia.mensajes.agentemensajesia.model.FiltroExportacion;
 import com.ia.mensajes.agentemensajesia.model.Mensaje;
+import com.ia.mensajes.agentemensajesia.model.TrabajoLote;
+import com.ia.mensajes.agentemensajesia.util.ConfiguracionUtil;
 import com.ia.mensajes.agentemensajesia.util.JPAUtil;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.NoResultException;
+import jakarta.persistence.Query;
+import jakarta.persistence.TemporalType;
 import jakarta.persistence.TypedQuery;
+import java.util.Date;
 import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.query.SelectionQuery;
 
 public class MensajeDAO {
 
+    // Por defecto igual a hibernate.jdbc.batch_size de persistence.xml; se fija en cada sesión de carga.
+    private static final int TAMANO_LOTE_JDBC = ConfiguracionUtil.leerEnteroPositivo("DB_BATCH_SIZE", 50);
+    private static final int FILAS_POR_TRANSACCION = ConfiguracionUtil.leerEnteroPositivo("DB_FILAS_POR_TRANSACCION", 1000);
+    private static final int FILAS_POR_LECTURA = ConfiguracionUtil.leerEnteroPositivo("EXPORTACION_FETCH", 500);
+    private static final String MODO_CARGA_MASIVA = ConfiguracionUtil.leerTexto("CARGA_MASIVA_MODO", "jpa");
+
     private EntityManager getEntityManager() {
         return JPAUtil.getEntityManagerFactory().createEntityManager();
     }
 
+    /**
+     * Abre un escritor para cargas masivas. Con CARGA_MASIVA_MODO=copy usa COPY de PostgreSQL;
+     * si COPY no está disponible (u otro modo está configurado) usa JPA con lotes JDBC.
+     * @return El escritor; se debe cerrar para confirmar el último tramo.
+     */
+    public EscritorMensajes abrirEscritorMasivo() {
+        if ("copy".equalsIgnoreCase(MODO_CARGA_MASIVA)) {
+            try {
+                return new EscritorMensajesCopy(FILAS_POR_TRANSACCION);
+            } catch (Exception | LinkageError e) {
+                System.err.println("ADVERTENCIA: COPY no disponible (" + e.getMessage() + "). Se usará la carga por JPA.");
+            }
+        }
+        return new EscritorMensajesJpa(getEntityManager(), TAMANO_LOTE_JDBC, FILAS_POR_TRANSACCION);
+    }
+
     public void guardarVarios(List<Mensaje> mensajes) {
-        EntityManager em = getEntityManager();
-        try {
-            em.getTransaction().begin();
+        if (mensajes.isEmpty()) return;
+        try (EscritorMensajes escritor = new EscritorMensajesJpa(getEntityManager(), TAMANO_LOTE_JDBC, FILAS_POR_TRANSACCION)) {
             for (Mensaje mensaje : mensajes) {
-                em.persist(mensaje);
-            }
-            em.getTransaction().commit();
-        } catch (Exception e) {
-            if (em.getTransaction() != null && em.getTransaction().isActive()) {
-                em.getTransaction().rollback();
-            }
-            e.printStackTrace();
-        } finally {
-            if (em != null && em.isOpen()) {
-                em.close();
+                escritor.escribir(mensaje);
             }
         }
     }
@@ -67,20 +91,87 @@ public class MensajeDAO {
         }
     }
 
-    public List<Mensaje> buscarTodos() {
+    /**
+     * Recorre los mensajes del filtro, del más reciente al más antiguo (por id), con un cursor de
+     * solo avance, sin cargarlos todos en memoria: una sesión sin estado (sin caché de primer
+     * nivel) que trae EXPORTACION_FETCH filas por viaje. PostgreSQL solo usa un cursor en el
+     * servidor dentro de una transacción.
+     * @return El número de mensajes recorridos.
+     */
+    public long recorrerMensajes(FiltroExportacion filtro, Consumer<Mensaje> consumidor) {
+        StatelessSession sesion = JPAUtil.getEntityManagerFactory().unwrap(SessionFactory.class).openStatelessSession();
+        try {
+            sesion.beginTransaction();
+            StringBuilder hql = new StringBuilder("FROM Mensaje m WHERE 1 = 1");
+            agregarFiltroExportacion(hql, filtro);
+            hql.append(" ORDER BY m.id DESC");
+            SelectionQuery<Mensaje> query = sesion.createSelectionQuery(hql.toString(), Mensaje.class).setFetchSize(FILAS_POR_LECTURA);
+            asignarFiltroExportacion(filtro, query::setParameter);
+            long recorridos = 0;
+            try (ScrollableResults<Mensaje> filas = query.scroll(ScrollMode.FORWARD_ONLY)) {
+                while (filas.next()) {
+                    consumidor.accept(filas.get());
+                    recorridos++;
+                }
+            }
+            sesion.getTransaction().commit();
+            return recorridos;
+        } catch (RuntimeException e) {
+            if (sesion.getTransaction() != null && sesion.getTransaction().isActive()) {
+                sesion.getTransaction().rollback();
+            }
+            throw e;
+        } finally {
+            sesion.close();
+        }
+    }
+
+    /**
+     * Resume el estado de los datos del filtro en una cadena que cambia cuando cambia lo que se
+     * exportaría: el último fechaProcesamiento cubre los mensajes nuevos, el total los borrados y
+     * el número con ortografía pendiente la revisión diferida, que reescribe mensajes existentes
+     * sin tocar su fecha de procesamiento.
+     */
+    public String huellaDatos(FiltroExportacion filtro) {
         EntityManager em = getEntityManager();
         try {
-            return em.createQuery("SELECT m FROM Mensaje m ORDER BY m.id DESC", Mensaje.class).getResultList();
+            StringBuilder jpql = new StringBuilder("SELECT MAX(m.fechaProcesamiento), COUNT(m), "
+                    + "SUM(CASE WHEN m.ortografiaPendiente = true THEN 1 ELSE 0 END) FROM Mensaje m WHERE 1 = 1");
+            agregarFiltroExportacion(jpql, filtro);
+            TypedQuery<Object[]> query = em.createQuery(jpql.toString(), Object[].class);
+            asignarFiltroExportacion(filtro, query::setParameter);
+            Object[] fila = query.getSingleResult();
+            long ultimaFecha = fila[0] != null ? ((Date) fila[0]).getTime() : 0L;
+            long pendientes = fila[2] != null ? ((Number) fila[2]).longValue() : 0L;
+            return ultimaFecha + ":" + fila[1] + ":" + pendientes;
         } finally {
             if (em != null) em.close();
         }
     }
-    
+
+    private static void agregarFiltroExportacion(StringBuilder jpql, FiltroExportacion filtro) {
+        agregarFiltros(jpql, filtro.getAsesor(), filtro.getLoteId(), null);
+        if (filtro.getDesde() != null) jpql.append(" AND m.fechaHoraMensaje >= :desde");
+        if (filtro.getHasta() != null) jpql.append(" AND m.fechaHoraMensaje < :hasta");
+    }
+
+    // Sirve para TypedQuery y para SelectionQuery de Hibernate, que no comparten interfaz.
+    private static void asignarFiltroExportacion(FiltroExportacion filtro, BiConsumer<String, Object> asignar) {
+        if (filtro.getAsesor() != null && !filtro.getAsesor().isEmpty()) asignar.accept("asesor", filtro.getAsesor());
+        if (filtro.getLoteId() != null) asignar.accept("loteId", filtro.getLoteId());
+        if (filtro.getDesde() != null) asignar.accept("desde", filtro.getDesde());
+        if (filtro.getHasta() != null) asignar.accept("hasta", filtro.getHasta());
+    }
+
+    /**
+     * Total de mensajes desde la tabla agregada (ver V3__estadistica_mensaje_agregada.sql): suma
+     * unas pocas filas en lugar de contar la tabla de mensajes.
+     */
     public EstadisticaMensaje getEstadisticas() {
         EntityManager em = getEntityManager();
         try {
-            Long total = em.createQuery("SELECT count(m) FROM Mensaje m", Long.class).getSingleResult();
-            return new EstadisticaMensaje(total != null ? total : 0L, 0.0, 0.0);
+            Number total = (Number) em.createNativeQuery("SELECT COALESCE(SUM(total), 0) FROM estadistica_mensaje_agregada").getSingleResult();
+            return new EstadisticaMensaje(total != null ? total.longValue() : 0L, 0.0, 0.0);
         } catch (NoResultException e) {
             return new EstadisticaMensaje(0L, 0.0, 0.0);
         } finally {
@@ -149,6 +240,68 @@ public class MensajeDAO {
         }
     }
 
+    /**
+     * Página por clave (keyset): los mensajes anteriores a (fechaProcesamiento, id) en orden
+     * descendente. A diferencia de OFFSET, el coste no crece con la profundidad de la página
+     * porque la BD salta directamente a la clave por el índice (fechaProcesamiento, id).
+     * @param asesorFiltro Opcional.
+     * @param loteId Opcional.
+     * @param clasificacion Opcional; con "Alerta" usa el índice parcial de alertas.
+     * @param desdeFecha Clave del último mensaje de la página anterior; null para la primera página.
+     */
+    public List<Mensaje> buscarDesdeCursor(String asesorFiltro, String loteId, String clasificacion, Date desdeFecha, Long desdeId, int limite) {
+        EntityManager em = getEntityManager();
+        try {
+            StringBuilder jpql = new StringBuilder("SELECT m FROM Mensaje m WHERE m.fechaProcesamiento IS NOT NULL");
+            agregarFiltros(jpql, asesorFiltro, loteId, clasificacion);
+            if (desdeFecha != null) jpql.append(" AND (m.fechaProcesamiento, m.id) < (:desdeFecha, :desdeId)");
+            jpql.append(" ORDER BY m.fechaProcesamiento DESC, m.id DESC");
+            TypedQuery<Mensaje> query = em.createQuery(jpql.toString(), Mensaje.class);
+            asignarFiltros(query, asesorFiltro, loteId, clasificacion);
+            if (desdeFecha != null) {
+                query.setParameter("desdeFecha", desdeFecha, TemporalType.TIMESTAMP);
+                query.setParameter("desdeId", desdeId);
+            }
+            query.setMaxResults(limite);
+            return query.getResultList();
+        } finally {
+            if (em != null) em.close();
+        }
+    }
+
+    /**
+     * Total de mensajes del filtro, desde la tabla agregada, que tiene la misma información por
+     * asesor, lote y clasificación con muchas menos filas.
+     */
+    public long contarMensajes(String asesorFiltro, String loteId, String clasificacion) {
+        EntityManager em = getEntityManager();
+        try {
+            StringBuilder sql = new StringBuilder("SELECT COALESCE(SUM(total), 0) FROM estadistica_mensaje_agregada WHERE 1 = 1");
+            if (asesorFiltro != null && !asesorFiltro.isEmpty()) sql.append(" AND asesor = :asesor");
+            if (loteId != null) sql.append(" AND lote = :loteId");
+            if (clasificacion != null && !clasificacion.isEmpty()) sql.append(" AND clasificacion = :clasificacion");
+            Query query = em.createNativeQuery(sql.toString());
+            if (asesorFiltro != null && !asesorFiltro.isEmpty()) query.setParameter("asesor", asesorFiltro);
+            if (loteId != null) query.setParameter("loteId", loteId);
+            if (clasificacion != null && !clasificacion.isEmpty()) query.setParameter("clasificacion", clasificacion);
+            return ((Number) query.getSingleResult()).longValue();
+        } finally {
+            if (em != null) em.close();
+        }
+    }
+
+    private static void agregarFiltros(StringBuilder jpql, String asesorFiltro, String loteId, String clasificacion) {
+        if (asesorFiltro != null && !asesorFiltro.isEmpty()) jpql.append(" AND m.nombreAsesor = :asesor");
+        if (loteId != null) jpql.append(" AND m.lote = :loteId");
+        if (clasificacion != null && !clasificacion.isEmpty()) jpql.append(" AND m.clasificacion = :clasificacion");
+    }
+
+    private static void asignarFiltros(TypedQuery<?> query, String asesorFiltro, String loteId, String clasificacion) {
+        if (asesorFiltro != null && !asesorFiltro.isEmpty()) query.setParameter("asesor", asesorFiltro);
+        if (loteId != null) query.setParameter("loteId", loteId);
+        if (clasificacion != null && !clasificacion.isEmpty()) query.setParameter("clasificacion", clasificacion);
+    }
+
     public void borrarTodos() {
         EntityManager em = getEntityManager();
         try {
@@ -166,6 +319,103 @@ public class MensajeDAO {
         }
     }
 
+    /**
+     * Borra los mensajes de cargas anteriores, pero no los de lotes que aún se están
+     * procesando (en esta u otra réplica), que pueden estar escribiéndose a la vez.
+     */
+    public void borrarTodosSalvoLotesEnCurso() {
+        EntityManager em = getEntityManager();
+        try {
+            em.getTransaction().begin();
+            em.createQuery("DELETE FROM Mensaje m WHERE m.lote IS NULL OR m.lote NOT IN "
+                    + "(SELECT t.loteId FROM TrabajoLote t WHERE t.status NOT IN (:finales))")
+                    .setParameter("finales", TrabajoLote.ESTADOS_FINALES)
+                    .executeUpdate();
+            em.getTransaction().commit();
+        } catch (Exception e) {
+            if (em.getTransaction() != null && em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            e.printStackTrace();
+            throw new RuntimeException("Error al borrar los mensajes anteriores en DAO", e);
+        } finally {
+            if (em != null) em.close();
+        }
+    }
+
+    public int borrarPorLote(String loteId) {
+        EntityManager em = getEntityManager();
+        try {
+            em.getTransaction().begin();
+            int borrados = em.createQuery("DELETE FROM Mensaje m WHERE m.lote = :loteId")
+                    .setParameter("loteId", loteId)
+                    .executeUpdate();
+            em.getTransaction().commit();
+            return borrados;
+        } catch (Exception e) {
+            if (em.getTransaction() != null && em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            throw new RuntimeException("Error al borrar los mensajes del lote " + loteId, e);
+        } finally {
+            if (em != null) em.close();
+        }
+    }
+
+    /**
+     * Siguiente tramo (id, texto) de mensajes del lote con la ortografía pendiente, en orden de id.
+     * @param desdeId Se devuelven solo ids mayores que este (0 para empezar).
+     */
+    public List<Object[]> buscarPendientesDeOrtografia(String loteId, long desdeId, int limite) {
+        EntityManager em = getEntityManager();
+        try {
+            TypedQuery<Object[]> query = em.createQuery(
+                    "SELECT m.id, m.texto FROM Mensaje m WHERE m.lote = :loteId AND m.ortografiaPendiente = true AND m.id > :desdeId ORDER BY m.id",
+                    Object[].class);
+            query.setParameter("loteId", loteId);
+            query.setParameter("desdeId", desdeId);
+            query.setMaxResults(limite);
+            return query.getResultList();
+        } finally {
+            if (em != null) em.close();
+        }
+    }
+
+    /**
+     * Guarda la clasificación completa de varios mensajes con el mismo resultado y les quita la marca de ortografía pendiente.
+     */
+    public int actualizarClasificacion(List<Long> ids, String clasificacion, String observacion) {
+        EntityManager em = getEntityManager();
+        try {
+            em.getTransaction().begin();
+            int actualizados = em.createQuery("UPDATE Mensaje m SET m.clasificacion = :clasificacion, m.observacion = :observacion, "
+                            + "m.ortografiaPendiente = false WHERE m.id IN :ids")
+                    .setParameter("clasificacion", clasificacion)
+                    .setParameter("observacion", observacion)
+                    .setParameter("ids", ids)
+                    .executeUpdate();
+            em.getTransaction().commit();
+            return actualizados;
+        } catch (Exception e) {
+            if (em.getTransaction() != null && em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            throw new RuntimeException("Error al actualizar la clasificación de " + ids.size() + " mensajes", e);
+        } finally {
+            if (em != null) em.close();
+        }
+    }
+
+    public List<String> buscarLotesConOrtografiaPendiente() {
+        EntityManager em = getEntityManager();
+        try {
+            TypedQuery<String> query = em.createQuery("SELECT DISTINCT m.lote FROM Mensaje m WHERE m.ortografiaPendiente = true", String.class);
+            return query.getResultList();
+        } finally {
+            if (em != null) em.close();
+        }
+    }
+
     public List<String> obtenerNombresDeAsesores() {
         EntityManager em = getEntityManager();
         try {
@@ -176,16 +426,44 @@ public class MensajeDAO {
         }
     }
     
+    /**
+     * Recuentos por asesor (total, buenos, alertas, feedback correcto e incorrecto) desde la tabla agregada.
+     * Excluye los mensajes sin asesor, que la tabla agregada guarda con el asesor chr(1).
+     */
+    @SuppressWarnings("unchecked")
     public List<Object[]> contarMensajesPorAsesor() {
         EntityManager em = getEntityManager();
         try {
-            String qlString = "SELECT m.nombreAsesor, COUNT(m), " +
-                              "SUM(CASE WHEN m.clasificacion = 'Bueno' THEN 1 ELSE 0 END), " +
-                              "SUM(CASE WHEN m.clasificacion = 'Alerta' THEN 1 ELSE 0 END) " +
-                              "FROM Mensaje m WHERE m.nombreAsesor IS NOT NULL " +
-                              "GROUP BY m.nombreAsesor " +
+            String sql = "SELECT asesor, CAST(SUM(total) AS bigint), " +
+                         "CAST(COALESCE(SUM(total) FILTER (WHERE clasificacion = 'Bueno'), 0) AS bigint), " +
+                         "CAST(COALESCE(SUM(total) FILTER (WHERE clasificacion = 'Alerta'), 0) AS bigint), " +
+                         "CAST(SUM(feedback_correctas) AS bigint), CAST(SUM(feedback_incorrectas) AS bigint) " +
+                         "FROM estadistica_mensaje_agregada WHERE asesor <> chr(1) " +
+                         "GROUP BY asesor " +
+                         "ORDER BY SUM(total) DESC";
+            return em.createNativeQuery(sql).getResultList();
+        } finally {
+            if (em != null) {
+                em.close();
+            }
+        }
+    }
+
+    /**
+     * Plantillas de un lote, de la más repetida a la menos, con un texto de ejemplo de cada una.
+     */
+    public List<Object[]> contarMensajesPorPlantilla(String loteId, int limite) {
+        EntityManager em = getEntityManager();
+        try {
+            String qlString = "SELECT m.plantillaId, COUNT(m), " +
+                              "SUM(CASE WHEN m.clasificacion = 'Alerta' THEN 1 ELSE 0 END), " +
+                              "MIN(m.texto) " +
+                              "FROM Mensaje m WHERE m.lote = :loteId AND m.plantillaId IS NOT NULL " +
+                              "GROUP BY m.plantillaId " +
                               "ORDER BY COUNT(m) DESC";
             TypedQuery<Object[]> query = em.createQuery(qlString, Object[].class);
+            query.setParameter("loteId", loteId);
+            query.setMaxResults(limite);
             return query.getResultList();
         } finally {
             if (em != null) {
@@ -193,4 +471,4 @@ public class MensajeDAO {
             }
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,95 @@
+package com.ia.mensajes.agentemensajesia.dao;
+
+import com.ia.mensajes.agentemensajesia.model.TrabajoExportacion;
+import com.ia.mensajes.agentemensajesia.util.JPAUtil;
+import jakarta.persistence.EntityManager;
+import java.util.Date;
+import java.util.List;
+
+public class TrabajoExportacionDAO {
+
+    private EntityManager getEntityManager() {
+        return JPAUtil.getEntityManagerFactory().createEntityManager();
+    }
+
+    public void guardar(TrabajoExportacion trabajo) {
+        EntityManager em = getEntityManager();
+        try {
+            em.getTransaction().begin();
+            em.merge(trabajo);
+            em.getTransaction().commit();
+        } catch (Exception e) {
+            if (em.getTransaction() != null && em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            throw new RuntimeException("Error al guardar el estado de la exportación " + trabajo.getId(), e);
+        } finally {
+            if (em != null) em.close();
+        }
+    }
+
+    public TrabajoExportacion buscarPorId(String id) {
+        EntityManager em = getEntityManager();
+        try {
+            return em.find(TrabajoExportacion.class, id);
+        } finally {
+            if (em != null) em.close();
+        }
+    }
+
+    /**
+     * La exportación más reciente de la clave que sigue en curso en alguna réplica y que se
+     * actualizó después de vigenteDesde.
+     */
+    public TrabajoExportacion buscarEnCursoPorClave(String clave, Date vigenteDesde) {
+        EntityManager em = getEntityManager();
+        try {
+            List<TrabajoExportacion> trabajos = em.createQuery(
+                            "SELECT t FROM TrabajoExportacion t WHERE t.clave = :clave AND t.estado NOT IN (:finales) " +
+                            "AND t.ultimaActualizacion >= :limite ORDER BY t.fechaCreacion DESC", TrabajoExportacion.class)
+                    .setParameter("clave", clave)
+                    .setParameter("finales", TrabajoExportacion.ESTADOS_FINALES)
+                    .setParameter("limite", vigenteDesde)
+                    .setMaxResults(1)
+                    .getResultList();
+            return trabajos.isEmpty() ? null : trabajos.get(0);
+        } finally {
+            if (em != null) em.close();
+        }
+    }
+
+    /**
+     * Exportaciones sin finalizar cuya réplica dejó de actualizarlas (p. ej. porque se reinició).
+     */
+    public List<TrabajoExportacion> buscarAbandonados(Date sinActualizarDesde) {
+        EntityManager em = getEntityManager();
+        try {
+            return em.createQuery("SELECT t FROM TrabajoExportacion t WHERE t.estado NOT IN (:finales) AND t.ultimaActualizacion < :limite", TrabajoExportacion.class)
+                    .setParameter("finales", TrabajoExportacion.ESTADOS_FINALES)
+                    .setParameter("limite", sinActualizarDesde)
+                    .getResultList();
+        } finally {
+            if (em != null) em.close();
+        }
+    }
+
+    public int eliminarFinalizadosAntesDe(Date limite) {
+        EntityManager em = getEntityManager();
+        try {
+            em.getTransaction().begin();
+            int eliminados = em.createQuery("DELETE FROM TrabajoExportacion t WHERE t.estado IN (:finales) AND t.fechaFin < :limite")
+                    .setParameter("finales", TrabajoExportacion.ESTADOS_FINALES)
+                    .setParameter("limite", limite)
+                    .executeUpdate();
+            em.getTransaction().commit();
+            return eliminados;
+        } catch (Exception e) {
+            if (em.getTransaction() != null && em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            throw new RuntimeException("Error al eliminar exportaciones finalizadas en DAO", e);
+        } finally {
+            if (em != null) em.close();
+        }
+    }
+}
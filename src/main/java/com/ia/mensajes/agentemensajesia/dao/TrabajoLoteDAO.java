@@ -0,0 +1,114 @@
+package com.ia.mensajes.agentemensajesia.dao;
+
+import com.ia.mensajes.agentemensajesia.model.TrabajoLote;
+import com.ia.mensajes.agentemensajesia.util.JPAUtil;
+import jakarta.persistence.EntityManager;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+public class TrabajoLoteDAO {
+
+    private EntityManager getEntityManager() {
+        return JPAUtil.getEntityManagerFactory().createEntityManager();
+    }
+
+    public void guardar(TrabajoLote trabajo) {
+        EntityManager em = getEntityManager();
+        try {
+            em.getTransaction().begin();
+            em.merge(trabajo);
+            em.getTransaction().commit();
+        } catch (Exception e) {
+            if (em.getTransaction() != null && em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            throw new RuntimeException("Error al guardar el estado del lote " + trabajo.getLoteId(), e);
+        } finally {
+            if (em != null) em.close();
+        }
+    }
+
+    public TrabajoLote buscarPorId(String loteId) {
+        EntityManager em = getEntityManager();
+        try {
+            return em.find(TrabajoLote.class, loteId);
+        } finally {
+            if (em != null) em.close();
+        }
+    }
+
+    /**
+     * Deja pedida la cancelación de un lote que procesa otra réplica.
+     * @return 1 si se registró, 0 si el lote no existe o ya finalizó.
+     */
+    public int solicitarCancelacion(String loteId) {
+        EntityManager em = getEntityManager();
+        try {
+            em.getTransaction().begin();
+            int actualizados = em.createQuery("UPDATE TrabajoLote t SET t.cancelacionSolicitada = true WHERE t.loteId = :loteId AND t.status NOT IN (:finales)")
+                    .setParameter("loteId", loteId)
+                    .setParameter("finales", TrabajoLote.ESTADOS_FINALES)
+                    .executeUpdate();
+            em.getTransaction().commit();
+            return actualizados;
+        } catch (Exception e) {
+            if (em.getTransaction() != null && em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            throw new RuntimeException("Error al solicitar la cancelación del lote " + loteId, e);
+        } finally {
+            if (em != null) em.close();
+        }
+    }
+
+    /**
+     * De los lotes indicados, los que tienen una cancelación pedida desde otra réplica.
+     */
+    public List<String> buscarCancelacionesSolicitadas(Collection<String> loteIds) {
+        EntityManager em = getEntityManager();
+        try {
+            return em.createQuery("SELECT t.loteId FROM TrabajoLote t WHERE t.loteId IN (:loteIds) AND t.cancelacionSolicitada = true", String.class)
+                    .setParameter("loteIds", loteIds)
+                    .getResultList();
+        } finally {
+            if (em != null) em.close();
+        }
+    }
+
+    /**
+     * Lotes que siguen sin finalizar pero cuya réplica dejó de reportar progreso
+     * (p. ej. porque se reinició a mitad del procesamiento).
+     */
+    public List<TrabajoLote> buscarAbandonados(Date sinActualizarDesde) {
+        EntityManager em = getEntityManager();
+        try {
+            return em.createQuery("SELECT t FROM TrabajoLote t WHERE t.status NOT IN (:finales) AND t.ultimaActualizacion < :limite", TrabajoLote.class)
+                    .setParameter("finales", TrabajoLote.ESTADOS_FINALES)
+                    .setParameter("limite", sinActualizarDesde)
+                    .getResultList();
+        } finally {
+            if (em != null) em.close();
+        }
+    }
+
+    public int eliminarFinalizadosAntesDe(Date limite) {
+        EntityManager em = getEntityManager();
+        try {
+            em.getTransaction().begin();
+            int eliminados = em.createQuery("DELETE FROM TrabajoLote t WHERE t.status IN (:finales) AND t.fechaFin < :limite")
+                    .setParameter("finales", TrabajoLote.ESTADOS_FINALES)
+                    .setParameter("limite", limite)
+                    .executeUpdate();
+            em.getTransaction().commit();
+            return eliminados;
+        } catch (Exception e) {
+            if (em.getTransaction() != null && em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            throw new RuntimeException("Error al eliminar lotes finalizados en DAO", e);
+        } finally {
+            if (em != null) em.close();
+        }
+    }
+}
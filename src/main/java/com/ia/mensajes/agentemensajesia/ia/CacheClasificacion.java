@@ -0,0 +1,159 @@
+package com.ia.mensajes.agentemensajesia.ia;
+
+import com.ia.mensajes.agentemensajesia.util.ConfiguracionUtil;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caché de resultados de clasificación, para no repetir el análisis (sobre todo el de
+ * LanguageTool) de textos idénticos, habituales en campañas con plantilla.
+ * La clave es un SHA-256 del texto con los espacios compactados junto con la versión de las
+ * reglas del clasificador, así un cambio en los términos de alerta no reutiliza resultados viejos.
+ * No se pliegan tildes ni mayúsculas: el diagnóstico ortográfico depende de ellas.
+ * Tamaño máximo: CACHE_CLASIFICACION_MAX (10000); vigencia: CACHE_CLASIFICACION_TTL_MIN (60);
+ * se desactiva con CACHE_CLASIFICACION_ACTIVA=false.
+ */
+public class CacheClasificacion {
+
+    private static CacheClasificacion instance;
+
+    private final boolean activa = ConfiguracionUtil.leerBooleano("CACHE_CLASIFICACION_ACTIVA", true);
+    private final int tamanoMaximo = ConfiguracionUtil.leerEnteroPositivo("CACHE_CLASIFICACION_MAX", 10000);
+    private final long ttlMs = TimeUnit.MINUTES.toMillis(ConfiguracionUtil.leerEnteroPositivo("CACHE_CLASIFICACION_TTL_MIN", 60));
+
+    private final AtomicLong aciertos = new AtomicLong();
+    private final AtomicLong fallos = new AtomicLong();
+    private final AtomicLong desalojos = new AtomicLong();
+    private final AtomicLong expirados = new AtomicLong();
+
+    private static class Entrada {
+        final ResultadoClasificacion resultado;
+        final long caduca;
+        Entrada(ResultadoClasificacion resultado, long caduca) { this.resultado = resultado; this.caduca = caduca; }
+    }
+
+    // LinkedHashMap en orden de acceso: al superar el tamaño máximo sale el usado hace más tiempo.
+    private final Map<String, Entrada> entradas = new LinkedHashMap<>(1024, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entrada> eldest) {
+            if (size() > tamanoMaximo) {
+                desalojos.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    private CacheClasificacion() {
+        System.out.println("CacheClasificacion " + (activa ? "activa: hasta " + tamanoMaximo + " resultados, "
+                + TimeUnit.MILLISECONDS.toMinutes(ttlMs) + " min de vigencia." : "desactivada."));
+    }
+
+    public static synchronized CacheClasificacion getInstance() {
+        if (instance == null) {
+            instance = new CacheClasificacion();
+        }
+        return instance;
+    }
+
+    public boolean isActiva() {
+        return activa;
+    }
+
+    /**
+     * @param versionReglas Huella de las reglas con que se calculan los resultados.
+     * @return La clave del texto en la caché.
+     */
+    public String calcularClave(String versionReglas, String texto) {
+        return versionReglas + ":" + sha256(compactarEspacios(texto));
+    }
+
+    public ResultadoClasificacion obtener(String clave) {
+        if (!activa) return null;
+        long ahora = System.currentTimeMillis();
+        synchronized (entradas) {
+            Entrada entrada = entradas.get(clave);
+            if (entrada != null && entrada.caduca < ahora) {
+                entradas.remove(clave);
+                expirados.incrementAndGet();
+                entrada = null;
+            }
+            if (entrada == null) {
+                fallos.incrementAndGet();
+                return null;
+            }
+            aciertos.incrementAndGet();
+            return entrada.resultado;
+        }
+    }
+
+    public void guardar(String clave, ResultadoClasificacion resultado) {
+        if (!activa) return;
+        Entrada entrada = new Entrada(resultado, System.currentTimeMillis() + ttlMs);
+        synchronized (entradas) {
+            entradas.put(clave, entrada);
+        }
+    }
+
+    public int vaciar() {
+        synchronized (entradas) {
+            int tamano = entradas.size();
+            entradas.clear();
+            return tamano;
+        }
+    }
+
+    public Map<String, Object> getMetricas() {
+        long a = aciertos.get();
+        long f = fallos.get();
+        Map<String, Object> metricas = new LinkedHashMap<>();
+        metricas.put("activa", activa);
+        synchronized (entradas) {
+            metricas.put("tamano", entradas.size());
+        }
+        metricas.put("tamanoMaximo", tamanoMaximo);
+        metricas.put("ttlMinutos", TimeUnit.MILLISECONDS.toMinutes(ttlMs));
+        metricas.put("aciertos", a);
+        metricas.put("fallos", f);
+        metricas.put("tasaAciertos", (a + f) == 0 ? 0.0 : Math.round(a * 10000.0 / (a + f)) / 100.0);
+        metricas.put("desalojos", desalojos.get());
+        metricas.put("expirados", expirados.get());
+        return metricas;
+    }
+
+    private static String compactarEspacios(String texto) {
+        String recortado = texto.trim();
+        StringBuilder sb = null;
+        for (int i = 0; i < recortado.length(); i++) {
+            char c = recortado.charAt(i);
+            boolean espacio = Character.isWhitespace(c);
+            if (sb == null) {
+                // Solo se copia si hay algo que cambiar (un espacio no simple o varios seguidos).
+                if (espacio && (c != ' ' || Character.isWhitespace(recortado.charAt(i + 1)))) {
+                    sb = new StringBuilder(recortado.length());
+                    sb.append(recortado, 0, i).append(' ');
+                }
+            } else if (!espacio) {
+                sb.append(c);
+            } else if (sb.charAt(sb.length() - 1) != ' ') {
+                sb.append(' ');
+            }
+        }
+        return sb == null ? recortado : sb.toString();
+    }
+
+    static String sha256(String texto) {
+        try {
+            byte[] huella = MessageDigest.getInstance("SHA-256").digest(texto.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(huella);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no está disponible en esta JVM", e);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.ia.mensajes.agentemensajesia.ia;
+
+import com.ia.mensajes.agentemensajesia.util.NormalizadorTexto;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reduce un mensaje a su plantilla enmascarando lo que cambia de un cliente a otro:
+ * fechas, montos, otros números y el nombre del cliente. Ej.:
+ * "Hola Juan Pérez, su saldo de $ 350.000 vence el 15/08." → "Hola {NOMBRE}, su saldo de {MONTO} vence el {FECHA}."
+ * Como nombre solo se toman las palabras con mayúscula que siguen a un saludo o tratamiento
+ * ("Hola", "Estimada", "Sr.", ...): un texto escrito Con Mayúsculas Iniciales no se enmascara,
+ * así dos mensajes que difieren en una palabra mal escrita no comparten plantilla.
+ * Los mensajes con la misma plantilla se clasifican una sola vez (ver PipelineIngesta).
+ */
+public class CanonizadorPlantillas {
+
+    public static final String NOMBRE = "{NOMBRE}";
+    public static final String MONTO = "{MONTO}";
+    public static final String FECHA = "{FECHA}";
+    public static final String NUMERO = "{NUMERO}";
+
+    private static final String MESES = "enero|febrero|marzo|abril|mayo|junio|julio|agosto|septiembre|setiembre|octubre|noviembre|diciembre";
+    private static final Pattern PATRON_FECHA = Pattern.compile(
+            "\\b\\d{4}-\\d{1,2}-\\d{1,2}\\b"
+            + "|\\b\\d{1,2}[/-]\\d{1,2}(?:[/-]\\d{2,4})?\\b"
+            + "|\\b\\d{1,2}\\s+de\\s+(?:" + MESES + ")(?:\\s+(?:de|del)\\s+\\d{4})?\\b",
+            Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+    private static final Pattern PATRON_MONTO = Pattern.compile(
+            "(?:\\$|\\bCOP\\b|\\bUSD\\b)\\s*\\d[\\d.,]*"
+            + "|\\b\\d[\\d.,]*\\s*(?:(?:mil|millones)(?:\\s+de)?\\s+)?(?:pesos|cop|usd|d[oó]lares)\\b"
+            + "|\\b\\d[\\d.,]*\\s*(?:mil|millones)\\b",
+            Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+    // Números sueltos; los separados solo por espacios (teléfonos, cuentas) cuentan como uno.
+    private static final Pattern PATRON_NUMERO = Pattern.compile("\\d(?:[\\d.,\\-]|\\s(?=\\d))*");
+    // Un saludo o tratamiento seguido de palabras con mayúscula (el grupo 1 es el nombre).
+    private static final Pattern PATRON_NOMBRE = Pattern.compile(
+            "(?iu:\\b(?:hola|buen[oa]s\\s+(?:d[ií]as|tardes|noches)|estimad[oa]s?|apreciad[oa]s?|querid[oa]s?"
+            + "|se[ñn]or(?:a|ita)?|sr|sra|srta|don|do[ñn]a)\\b\\.?,?)\\s+(\\p{Lu}\\p{Ll}+(?:\\s+\\p{Lu}\\p{Ll}+)*)");
+    private static final Pattern PATRON_ESPACIOS = Pattern.compile("\\s+");
+
+    private final Predicate<String> palabraProtegida;
+
+    /**
+     * Plantilla de un mensaje.
+     */
+    public static class Plantilla {
+        private final String id;
+        private final String texto;
+
+        Plantilla(String id, String texto) {
+            this.id = id;
+            this.texto = texto;
+        }
+
+        /** Huella corta de la plantilla; igual para todos los mensajes que la comparten. */
+        public String getId() { return id; }
+        /** La plantilla con las marcas {NOMBRE}, {MONTO}, {FECHA} y {NUMERO}. */
+        public String getTexto() { return texto; }
+    }
+
+    /**
+     * @param palabraProtegida Recibe una palabra normalizada y devuelve true si nunca debe
+     *                         enmascararse como nombre (p. ej. un término de alerta escrito con mayúscula).
+     */
+    public CanonizadorPlantillas(Predicate<String> palabraProtegida) {
+        this.palabraProtegida = palabraProtegida;
+    }
+
+    public Plantilla canonizar(String texto) {
+        String plantilla = PATRON_ESPACIOS.matcher(texto.trim()).replaceAll(" ");
+        plantilla = PATRON_FECHA.matcher(plantilla).replaceAll(Matcher.quoteReplacement(FECHA));
+        plantilla = PATRON_MONTO.matcher(plantilla).replaceAll(Matcher.quoteReplacement(MONTO));
+        plantilla = PATRON_NUMERO.matcher(plantilla).replaceAll(Matcher.quoteReplacement(NUMERO));
+        plantilla = enmascararNombres(plantilla);
+        String id = CacheClasificacion.sha256(plantilla).substring(0, 16);
+        return new Plantilla(id, plantilla);
+    }
+
+    private String enmascararNombres(String texto) {
+        Matcher m = PATRON_NOMBRE.matcher(texto);
+        StringBuilder sb = null;
+        int copiado = 0;
+        while (m.find()) {
+            if (contieneProtegida(m.group(1))) continue;
+            if (sb == null) sb = new StringBuilder(texto.length());
+            sb.append(texto, copiado, m.start(1)).append(NOMBRE);
+            copiado = m.end(1);
+        }
+        if (sb == null) return texto;
+        return sb.append(texto, copiado, texto.length()).toString();
+    }
+
+    private boolean contieneProtegida(String palabras) {
+        for (String palabra : NormalizadorTexto.normalizar(palabras).split(" ")) {
+            if (palabraProtegida.test(palabra)) return true;
+        }
+        return false;
+    }
+}
@@ -2,30 +2,64 @@ package com.ia.mensajes.agentemensajesia.ia;
 
 import com.ia.mensajes.agentemensajesia.services.ContextAnalysisService;
 import com.ia.mensajes.agentemensajesia.services.SpellCheckService;
-import java.io.IOException;
-import java.io.InputStream;
-import java.text.Normalizer;
+import com.ia.mensajes.agentemensajesia.util.ConfiguracionUtil;
+import com.ia.mensajes.agentemensajesia.util.PoolDeInstancias;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
-import opennlp.tools.sentdetect.SentenceDetectorME;
 import opennlp.tools.sentdetect.SentenceModel;
-import opennlp.tools.tokenize.TokenizerME;
 import opennlp.tools.tokenize.TokenizerModel;
 
 public class ClasificadorMensajes {
 
     private static ClasificadorMensajes instance;
-    private TokenizerME tokenizer;
-    private SentenceDetectorME sentenceDetector;
+    // Los modelos son inmutables y se comparten; TokenizerME y SentenceDetectorME no son
+    // seguros entre hilos, así que cada clasificación toma su propio PipelineNLP del pool.
+    private volatile TokenizerModel tokenizerModel;
+    private volatile SentenceModel sentenceModel;
+    private PoolDeInstancias<PipelineNLP> poolPipelines;
     private ContextAnalysisService contextService;
     private SpellCheckService spellCheckService;
 
-    private volatile boolean isInitializing = false;
     private volatile boolean isReady = false;
 
+    public static final String PENDIENTE = "PENDIENTE";
+    public static final String CARGANDO = "CARGANDO";
+    public static final String CALENTANDO = "CALENTANDO";
+    public static final String LISTO = "LISTO";
+    public static final String ERROR = "ERROR";
+    private volatile String estado = PENDIENTE;
+    private volatile String errorCarga;
+    private volatile long duracionCargaMs = -1;
+    private volatile long duracionCalentamientoMs = -1;
+    // Se completa cuando el clasificador está listo; los lotes que llegan antes se encadenan a él.
+    private volatile CompletableFuture<Void> listo = new CompletableFuture<>();
+
+    private static final boolean CALENTAMIENTO_ACTIVO = ConfiguracionUtil.leerBooleano("CALENTAMIENTO_ACTIVO", true);
+    private static final int ITERACIONES_CALENTAMIENTO = ConfiguracionUtil.leerEnteroPositivo("CALENTAMIENTO_ITERACIONES", 50);
+    private static final String[] MENSAJES_CALENTAMIENTO = {
+        "Hola Juan Pérez, su saldo de $ 350.000 vence el 15/08. Evite el reporte negativo.",
+        "Estimado cliente, si no paga iniciaremos un proceso jurídico y embargo de sus cuentas.",
+        "No habrá demanda ni cobro jurídico si llegamos a un acuerdo de pago esta semana.",
+        "Tiene un crédito preaprobado con descuento, escríbanos al WhatsApp o pague por PSE.",
+        "Buenos dias, su informasion fue actualisada correctamente.",
+        "Le recordamos su pago pendiente de 120000 pesos. ¿Desea un acuerdo? Comuníquese al 300 123 4567."
+    };
+
     private static final String SUGERENCIA_REFORMULACION = "Intente comunicar la misma información con un enfoque en soluciones y sin urgencia, por ejemplo: 'Le contactamos para revisar su caso y ofrecerle opciones para regularizar su situación.'";
     private static final Map<String, Integer> PUNTUACION_ALERTA = new HashMap<>();
     static {
@@ -52,53 +86,183 @@ public class ClasificadorMensajes {
         PUNTUACION_ALERTA.put("proceso", 1);
         PUNTUACION_ALERTA.put("responsabilidad", 1);
     }
+    // Frases que se detectan como un todo (una sola negación las cubre); reemplazan a las palabras
+    // que contienen y puntúan lo mismo que la suma de ellas, así no cambian la puntuación de un mensaje.
+    private static final Map<String, Integer> FRASES_ALERTA = new HashMap<>();
+    static {
+        for (String frase : new String[] {"reporte negativo", "cobro juridico"}) {
+            int puntos = 0;
+            for (String palabra : frase.split(" ")) puntos += PUNTUACION_ALERTA.getOrDefault(palabra, 0);
+            FRASES_ALERTA.put(frase, puntos);
+        }
+    }
+    private static final DetectorTerminosAlerta DETECTOR_ALERTAS = crearDetector();
+    // Palabras que deciden la puntuación; CanonizadorPlantillas nunca las enmascara como nombres.
+    private static final Set<String> PALABRAS_RESERVADAS = crearPalabrasReservadas();
+    private static final int UMBRAL_PUNTOS = 5;
+    // Huella de todo lo que decide el resultado; si cambia, la caché no reutiliza resultados anteriores.
+    private static final String VERSION_REGLAS = CacheClasificacion.sha256(
+            new TreeMap<>(PUNTUACION_ALERTA) + "|" + new TreeMap<>(FRASES_ALERTA) + "|"
+            + new TreeSet<>(ContextAnalysisService.PALABRAS_NEGACION) + "|" + ContextAnalysisService.VENTANA_NEGACION + "|"
+            + UMBRAL_PUNTOS + "|" + SUGERENCIA_REFORMULACION + "|" + new TreeSet<>(SpellCheckService.getPalabrasDeNegocio()))
+            .substring(0, 12);
+
+    private static DetectorTerminosAlerta crearDetector() {
+        Map<String, Integer> terminos = new HashMap<>(PUNTUACION_ALERTA);
+        terminos.putAll(FRASES_ALERTA);
+        return new DetectorTerminosAlerta(terminos, ContextAnalysisService.PALABRAS_NEGACION, ContextAnalysisService.VENTANA_NEGACION);
+    }
+    
+    private static Set<String> crearPalabrasReservadas() {
+        Set<String> palabras = new HashSet<>(PUNTUACION_ALERTA.keySet());
+        FRASES_ALERTA.keySet().forEach(frase -> palabras.addAll(Arrays.asList(frase.split(" "))));
+        palabras.addAll(ContextAnalysisService.PALABRAS_NEGACION);
+        return Collections.unmodifiableSet(palabras);
+    }
+
+    /**
+     * @param palabraNormalizada Palabra ya pasada por NormalizadorTexto.normalizar.
+     * @return true si es un término de alerta, parte de una frase de alerta o una negación.
+     */
+    public static boolean esPalabraReservada(String palabraNormalizada) {
+        return PALABRAS_RESERVADAS.contains(palabraNormalizada);
+    }
     
     private ClasificadorMensajes() {}
 
-    public void init() {
-        if (isReady || isInitializing) return;
-        synchronized (this) {
-            if (isReady || isInitializing) return;
-            isInitializing = true;
-            try {
-                System.out.println("Cargando modelos de OpenNLP (versión de contexto)...");
-                try (InputStream tokenModelIn = getClass().getResourceAsStream("/models/es/es-token.bin");
-                     InputStream sentModelIn = getClass().getResourceAsStream("/models/es/es-sent.bin")) { 
-                    if (tokenModelIn == null || sentModelIn == null) throw new IOException("No se encontraron modelos de token o sentencias (es-sent.bin).");
-                    this.tokenizer = new TokenizerME(new TokenizerModel(tokenModelIn));
-                    this.sentenceDetector = new SentenceDetectorME(new SentenceModel(sentModelIn));
+    /**
+     * Inicia la carga de los modelos en segundo plano (solo la primera vez, o de nuevo si la
+     * anterior falló) y devuelve un futuro que se completa cuando el clasificador está listo.
+     * Los modelos de OpenNLP, el tokenizer de contexto y LanguageTool se cargan en paralelo;
+     * después se pasa un calentamiento con mensajes de ejemplo para que el JIT compile el camino
+     * crítico antes del primer lote (se desactiva con CALENTAMIENTO_ACTIVO=false).
+     */
+    public synchronized CompletableFuture<Void> iniciar() {
+        if (!PENDIENTE.equals(estado) && !ERROR.equals(estado)) return listo;
+        if (ERROR.equals(estado)) listo = new CompletableFuture<>();
+        CompletableFuture<Void> futuro = listo;
+        estado = CARGANDO;
+        errorCarga = null;
+        long inicio = System.currentTimeMillis();
+        AtomicInteger contador = new AtomicInteger(1);
+        ExecutorService cargadores = Executors.newFixedThreadPool(3, r -> {
+            Thread hilo = new Thread(r, "carga-modelos-" + contador.getAndIncrement());
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        this.contextService = ContextAnalysisService.getInstance();
+        this.spellCheckService = SpellCheckService.getInstance();
+
+        CompletableFuture.allOf(
+                CompletableFuture.runAsync(this::cargarModelosNLP, cargadores),
+                CompletableFuture.runAsync(contextService::init, cargadores),
+                CompletableFuture.runAsync(spellCheckService::init, cargadores))
+            .thenRunAsync(() -> {
+                duracionCargaMs = System.currentTimeMillis() - inicio;
+                System.out.println("Modelos de IA cargados en " + duracionCargaMs + " ms.");
+                if (CALENTAMIENTO_ACTIVO) {
+                    estado = CALENTANDO;
+                    calentar();
                 }
-                System.out.println("Modelos base cargados.");
-                
-                this.contextService = ContextAnalysisService.getInstance();
-                this.contextService.init();
-                
-                this.spellCheckService = SpellCheckService.getInstance();
-                this.spellCheckService.init();
-
-                isReady = true;
-            } catch (Exception e) {
-                System.err.println("Error fatal durante la inicialización de los servicios de IA.");
-                throw new RuntimeException("Fallo al cargar los modelos de IA.", e);
-            } finally {
-                isInitializing = false;
+            }, cargadores)
+            .whenComplete((resultado, falla) -> {
+                cargadores.shutdown();
+                if (falla == null) {
+                    isReady = true;
+                    estado = LISTO;
+                    futuro.complete(null);
+                } else {
+                    Throwable causa = (falla instanceof CompletionException && falla.getCause() != null) ? falla.getCause() : falla;
+                    errorCarga = causa.getMessage() != null ? causa.getMessage() : causa.getClass().getSimpleName();
+                    estado = ERROR;
+                    System.err.println("Error fatal durante la inicialización de los servicios de IA.");
+                    causa.printStackTrace();
+                    futuro.completeExceptionally(causa);
+                }
+            });
+        return futuro;
+    }
+
+    /**
+     * Carga los modelos y espera a que terminen.
+     * @throws RuntimeException Si la carga falla.
+     */
+    public void init() {
+        try {
+            iniciar().join();
+        } catch (CompletionException e) {
+            throw new RuntimeException("Fallo al cargar los modelos de IA.", e.getCause());
+        }
+    }
+
+    private void cargarModelosNLP() {
+        System.out.println("Cargando modelos de OpenNLP (versión de contexto)...");
+        RegistroModelos registro = RegistroModelos.getInstance();
+        this.tokenizerModel = registro.getTokenizerModel();
+        this.sentenceModel = registro.getSentenceModel();
+        this.poolPipelines = new PoolDeInstancias<>("pipeline-nlp", EjecutorClasificacion.getTamanoPoolNLP(),
+                () -> new PipelineNLP(sentenceModel, tokenizerModel));
+        this.poolPipelines.precalentar(1);
+        System.out.println("Modelos base cargados.");
+    }
+
+    // Pasa los mensajes de ejemplo por el análisis completo (sin la caché de resultados), el de
+    // solo riesgo y el canonizador de plantillas.
+    private void calentar() {
+        long inicio = System.currentTimeMillis();
+        CanonizadorPlantillas canonizador = new CanonizadorPlantillas(ClasificadorMensajes::esPalabraReservada);
+        for (int i = 0; i < ITERACIONES_CALENTAMIENTO; i++) {
+            for (String mensaje : MENSAJES_CALENTAMIENTO) {
+                analizar(mensaje);
+                analizarRiesgo(mensaje);
+                canonizador.canonizar(mensaje);
             }
         }
+        duracionCalentamientoMs = System.currentTimeMillis() - inicio;
+        System.out.println("Calentamiento del clasificador terminado en " + duracionCalentamientoMs + " ms ("
+                + ITERACIONES_CALENTAMIENTO * MENSAJES_CALENTAMIENTO.length + " mensajes).");
     }
     
+    /**
+     * Espera (sin sondear) a que el clasificador esté listo; inicia la carga si nadie lo hizo.
+     * @throws IllegalStateException Si los modelos no se pudieron cargar.
+     */
     public void waitForReady() {
         if (isReady) return;
         System.out.println("Un proceso está esperando a que los modelos de IA terminen de cargar...");
-        while(!isReady) {
-            try {
-                Thread.sleep(1000); 
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
+        try {
+            iniciar().join();
+        } catch (CompletionException e) {
+            throw new IllegalStateException("Los modelos de IA no se pudieron cargar: " + errorCarga, e.getCause());
         }
         System.out.println("Modelos de IA listos. El proceso continúa.");
     }
 
+    public boolean isReady() {
+        return isReady;
+    }
+
+    /**
+     * Estado de la carga para las sondas de salud: PENDIENTE, CARGANDO, CALENTANDO, LISTO o ERROR.
+     */
+    public Map<String, Object> getEstadoCarga() {
+        Map<String, Object> datos = new LinkedHashMap<>();
+        datos.put("estado", estado);
+        datos.put("listo", isReady);
+        if (duracionCargaMs >= 0) datos.put("cargaMs", duracionCargaMs);
+        if (duracionCalentamientoMs >= 0) datos.put("calentamientoMs", duracionCalentamientoMs);
+        if (errorCarga != null) datos.put("error", errorCarga);
+        return datos;
+    }
+
+    public static String getVersionReglas() {
+        return VERSION_REGLAS;
+    }
+
+    public PoolDeInstancias<PipelineNLP> getPoolPipelines() {
+        return poolPipelines;
+    }
+
     public static synchronized ClasificadorMensajes getInstance() {
         if (instance == null) {
             instance = new ClasificadorMensajes();
@@ -106,21 +270,6 @@ public class ClasificadorMensajes {
         return instance;
     }
     
-    private String normalizar(String texto) {
-        if (texto == null) return "";
-        // 1. Convertir a minúsculas
-        String textoNormalizado = texto.toLowerCase();
-        // 2. Descomponer caracteres con acentos (ej: "crédito" -> "credito")
-        textoNormalizado = Normalizer.normalize(textoNormalizado, Normalizer.Form.NFD)
-                                    .replaceAll("[\\p{InCombiningDiacriticalMarks}]", "");
-        // 3. --- CORRECCIÓN DEFINITIVA ---
-        // Elimina CUALQUIER COSA que no sea una letra del alfabeto español o un espacio.
-        // Esto previene errores con puntuación, números, URLs, etc.
-        textoNormalizado = textoNormalizado.replaceAll("[^a-zñ\\s]", " ");
-        
-        return textoNormalizado.trim().replaceAll("\\s+", " ");
-    }
-
     public ResultadoClasificacion clasificar(String textoMensaje) {
         if (!isReady) {
              return new ResultadoClasificacion("Error de Sistema", "El motor de IA aún se está inicializando.");
@@ -128,24 +277,23 @@ public class ClasificadorMensajes {
         if (textoMensaje == null || textoMensaje.trim().isEmpty()) {
             return new ResultadoClasificacion("Bueno", "N/A");
         }
+        CacheClasificacion cache = CacheClasificacion.getInstance();
+        String claveCache = cache.isActiva() ? cache.calcularClave(VERSION_REGLAS, textoMensaje) : null;
+        if (claveCache != null) {
+            ResultadoClasificacion enCache = cache.obtener(claveCache);
+            if (enCache != null) return enCache;
+        }
+        ResultadoClasificacion resultado = analizar(textoMensaje);
+        // Los errores no se guardan: el mismo texto puede clasificarse bien en otro intento.
+        if (claveCache != null && !resultado.getCategoria().startsWith("Error")) cache.guardar(claveCache, resultado);
+        return resultado;
+    }
+
+    private ResultadoClasificacion analizar(String textoMensaje) {
         try {
             // --- Análisis de Riesgo ---
-            int puntuacionTotal = 0;
             List<String> palabrasDetectadas = new ArrayList<>();
-            String[] oraciones = sentenceDetector.sentDetect(textoMensaje);
-
-            for (String oracion : oraciones) {
-                String oracionNormalizada = normalizar(oracion); // Se normaliza cada oración
-                String[] tokens = tokenizer.tokenize(oracionNormalizada);
-                for (String token : tokens) {
-                    if (PUNTUACION_ALERTA.containsKey(token)) {
-                        if (contextService.esContextoDeRiesgo(oracion, token)) {
-                            puntuacionTotal += PUNTUACION_ALERTA.get(token);
-                            palabrasDetectadas.add(token);
-                        }
-                    }
-                }
-            }
+            int puntuacionTotal = puntuarRiesgo(textoMensaje, palabrasDetectadas);
             
             // --- Análisis Ortográfico ---
             Map<String, String> erroresConSugerencias = spellCheckService.findMisspelledWordsWithSuggestions(textoMensaje);
@@ -159,8 +307,52 @@ public class ClasificadorMensajes {
         }
     }
 
+    /**
+     * Solo el análisis de riesgo, sin la revisión ortográfica (la parte costosa). Sirve para tener
+     * el diagnóstico de alertas de un lote cuanto antes; la ortografía se completa después con
+     * clasificar(). Estos resultados parciales no pasan por la caché.
+     */
+    public ResultadoClasificacion clasificarSoloRiesgo(String textoMensaje) {
+        if (!isReady) {
+             return new ResultadoClasificacion("Error de Sistema", "El motor de IA aún se está inicializando.");
+        }
+        if (textoMensaje == null || textoMensaje.trim().isEmpty()) {
+            return new ResultadoClasificacion("Bueno", "N/A");
+        }
+        return analizarRiesgo(textoMensaje);
+    }
+
+    private ResultadoClasificacion analizarRiesgo(String textoMensaje) {
+        try {
+            List<String> palabrasDetectadas = new ArrayList<>();
+            int puntuacionTotal = puntuarRiesgo(textoMensaje, palabrasDetectadas);
+            return generarObservacionProfunda(puntuacionTotal, palabrasDetectadas, Map.of());
+        } catch (Exception e) {
+            System.err.println("ERROR: Fallo el análisis de riesgo para el mensaje: '" + textoMensaje + "'");
+            e.printStackTrace();
+            return new ResultadoClasificacion("Error de Análisis", "El motor de IA no pudo procesar este texto.");
+        }
+    }
+
+    private int puntuarRiesgo(String textoMensaje, List<String> palabrasDetectadas) throws Exception {
+        return poolPipelines.usar(pipeline -> {
+            int puntuacion = 0;
+            String[] oraciones = pipeline.detectarOraciones(textoMensaje);
+            for (String oracion : oraciones) {
+                CharSequence oracionNormalizada = pipeline.normalizar(oracion); // Se normaliza cada oración
+                // Una sola pasada encuentra términos, frases y negaciones (la ventana no cruza oraciones).
+                for (DetectorTerminosAlerta.Coincidencia coincidencia : DETECTOR_ALERTAS.buscar(oracionNormalizada)) {
+                    if (!coincidencia.isNegada()) {
+                        puntuacion += coincidencia.getPuntos();
+                        palabrasDetectadas.add(coincidencia.getTermino());
+                    }
+                }
+            }
+            return puntuacion;
+        });
+    }
+
     private ResultadoClasificacion generarObservacionProfunda(int puntuacion, List<String> palabrasClave, Map<String, String> erroresConSugerencias) {
-        final int UMBRAL_PUNTOS = 5;
         boolean esAlertaPorPuntos = puntuacion >= UMBRAL_PUNTOS;
         boolean hayErroresOrtograficos = !erroresConSugerencias.isEmpty();
 
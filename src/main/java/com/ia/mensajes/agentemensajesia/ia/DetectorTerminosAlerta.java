@@ -0,0 +1,224 @@
+package com.ia.mensajes.agentemensajesia.ia;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Autómata Aho–Corasick que, en una sola pasada sobre un texto ya normalizado
+ * (ver NormalizadorTexto), encuentra:
+ * <ul>
+ *   <li>los términos de alerta, tanto palabras sueltas como frases ("reporte negativo"), y</li>
+ *   <li>las palabras de negación, para saber si un término está negado (alguna aparece en las
+ *       {@code ventanaNegacion} palabras anteriores), sin volver a tokenizar la oración.</li>
+ * </ul>
+ * Solo cuentan las coincidencias de palabras completas. Si una frase contiene a otro término
+ * (p. ej. "reporte negativo" y "negativo"), cuenta solo la frase.
+ * El autómata es inmutable y puede usarse desde varios hilos a la vez.
+ */
+public class DetectorTerminosAlerta {
+
+    // Alfabeto del autómata: a-z, ñ y un símbolo para todo lo demás (separador).
+    private static final int TAMANO_ALFABETO = 28;
+    private static final int SEPARADOR = 27;
+
+    private static final int SIN_PATRON = -1;
+
+    /**
+     * Término encontrado en el texto.
+     */
+    public static class Coincidencia {
+        private final String termino;
+        private final int puntos;
+        private final boolean negada;
+        private final int primeraPalabra;
+        private final int ultimaPalabra;
+
+        Coincidencia(String termino, int puntos, boolean negada, int primeraPalabra, int ultimaPalabra) {
+            this.termino = termino;
+            this.puntos = puntos;
+            this.negada = negada;
+            this.primeraPalabra = primeraPalabra;
+            this.ultimaPalabra = ultimaPalabra;
+        }
+
+        public String getTermino() { return termino; }
+        public int getPuntos() { return puntos; }
+        public boolean isNegada() { return negada; }
+        public int getPrimeraPalabra() { return primeraPalabra; }
+        public int getUltimaPalabra() { return ultimaPalabra; }
+    }
+
+    private static class Patron {
+        final String texto;
+        final int puntos;
+        final boolean esNegacion;
+        final int palabras;
+
+        Patron(String texto, int puntos, boolean esNegacion) {
+            this.texto = texto;
+            this.puntos = puntos;
+            this.esNegacion = esNegacion;
+            this.palabras = texto.split(" ").length;
+        }
+    }
+
+    private final Patron[] patrones;
+    private final int ventanaNegacion;
+    // transiciones[estado * TAMANO_ALFABETO + simbolo] = siguiente estado (ya resueltos los fallos).
+    private final int[] transiciones;
+    // Patrones que terminan en cada estado (incluidos los heredados por los enlaces de fallo),
+    // ordenados de mayor a menor longitud.
+    private final int[][] salidas;
+
+    /**
+     * @param terminos        Términos de alerta (palabras o frases normalizadas) y sus puntos.
+     * @param negaciones      Palabras de negación normalizadas.
+     * @param ventanaNegacion Cuántas palabras antes de un término se buscan negaciones.
+     */
+    public DetectorTerminosAlerta(Map<String, Integer> terminos, Collection<String> negaciones, int ventanaNegacion) {
+        this.ventanaNegacion = ventanaNegacion;
+        List<Patron> lista = new ArrayList<>();
+        terminos.forEach((texto, puntos) -> lista.add(new Patron(texto, puntos, false)));
+        for (String negacion : negaciones) {
+            lista.add(new Patron(negacion, 0, true));
+        }
+        this.patrones = lista.toArray(new Patron[0]);
+
+        // 1. Trie de todos los patrones.
+        List<int[]> hijos = new ArrayList<>();
+        List<List<Integer>> terminan = new ArrayList<>();
+        hijos.add(nuevoNodo());
+        terminan.add(new ArrayList<>());
+        for (int p = 0; p < patrones.length; p++) {
+            int estado = 0;
+            for (int i = 0; i < patrones[p].texto.length(); i++) {
+                int simbolo = simbolo(patrones[p].texto.charAt(i));
+                if (hijos.get(estado)[simbolo] == SIN_PATRON) {
+                    hijos.get(estado)[simbolo] = hijos.size();
+                    hijos.add(nuevoNodo());
+                    terminan.add(new ArrayList<>());
+                }
+                estado = hijos.get(estado)[simbolo];
+            }
+            terminan.get(estado).add(p);
+        }
+
+        // 2. Enlaces de fallo por anchura, resolviendo a la vez las transiciones que faltan
+        //    para que buscar() avance siempre con una sola consulta por carácter.
+        int numeroEstados = hijos.size();
+        this.transiciones = new int[numeroEstados * TAMANO_ALFABETO];
+        int[] fallo = new int[numeroEstados];
+        List<List<Integer>> salidasPorEstado = new ArrayList<>(terminan);
+        ArrayDeque<Integer> cola = new ArrayDeque<>();
+        for (int s = 0; s < TAMANO_ALFABETO; s++) {
+            int hijo = hijos.get(0)[s];
+            if (hijo == SIN_PATRON) {
+                transiciones[s] = 0;
+            } else {
+                transiciones[s] = hijo;
+                fallo[hijo] = 0;
+                cola.add(hijo);
+            }
+        }
+        while (!cola.isEmpty()) {
+            int estado = cola.remove();
+            List<Integer> salidasEstado = new ArrayList<>(salidasPorEstado.get(estado));
+            salidasEstado.addAll(salidasPorEstado.get(fallo[estado]));
+            salidasPorEstado.set(estado, salidasEstado);
+            for (int s = 0; s < TAMANO_ALFABETO; s++) {
+                int hijo = hijos.get(estado)[s];
+                if (hijo == SIN_PATRON) {
+                    transiciones[estado * TAMANO_ALFABETO + s] = transiciones[fallo[estado] * TAMANO_ALFABETO + s];
+                } else {
+                    transiciones[estado * TAMANO_ALFABETO + s] = hijo;
+                    fallo[hijo] = transiciones[fallo[estado] * TAMANO_ALFABETO + s];
+                    cola.add(hijo);
+                }
+            }
+        }
+
+        this.salidas = new int[numeroEstados][];
+        for (int e = 0; e < numeroEstados; e++) {
+            salidas[e] = salidasPorEstado.get(e).stream()
+                    .sorted((a, b) -> Integer.compare(patrones[b].texto.length(), patrones[a].texto.length()))
+                    .mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    private static int[] nuevoNodo() {
+        int[] nodo = new int[TAMANO_ALFABETO];
+        Arrays.fill(nodo, SIN_PATRON);
+        return nodo;
+    }
+
+    private static int simbolo(char c) {
+        if (c >= 'a' && c <= 'z') return c - 'a';
+        if (c == 'ñ') return 26;
+        return SEPARADOR;
+    }
+
+    /**
+     * Recorre el texto una vez y devuelve los términos de alerta encontrados, en orden de aparición,
+     * indicando si cada uno está negado.
+     * @param textoNormalizado Texto en minúsculas, sin tildes y con palabras separadas por un espacio
+     *                         (ver NormalizadorTexto.normalizar).
+     */
+    public List<Coincidencia> buscar(CharSequence textoNormalizado) {
+        if (textoNormalizado == null || textoNormalizado.length() == 0) return Collections.emptyList();
+        List<Coincidencia> encontradas = null;
+        int estado = 0;
+        int palabraActual = 0;
+        int ultimaNegacion = Integer.MIN_VALUE;
+        int longitud = textoNormalizado.length();
+
+        for (int i = 0; i < longitud; i++) {
+            int s = simbolo(textoNormalizado.charAt(i));
+            if (s == SEPARADOR && i > 0 && simbolo(textoNormalizado.charAt(i - 1)) != SEPARADOR) {
+                palabraActual++;
+            }
+            estado = transiciones[estado * TAMANO_ALFABETO + s];
+            int[] candidatos = salidas[estado];
+            if (candidatos.length == 0) continue;
+
+            // El patrón acaba en i: solo cuenta si termina una palabra.
+            if (i + 1 < longitud && simbolo(textoNormalizado.charAt(i + 1)) != SEPARADOR) continue;
+
+            // Las salidas están ordenadas de mayor a menor: la primera que empiece en un
+            // límite de palabra es la coincidencia más larga que termina aquí.
+            for (int p : candidatos) {
+                Patron patron = patrones[p];
+                int inicio = i - patron.texto.length() + 1;
+                if (inicio > 0 && simbolo(textoNormalizado.charAt(inicio - 1)) != SEPARADOR) continue;
+
+                int primeraPalabra = palabraActual - patron.palabras + 1;
+                if (patron.esNegacion) {
+                    ultimaNegacion = palabraActual;
+                } else {
+                    boolean negada = ultimaNegacion < primeraPalabra && ultimaNegacion >= primeraPalabra - ventanaNegacion;
+                    if (encontradas == null) encontradas = new ArrayList<>(4);
+                    agregarSinSolapes(encontradas, new Coincidencia(patron.texto, patron.puntos, negada, primeraPalabra, palabraActual));
+                }
+                break;
+            }
+        }
+        return encontradas != null ? encontradas : Collections.emptyList();
+    }
+
+    // Una coincidencia que cubre a otras anteriores (una frase que contiene una palabra ya
+    // encontrada) las reemplaza.
+    private static void agregarSinSolapes(List<Coincidencia> encontradas, Coincidencia nueva) {
+        for (int i = encontradas.size() - 1; i >= 0; i--) {
+            Coincidencia previa = encontradas.get(i);
+            if (previa.ultimaPalabra < nueva.primeraPalabra) break;
+            if (previa.primeraPalabra >= nueva.primeraPalabra) {
+                encontradas.remove(i);
+            }
+        }
+        encontradas.add(nueva);
+    }
+}
@@ -0,0 +1,87 @@
+package com.ia.mensajes.agentemensajesia.ia;
+
+import com.ia.mensajes.agentemensajesia.util.ConfiguracionUtil;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool acotado de hilos que reparte la clasificación de mensajes entre todos los núcleos.
+ * El número de hilos se configura con la variable de entorno CLASIFICACION_HILOS
+ * (por defecto, el número de procesadores disponibles).
+ */
+public class EjecutorClasificacion {
+
+    private static EjecutorClasificacion instance;
+
+    private final int numeroHilos;
+    private final ThreadPoolExecutor executor;
+
+    private EjecutorClasificacion() {
+        this.numeroHilos = ConfiguracionUtil.leerEnteroPositivo("CLASIFICACION_HILOS", Runtime.getRuntime().availableProcessors());
+        // La cola es acotada: si se llena, el hilo que envía clasifica él mismo (CallerRunsPolicy),
+        // lo que frena al productor en lugar de acumular tareas sin límite.
+        this.executor = new ThreadPoolExecutor(
+                numeroHilos, numeroHilos, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(numeroHilos * 4),
+                new FabricaHilos(),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        System.out.println("EjecutorClasificacion iniciado con " + numeroHilos + " hilos.");
+    }
+
+    public static synchronized EjecutorClasificacion getInstance() {
+        if (instance == null) {
+            instance = new EjecutorClasificacion();
+        }
+        return instance;
+    }
+
+    public int getNumeroHilos() {
+        return numeroHilos;
+    }
+
+    /**
+     * Tamaño máximo de los pools de instancias NLP. Por defecto, uno por hilo clasificador
+     * más un margen para los hilos que clasifican por su cuenta (CallerRunsPolicy, peticiones web).
+     * Se puede fijar con la variable de entorno NLP_POOL_MAX.
+     */
+    public static int getTamanoPoolNLP() {
+        return ConfiguracionUtil.leerEnteroPositivo("NLP_POOL_MAX", getInstance().getNumeroHilos() + 2);
+    }
+
+    /**
+     * Envía un texto a clasificar en alguno de los hilos del pool.
+     * @param texto El texto a clasificar.
+     * @return Un futuro que se completa con el resultado de la clasificación.
+     */
+    public CompletableFuture<ResultadoClasificacion> clasificarAsync(String texto) {
+        ClasificadorMensajes clasificador = ClasificadorMensajes.getInstance();
+        return CompletableFuture.supplyAsync(() -> clasificador.clasificar(texto), executor);
+    }
+
+    /**
+     * Como clasificarAsync, pero solo con el análisis de riesgo (ver ClasificadorMensajes.clasificarSoloRiesgo).
+     */
+    public CompletableFuture<ResultadoClasificacion> clasificarSoloRiesgoAsync(String texto) {
+        ClasificadorMensajes clasificador = ClasificadorMensajes.getInstance();
+        return CompletableFuture.supplyAsync(() -> clasificador.clasificarSoloRiesgo(texto), executor);
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static class FabricaHilos implements ThreadFactory {
+        private final AtomicInteger contador = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread hilo = new Thread(r, "clasificador-" + contador.getAndIncrement());
+            hilo.setDaemon(true);
+            return hilo;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.ia.mensajes.agentemensajesia.ia;
+
+import com.ia.mensajes.agentemensajesia.util.NormalizadorTexto;
+import opennlp.tools.sentdetect.SentenceDetectorME;
+import opennlp.tools.sentdetect.SentenceModel;
+import opennlp.tools.tokenize.TokenizerME;
+import opennlp.tools.tokenize.TokenizerModel;
+
+/**
+ * Par detector de oraciones + tokenizador usado por una sola clasificación a la vez.
+ * Las instancias ME guardan estado interno y no son seguras entre hilos, pero todas
+ * las del pool comparten los mismos modelos (inmutables) cargados una sola vez.
+ */
+public class PipelineNLP {
+
+    private final SentenceDetectorME sentenceDetector;
+    private final TokenizerME tokenizer;
+    // Buffer de normalización reutilizado por todas las clasificaciones que toman esta instancia.
+    private final StringBuilder bufferNormalizacion = new StringBuilder(256);
+
+    public PipelineNLP(SentenceModel sentenceModel, TokenizerModel tokenizerModel) {
+        this.sentenceDetector = new SentenceDetectorME(sentenceModel);
+        this.tokenizer = new TokenizerME(tokenizerModel);
+    }
+
+    public String[] detectarOraciones(String texto) {
+        return sentenceDetector.sentDetect(texto);
+    }
+
+    public String[] tokenizar(String texto) {
+        return tokenizer.tokenize(texto);
+    }
+
+    /**
+     * Normaliza el texto en el buffer de esta instancia. El resultado solo es válido hasta la
+     * siguiente llamada y mientras la instancia no se devuelva al pool.
+     */
+    public CharSequence normalizar(String texto) {
+        NormalizadorTexto.normalizar(texto, bufferNormalizacion);
+        return bufferNormalizacion;
+    }
+}
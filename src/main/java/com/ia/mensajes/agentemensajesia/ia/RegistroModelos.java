@@ -0,0 +1,216 @@
+package com.ia.mensajes.agentemensajesia.ia;
+
+import com.ia.mensajes.agentemensajesia.util.ConfiguracionUtil;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.zip.CRC32;
+import opennlp.tools.sentdetect.SentenceModel;
+import opennlp.tools.tokenize.TokenizerModel;
+import org.languagetool.Language;
+import org.languagetool.language.Spanish;
+
+/**
+ * Punto único de carga de los modelos de IA: cada modelo se lee una sola vez por proceso y lo
+ * comparten el clasificador, ContextAnalysisService y SpellCheckService (los modelos son
+ * inmutables; lo que no es seguro entre hilos se crea por instancia en los pools).
+ * Si MODELOS_CACHE_DIR apunta a un directorio local, la primera vez se copian allí los modelos
+ * del classpath y en los siguientes arranques se leen desde ese archivo mapeado en memoria, sin
+ * descomprimirlos del WAR. El nombre del archivo lleva el CRC32 del contenido del recurso, así
+ * un modelo nuevo en el despliegue (aunque tenga el mismo tamaño) no se confunde con el que ya
+ * estaba en la caché.
+ */
+public class RegistroModelos {
+
+    private static final String MODELO_TOKENIZER = "/models/es/es-token.bin";
+    private static final String MODELO_SENTENCIAS = "/models/es/es-sent.bin";
+
+    private static RegistroModelos instance;
+
+    private final Path directorioCache;
+    private final Map<String, Object> modelos = new ConcurrentHashMap<>();
+    // Milisegundos y origen ("cache" o "classpath") de la carga de cada modelo, para las métricas.
+    private final Map<String, String> origenes = new ConcurrentHashMap<>();
+    private final Map<String, Long> duraciones = new ConcurrentHashMap<>();
+
+    private RegistroModelos() {
+        String directorio = ConfiguracionUtil.leerTexto("MODELOS_CACHE_DIR", null);
+        this.directorioCache = directorio != null ? Paths.get(directorio) : null;
+    }
+
+    public static synchronized RegistroModelos getInstance() {
+        if (instance == null) {
+            instance = new RegistroModelos();
+        }
+        return instance;
+    }
+
+    public TokenizerModel getTokenizerModel() {
+        return cargarUnaVez(MODELO_TOKENIZER, () -> {
+            try (InputStream in = abrir(MODELO_TOKENIZER)) {
+                return new TokenizerModel(in);
+            }
+        });
+    }
+
+    public SentenceModel getSentenceModel() {
+        return cargarUnaVez(MODELO_SENTENCIAS, () -> {
+            try (InputStream in = abrir(MODELO_SENTENCIAS)) {
+                return new SentenceModel(in);
+            }
+        });
+    }
+
+    /**
+     * El idioma español de LanguageTool. Construirlo carga las reglas y los recursos del idioma,
+     * así que todas las instancias de JLanguageTool del proceso parten del mismo objeto.
+     */
+    public Language getIdiomaEspanol() {
+        return cargarUnaVez("languagetool-es", Spanish::new);
+    }
+
+    public Map<String, Object> getMetricas() {
+        Map<String, Object> metricas = new LinkedHashMap<>();
+        metricas.put("directorioCache", directorioCache != null ? directorioCache.toString() : null);
+        for (String nombre : modelos.keySet()) {
+            Map<String, Object> modelo = new LinkedHashMap<>();
+            modelo.put("origen", origenes.get(nombre));
+            modelo.put("cargaMs", duraciones.get(nombre));
+            metricas.put(nombre, modelo);
+        }
+        return metricas;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T cargarUnaVez(String nombre, Cargador<T> cargador) {
+        // computeIfAbsent bloquea solo a quien pide el mismo modelo; los demás cargan en paralelo.
+        return (T) modelos.computeIfAbsent(nombre, n -> {
+            long inicio = System.currentTimeMillis();
+            try {
+                T modelo = cargador.cargar();
+                duraciones.put(n, System.currentTimeMillis() - inicio);
+                origenes.putIfAbsent(n, "classpath");
+                System.out.println("RegistroModelos: " + n + " cargado en " + duraciones.get(n) + " ms (" + origenes.get(n) + ").");
+                return modelo;
+            } catch (IOException e) {
+                throw new UncheckedIOException("No se pudo cargar el modelo " + n, e);
+            }
+        });
+    }
+
+    // El flujo del modelo: desde la caché local mapeada en memoria si está configurada, si no del
+    // classpath. Lo cierra quien lo pide.
+    private InputStream abrir(String recurso) throws IOException {
+        URL url = getClass().getResource(recurso);
+        if (url == null) throw new IOException("No se encontró el modelo " + recurso);
+        if (directorioCache == null) {
+            return url.openStream();
+        }
+        try {
+            Path archivo = archivoEnCache(recurso, url);
+            if (!Files.exists(archivo)) {
+                copiarACache(url, archivo);
+            }
+            try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)) {
+                MappedByteBuffer mapa = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+                origenes.put(recurso, "cache");
+                return new FlujoDeBuffer(mapa);
+            }
+        } catch (IOException e) {
+            // Un directorio sin permisos o lleno no debe impedir el arranque.
+            System.err.println("RegistroModelos: no se pudo usar la caché para " + recurso + " (" + e.getMessage() + "); se lee del classpath.");
+            return url.openStream();
+        }
+    }
+
+    private Path archivoEnCache(String recurso, URL url) throws IOException {
+        String nombre = recurso.substring(recurso.lastIndexOf('/') + 1);
+        int punto = nombre.lastIndexOf('.');
+        return directorioCache.resolve(nombre.substring(0, punto) + "-" + Long.toHexString(crcDelRecurso(url)) + nombre.substring(punto));
+    }
+
+    // Dentro de un WAR o JAR el CRC de la entrada está en el directorio central y no hace falta
+    // descomprimirla; en un despliegue expandido se calcula leyendo el archivo.
+    private static long crcDelRecurso(URL url) throws IOException {
+        URLConnection conexion = url.openConnection();
+        if (conexion instanceof JarURLConnection jar) {
+            jar.setUseCaches(false);
+            // Sin la caché de URLConnection el JarFile es propio de esta conexión y hay que cerrarlo.
+            try (JarFile archivo = jar.getJarFile()) {
+                JarEntry entrada = archivo.getJarEntry(jar.getEntryName());
+                if (entrada != null && entrada.getCrc() != -1) {
+                    return entrada.getCrc();
+                }
+            }
+        }
+        CRC32 crc = new CRC32();
+        try (InputStream in = url.openStream()) {
+            byte[] buffer = new byte[64 * 1024];
+            for (int leidos; (leidos = in.read(buffer)) != -1; ) {
+                crc.update(buffer, 0, leidos);
+            }
+        }
+        return crc.getValue();
+    }
+
+    // Se escribe a un temporal y se renombra: otra réplica que comparta el directorio nunca ve un archivo a medias.
+    private void copiarACache(URL url, Path destino) throws IOException {
+        Files.createDirectories(directorioCache);
+        Path temporal = Files.createTempFile(directorioCache, destino.getFileName().toString(), ".tmp");
+        try (InputStream in = url.openStream()) {
+            Files.copy(in, temporal, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temporal, destino, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            System.out.println("RegistroModelos: modelo copiado a la caché local " + destino + ".");
+        } finally {
+            Files.deleteIfExists(temporal);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Cargador<T> {
+        T cargar() throws IOException;
+    }
+
+    private static class FlujoDeBuffer extends InputStream {
+        private final ByteBuffer buffer;
+
+        FlujoDeBuffer(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] destino, int desde, int largo) {
+            if (largo == 0) return 0;
+            if (!buffer.hasRemaining()) return -1;
+            int leidos = Math.min(largo, buffer.remaining());
+            buffer.get(destino, desde, leidos);
+            return leidos;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.ia.mensajes.agentemensajesia.ia;
 
+import java.util.Objects;
+
 public class ResultadoClasificacion {
     private final String categoria;
     private final String observacion;
@@ -11,4 +13,18 @@ public class ResultadoClasificacion {
     
     public String getCategoria() { return categoria; }
     public String getObservacion() { return observacion; }
-}
\ No newline at end of file
+
+    // Por valor: RevisorOrtografiaDiferida agrupa por resultado los mensajes que actualiza juntos.
+    @Override
+    public boolean equals(Object otro) {
+        if (this == otro) return true;
+        if (!(otro instanceof ResultadoClasificacion)) return false;
+        ResultadoClasificacion r = (ResultadoClasificacion) otro;
+        return Objects.equals(categoria, r.categoria) && Objects.equals(observacion, r.observacion);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(categoria, observacion);
+    }
+}
@@ -5,12 +5,17 @@ public class AsesorStats {
     private long totalMensajes;
     private long mensajesBuenos;
     private long mensajesAlertas;
+    private long feedbackCorrectas;
+    private long feedbackIncorrectas;
 
-    public AsesorStats(String nombreAsesor, long totalMensajes, long mensajesBuenos, long mensajesAlertas) {
+    public AsesorStats(String nombreAsesor, long totalMensajes, long mensajesBuenos, long mensajesAlertas,
+                       long feedbackCorrectas, long feedbackIncorrectas) {
         this.nombreAsesor = nombreAsesor;
         this.totalMensajes = totalMensajes;
         this.mensajesBuenos = mensajesBuenos;
         this.mensajesAlertas = mensajesAlertas;
+        this.feedbackCorrectas = feedbackCorrectas;
+        this.feedbackIncorrectas = feedbackIncorrectas;
     }
 
     // Getters y Setters
@@ -45,4 +50,20 @@ public class AsesorStats {
     public void setMensajesAlertas(long mensajesAlertas) {
         this.mensajesAlertas = mensajesAlertas;
     }
-}
\ No newline at end of file
+
+    public long getFeedbackCorrectas() {
+        return feedbackCorrectas;
+    }
+
+    public void setFeedbackCorrectas(long feedbackCorrectas) {
+        this.feedbackCorrectas = feedbackCorrectas;
+    }
+
+    public long getFeedbackIncorrectas() {
+        return feedbackIncorrectas;
+    }
+
+    public void setFeedbackIncorrectas(long feedbackIncorrectas) {
+        this.feedbackIncorrectas = feedbackIncorrectas;
+    }
+}
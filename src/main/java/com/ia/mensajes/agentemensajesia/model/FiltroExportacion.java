@@ -0,0 +1,31 @@
+package com.ia.mensajes.agentemensajesia.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * Porción de la tabla de mensajes que se exporta. Todos los campos son opcionales; sin ninguno
+ * se exporta todo. El rango de fechas es sobre la fecha del mensaje: desde inclusive, hasta exclusive.
+ */
+public class FiltroExportacion {
+    private final String loteId;
+    private final String asesor;
+    private final LocalDateTime desde;
+    private final LocalDateTime hasta;
+
+    public FiltroExportacion(String loteId, String asesor, LocalDateTime desde, LocalDateTime hasta) {
+        this.loteId = loteId;
+        this.asesor = asesor;
+        this.desde = desde;
+        this.hasta = hasta;
+    }
+
+    public static FiltroExportacion todos() {
+        return new FiltroExportacion(null, null, null, null);
+    }
+
+    // Getters
+    public String getLoteId() { return loteId; }
+    public String getAsesor() { return asesor; }
+    public LocalDateTime getDesde() { return desde; }
+    public LocalDateTime getHasta() { return hasta; }
+}
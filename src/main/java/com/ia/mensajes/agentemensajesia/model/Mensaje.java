@@ -5,10 +5,27 @@ import java.time.LocalDateTime;
 import java.util.Date;
 
 @Entity
+// El esquema lo crean las migraciones de db/migration; estos índices las reflejan. Los índices
+// parciales (solo alertas, ortografía pendiente) no se pueden declarar aquí y solo están en V2.
+@Table(indexes = {
+    // Paginación por cursor: (fechaProcesamiento, id) con el filtro delante cuando lo hay.
+    @Index(name = "idx_mensaje_fecha_id", columnList = "fechaProcesamiento, id"),
+    @Index(name = "idx_mensaje_asesor_fecha_id", columnList = "nombreAsesor, fechaProcesamiento, id"),
+    @Index(name = "idx_mensaje_lote_fecha_id", columnList = "lote, fechaProcesamiento, id"),
+    // Estadísticas por asesor y por plantilla de un lote.
+    @Index(name = "idx_mensaje_asesor_clasificacion", columnList = "nombreAsesor, clasificacion"),
+    @Index(name = "idx_mensaje_lote_plantilla", columnList = "lote, plantilla_id, clasificacion")
+})
 public class Mensaje {
 
+    public static final int INCREMENTO_SECUENCIA = 50;
+
+    // Secuencia con asignación en bloques de 50 (optimizador "pooled"): Hibernate reserva
+    // los ids sin ir a la BD por cada fila y puede agrupar los INSERT en lotes JDBC,
+    // cosa que IDENTITY impide porque necesita leer el id generado tras cada INSERT.
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "mensaje_seq")
+    @SequenceGenerator(name = "mensaje_seq", sequenceName = "mensaje_seq", allocationSize = INCREMENTO_SECUENCIA)
     private Long id;
 
     private String aplicacion;
@@ -23,6 +40,12 @@ public class Mensaje {
     private String lote;
     @Temporal(TemporalType.TIMESTAMP)
     private Date fechaProcesamiento;
+    // Huella de la plantilla del texto (ver CanonizadorPlantillas), para agrupar variantes de un mismo mensaje.
+    @Column(name = "plantilla_id", length = 16)
+    private String plantillaId;
+    // Clasificado solo por riesgo; la revisión ortográfica completará clasificación y observación.
+    @Column(name = "ortografia_pendiente", nullable = false)
+    private boolean ortografiaPendiente;
 
     // --- NUEVOS CAMPOS PARA FEEDBACK DE CALIDAD ---
     @Column(name = "feedback_estado")
@@ -120,6 +143,22 @@ public class Mensaje {
         this.fechaProcesamiento = fechaProcesamiento;
     }
 
+    public String getPlantillaId() {
+        return plantillaId;
+    }
+
+    public void setPlantillaId(String plantillaId) {
+        this.plantillaId = plantillaId;
+    }
+
+    public boolean isOrtografiaPendiente() {
+        return ortografiaPendiente;
+    }
+
+    public void setOrtografiaPendiente(boolean ortografiaPendiente) {
+        this.ortografiaPendiente = ortografiaPendiente;
+    }
+
     // --- GETTERS Y SETTERS PARA LOS NUEVOS CAMPOS ---
 
     public String getFeedbackEstado() {
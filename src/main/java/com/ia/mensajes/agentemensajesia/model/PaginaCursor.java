@@ -0,0 +1,28 @@
+package com.ia.mensajes.agentemensajesia.model;
+
+import java.util.List;
+
+/**
+ * Página de una consulta paginada por cursor. siguienteCursor es opaco para el cliente: se
+ * devuelve tal cual en el parámetro "cursor" para pedir la página siguiente (null si no hay más).
+ * totalElementos solo se informa si se pidió y puede tener unos segundos de antigüedad.
+ */
+public class PaginaCursor<T> {
+    private List<T> content;
+    private String siguienteCursor;
+    private int tamano;
+    private Long totalElementos;
+
+    public PaginaCursor(List<T> content, String siguienteCursor, int tamano, Long totalElementos) {
+        this.content = content;
+        this.siguienteCursor = siguienteCursor;
+        this.tamano = tamano;
+        this.totalElementos = totalElementos;
+    }
+
+    // Getters
+    public List<T> getContent() { return content; }
+    public String getSiguienteCursor() { return siguienteCursor; }
+    public int getTamano() { return tamano; }
+    public Long getTotalElementos() { return totalElementos; }
+}
@@ -0,0 +1,48 @@
+package com.ia.mensajes.agentemensajesia.model;
+
+public class PlantillaStats {
+    private String plantillaId;
+    private long totalMensajes;
+    private long mensajesAlertas;
+    private String ejemplo;
+
+    public PlantillaStats(String plantillaId, long totalMensajes, long mensajesAlertas, String ejemplo) {
+        this.plantillaId = plantillaId;
+        this.totalMensajes = totalMensajes;
+        this.mensajesAlertas = mensajesAlertas;
+        this.ejemplo = ejemplo;
+    }
+
+    // Getters y Setters
+    public String getPlantillaId() {
+        return plantillaId;
+    }
+
+    public void setPlantillaId(String plantillaId) {
+        this.plantillaId = plantillaId;
+    }
+
+    public long getTotalMensajes() {
+        return totalMensajes;
+    }
+
+    public void setTotalMensajes(long totalMensajes) {
+        this.totalMensajes = totalMensajes;
+    }
+
+    public long getMensajesAlertas() {
+        return mensajesAlertas;
+    }
+
+    public void setMensajesAlertas(long mensajesAlertas) {
+        this.mensajesAlertas = mensajesAlertas;
+    }
+
+    public String getEjemplo() {
+        return ejemplo;
+    }
+
+    public void setEjemplo(String ejemplo) {
+        this.ejemplo = ejemplo;
+    }
+}
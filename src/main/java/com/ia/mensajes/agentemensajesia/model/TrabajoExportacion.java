@@ -0,0 +1,149 @@
+package com.ia.mensajes.agentemensajesia.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Estado de una exportación en segundo plano (ver PlanificadorExportaciones). Se guarda en la BD
+ * para que cualquier réplica pueda responder por ella; el archivo queda en el directorio de
+ * exportaciones de la réplica que lo generó (o en el compartido, si lo está).
+ */
+@Entity
+@Table(name = "trabajo_exportacion")
+public class TrabajoExportacion {
+
+    public static final String EN_COLA = "EN_COLA";
+    public static final String PROCESANDO = "PROCESANDO";
+    public static final String COMPLETADO = "COMPLETADO";
+    public static final String FALLIDO = "FALLIDO";
+
+    public static final List<String> ESTADOS_FINALES = List.of(COMPLETADO, FALLIDO);
+
+    @Id
+    @Column(length = 36)
+    private String id;
+
+    @Column(nullable = false, length = 20)
+    private String estado;
+
+    @Column(nullable = false, length = 20)
+    private String formato;
+
+    // Filtros, formato y huella de los datos: nombra el archivo y sirve de ETag.
+    @Column(nullable = false, length = 32)
+    private String clave;
+
+    // Los filtros de la exportación, para regenerarla en otra réplica.
+    @Column(name = "lote_id")
+    private String loteId;
+    private String asesor;
+    private LocalDateTime desde;
+    private LocalDateTime hasta;
+
+    // Null si el archivo se reutilizó de un arranque anterior y no se sabe cuántas filas tiene.
+    private Long filas;
+    @Column(nullable = false)
+    private long bytes;
+    // El archivo ya existía para los mismos filtros y los mismos datos y no se volvió a generar.
+    @Column(nullable = false)
+    private boolean reutilizado;
+
+    @Column(name = "mensaje_error", length = 1000)
+    private String mensajeError;
+
+    // Réplica que genera el archivo.
+    @Column(length = 255)
+    private String nodo;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "fecha_creacion")
+    private Date fechaCreacion;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "fecha_fin")
+    private Date fechaFin;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "ultima_actualizacion")
+    private Date ultimaActualizacion;
+
+    public TrabajoExportacion() {}
+
+    public TrabajoExportacion(String id, String estado, String formato) {
+        this.id = id;
+        this.estado = estado;
+        this.formato = formato;
+        this.fechaCreacion = new Date();
+        this.ultimaActualizacion = fechaCreacion;
+    }
+
+    public TrabajoExportacion copiar() {
+        TrabajoExportacion copia = new TrabajoExportacion(id, estado, formato);
+        copia.clave = clave;
+        copia.loteId = loteId;
+        copia.asesor = asesor;
+        copia.desde = desde;
+        copia.hasta = hasta;
+        copia.filas = filas;
+        copia.bytes = bytes;
+        copia.reutilizado = reutilizado;
+        copia.mensajeError = mensajeError;
+        copia.nodo = nodo;
+        copia.fechaCreacion = fechaCreacion;
+        copia.fechaFin = fechaFin;
+        copia.ultimaActualizacion = ultimaActualizacion;
+        return copia;
+    }
+
+    public boolean isFinalizado() {
+        return ESTADOS_FINALES.contains(estado);
+    }
+
+    public void setFiltro(FiltroExportacion filtro) {
+        this.loteId = filtro.getLoteId();
+        this.asesor = filtro.getAsesor();
+        this.desde = filtro.getDesde();
+        this.hasta = filtro.getHasta();
+    }
+
+    public FiltroExportacion toFiltro() {
+        return new FiltroExportacion(loteId, asesor, desde, hasta);
+    }
+
+    // Getters y Setters
+
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+    public String getEstado() { return estado; }
+    public void setEstado(String estado) { this.estado = estado; }
+    public String getFormato() { return formato; }
+    public void setFormato(String formato) { this.formato = formato; }
+    public String getClave() { return clave; }
+    public void setClave(String clave) { this.clave = clave; }
+    public String getLoteId() { return loteId; }
+    public void setLoteId(String loteId) { this.loteId = loteId; }
+    public String getAsesor() { return asesor; }
+    public void setAsesor(String asesor) { this.asesor = asesor; }
+    public LocalDateTime getDesde() { return desde; }
+    public void setDesde(LocalDateTime desde) { this.desde = desde; }
+    public LocalDateTime getHasta() { return hasta; }
+    public void setHasta(LocalDateTime hasta) { this.hasta = hasta; }
+    public Long getFilas() { return filas; }
+    public void setFilas(Long filas) { this.filas = filas; }
+    public long getBytes() { return bytes; }
+    public void setBytes(long bytes) { this.bytes = bytes; }
+    public boolean isReutilizado() { return reutilizado; }
+    public void setReutilizado(boolean reutilizado) { this.reutilizado = reutilizado; }
+    public String getMensajeError() { return mensajeError; }
+    public void setMensajeError(String mensajeError) { this.mensajeError = mensajeError; }
+    public String getNodo() { return nodo; }
+    public void setNodo(String nodo) { this.nodo = nodo; }
+    public Date getFechaCreacion() { return fechaCreacion; }
+    public void setFechaCreacion(Date fechaCreacion) { this.fechaCreacion = fechaCreacion; }
+    public Date getFechaFin() { return fechaFin; }
+    public void setFechaFin(Date fechaFin) { this.fechaFin = fechaFin; }
+    public Date getUltimaActualizacion() { return ultimaActualizacion; }
+    public void setUltimaActualizacion(Date ultimaActualizacion) { this.ultimaActualizacion = ultimaActualizacion; }
+}
@@ -0,0 +1,253 @@
+package com.ia.mensajes.agentemensajesia.model;
+
+import jakarta.persistence.*;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Estado de procesamiento de un lote subido. Se guarda en la BD para que cualquier réplica
+ * pueda responder por su progreso y para que sobreviva a reinicios.
+ */
+@Entity
+@Table(name = "trabajo_lote")
+public class TrabajoLote {
+
+    public static final String EN_COLA = "EN_COLA";
+    public static final String INICIANDO = "INICIANDO";
+    public static final String PROCESANDO = "PROCESANDO";
+    public static final String COMPLETADO = "COMPLETADO";
+    public static final String FALLIDO = "FALLIDO";
+    public static final String CANCELADO = "CANCELADO";
+    public static final String NO_ENCONTRADO = "NO_ENCONTRADO";
+
+    public static final List<String> ESTADOS_FINALES = List.of(COMPLETADO, FALLIDO, CANCELADO);
+
+    @Id
+    @Column(name = "lote_id", length = 36)
+    private String loteId;
+
+    // Se conservan los nombres "status" y "progress" que ya consume el dashboard.
+    @Column(nullable = false, length = 20)
+    private String status;
+    private int progress;
+
+    @Column(name = "filas_leidas")
+    private long filasLeidas;
+    @Column(name = "filas_clasificadas")
+    private long filasClasificadas;
+    @Column(name = "filas_persistidas")
+    private long filasPersistidas;
+    private long errores;
+
+    @Column(name = "mensaje_error", length = 1000)
+    private String mensajeError;
+
+    // Réplica que procesa el lote.
+    @Column(length = 255)
+    private String nodo;
+
+    @Column(nullable = false)
+    private int prioridad;
+
+    // El lote se clasificó solo por riesgo y la revisión ortográfica sigue en segundo plano
+    // (ver RevisorOrtografiaDiferida).
+    @Column(name = "ortografia_pendiente", nullable = false)
+    private boolean ortografiaPendiente;
+
+    // Posición en la cola de la réplica que tiene el lote (1 = el siguiente); solo mientras espera.
+    @Column(name = "posicion_cola")
+    private Integer posicionCola;
+
+    // Otra réplica pidió cancelar el lote; la que lo tiene la recoge (ver PlanificadorLotes).
+    // Solo la escribe TrabajoLoteDAO.solicitarCancelacion, así el guardado del estado no la pisa.
+    @Column(name = "cancelacion_solicitada", nullable = false, updatable = false)
+    private boolean cancelacionSolicitada;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "fecha_creacion")
+    private Date fechaCreacion;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "fecha_inicio")
+    private Date fechaInicio;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "fecha_fin")
+    private Date fechaFin;
+
+    @Temporal(TemporalType.TIMESTAMP)
+    @Column(name = "ultima_actualizacion")
+    private Date ultimaActualizacion;
+
+    public TrabajoLote() {}
+
+    public TrabajoLote(String loteId, String status) {
+        this.loteId = loteId;
+        this.status = status;
+    }
+
+    /**
+     * Copia del estado actual, para guardarla sin bloquear a quien sigue actualizando el original.
+     */
+    public TrabajoLote copiar() {
+        TrabajoLote copia = new TrabajoLote(loteId, status);
+        copia.progress = progress;
+        copia.filasLeidas = filasLeidas;
+        copia.filasClasificadas = filasClasificadas;
+        copia.filasPersistidas = filasPersistidas;
+        copia.errores = errores;
+        copia.mensajeError = mensajeError;
+        copia.nodo = nodo;
+        copia.prioridad = prioridad;
+        copia.ortografiaPendiente = ortografiaPendiente;
+        copia.posicionCola = posicionCola;
+        copia.cancelacionSolicitada = cancelacionSolicitada;
+        copia.fechaCreacion = fechaCreacion;
+        copia.fechaInicio = fechaInicio;
+        copia.fechaFin = fechaFin;
+        copia.ultimaActualizacion = ultimaActualizacion;
+        return copia;
+    }
+
+    public boolean isFinalizado() {
+        return ESTADOS_FINALES.contains(status);
+    }
+
+    // Getters y Setters
+
+    public String getLoteId() {
+        return loteId;
+    }
+
+    public void setLoteId(String loteId) {
+        this.loteId = loteId;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public int getProgress() {
+        return progress;
+    }
+
+    public void setProgress(int progress) {
+        this.progress = progress;
+    }
+
+    public long getFilasLeidas() {
+        return filasLeidas;
+    }
+
+    public void setFilasLeidas(long filasLeidas) {
+        this.filasLeidas = filasLeidas;
+    }
+
+    public long getFilasClasificadas() {
+        return filasClasificadas;
+    }
+
+    public void setFilasClasificadas(long filasClasificadas) {
+        this.filasClasificadas = filasClasificadas;
+    }
+
+    public long getFilasPersistidas() {
+        return filasPersistidas;
+    }
+
+    public void setFilasPersistidas(long filasPersistidas) {
+        this.filasPersistidas = filasPersistidas;
+    }
+
+    public long getErrores() {
+        return errores;
+    }
+
+    public void setErrores(long errores) {
+        this.errores = errores;
+    }
+
+    public String getMensajeError() {
+        return mensajeError;
+    }
+
+    public void setMensajeError(String mensajeError) {
+        this.mensajeError = mensajeError;
+    }
+
+    public String getNodo() {
+        return nodo;
+    }
+
+    public void setNodo(String nodo) {
+        this.nodo = nodo;
+    }
+
+    public int getPrioridad() {
+        return prioridad;
+    }
+
+    public void setPrioridad(int prioridad) {
+        this.prioridad = prioridad;
+    }
+
+    public boolean isOrtografiaPendiente() {
+        return ortografiaPendiente;
+    }
+
+    public void setOrtografiaPendiente(boolean ortografiaPendiente) {
+        this.ortografiaPendiente = ortografiaPendiente;
+    }
+
+    public Integer getPosicionCola() {
+        return posicionCola;
+    }
+
+    public void setPosicionCola(Integer posicionCola) {
+        this.posicionCola = posicionCola;
+    }
+
+    public boolean isCancelacionSolicitada() {
+        return cancelacionSolicitada;
+    }
+
+    public void setCancelacionSolicitada(boolean cancelacionSolicitada) {
+        this.cancelacionSolicitada = cancelacionSolicitada;
+    }
+
+    public Date getFechaCreacion() {
+        return fechaCreacion;
+    }
+
+    public void setFechaCreacion(Date fechaCreacion) {
+        this.fechaCreacion = fechaCreacion;
+    }
+
+    public Date getFechaInicio() {
+        return fechaInicio;
+    }
+
+    public void setFechaInicio(Date fechaInicio) {
+        this.fechaInicio = fechaInicio;
+    }
+
+    public Date getFechaFin() {
+        return fechaFin;
+    }
+
+    public void setFechaFin(Date fechaFin) {
+        this.fechaFin = fechaFin;
+    }
+
+    public Date getUltimaActualizacion() {
+        return ultimaActualizacion;
+    }
+
+    public void setUltimaActualizacion(Date ultimaActualizacion) {
+        this.ultimaActualizacion = ultimaActualizacion;
+    }
+}
@@ -0,0 +1,69 @@
+package com.ia.mensajes.agentemensajesia.resources;
+
+import com.ia.mensajes.agentemensajesia.ia.CacheClasificacion;
+import com.ia.mensajes.agentemensajesia.ia.ClasificadorMensajes;
+import com.ia.mensajes.agentemensajesia.ia.RegistroModelos;
+import com.ia.mensajes.agentemensajesia.services.ContextAnalysisService;
+import com.ia.mensajes.agentemensajesia.services.SpellCheckService;
+import com.ia.mensajes.agentemensajesia.util.PoolDeInstancias;
+import jakarta.annotation.security.RolesAllowed;
+import jakarta.ws.rs.DELETE;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Path("/admin")
+@Produces(MediaType.APPLICATION_JSON)
+public class AdminResource {
+
+    @GET
+    @Path("/metricas/pools")
+    @RolesAllowed("admin")
+    public Response getMetricasPools() {
+        List<Map<String, Object>> metricas = new ArrayList<>();
+        agregarMetricas(metricas, ClasificadorMensajes.getInstance().getPoolPipelines());
+        agregarMetricas(metricas, ContextAnalysisService.getInstance().getPoolTokenizers());
+        agregarMetricas(metricas, SpellCheckService.getInstance().getPoolLangTool());
+        return Response.ok(metricas).build();
+    }
+
+    @GET
+    @Path("/metricas/modelos")
+    @RolesAllowed("admin")
+    public Response getMetricasModelos() {
+        return Response.ok(RegistroModelos.getInstance().getMetricas()).build();
+    }
+
+    @GET
+    @Path("/metricas/cache")
+    @RolesAllowed("admin")
+    public Response getMetricasCache() {
+        Map<String, Object> metricas = new LinkedHashMap<>(CacheClasificacion.getInstance().getMetricas());
+        metricas.put("versionReglas", ClasificadorMensajes.getVersionReglas());
+        metricas.put("memoOrtografia", SpellCheckService.getInstance().getMetricasMemo());
+        return Response.ok(metricas).build();
+    }
+
+    @DELETE
+    @Path("/cache")
+    @RolesAllowed("admin")
+    public Response vaciarCache() {
+        int eliminados = CacheClasificacion.getInstance().vaciar();
+        int palabrasOlvidadas = SpellCheckService.getInstance().vaciarMemo();
+        return Response.ok(Map.of("mensaje", "Caché de clasificación vaciada.", "eliminados", eliminados,
+                "palabrasOlvidadas", palabrasOlvidadas)).build();
+    }
+
+    private void agregarMetricas(List<Map<String, Object>> metricas, PoolDeInstancias<?> pool) {
+        // El pool es null mientras los modelos de IA no han terminado de cargar.
+        if (pool != null) {
+            metricas.add(pool.getMetricas());
+        }
+    }
+}
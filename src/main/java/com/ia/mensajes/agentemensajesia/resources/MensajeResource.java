@@ -3,27 +3,47 @@ package com.ia.mensajes.agentemensajesia.resources;
 import com.ia.mensajes.agentemensajesia.model.AsesorStats;
 import com.ia.mensajes.agentemensajesia.model.EstadisticaMensaje;
 import com.ia.mensajes.agentemensajesia.model.FeedbackRequest;
+import com.ia.mensajes.agentemensajesia.model.FiltroExportacion;
 import com.ia.mensajes.agentemensajesia.model.Mensaje;
 import com.ia.mensajes.agentemensajesia.model.PaginatedResponse;
-import com.ia.mensajes.agentemensajesia.services.ExcelExportService;
+import com.ia.mensajes.agentemensajesia.model.PlantillaStats;
+import com.ia.mensajes.agentemensajesia.model.TrabajoExportacion;
+import com.ia.mensajes.agentemensajesia.model.TrabajoLote;
+import com.ia.mensajes.agentemensajesia.services.DifusorProgresoLotes;
+import com.ia.mensajes.agentemensajesia.services.ExportacionService;
+import com.ia.mensajes.agentemensajesia.services.FormatoExportacion;
 import com.ia.mensajes.agentemensajesia.services.MensajeService;
+import com.ia.mensajes.agentemensajesia.services.PlanificadorExportaciones;
+import com.ia.mensajes.agentemensajesia.services.PlanificadorLotes;
+import com.ia.mensajes.agentemensajesia.services.RegistroTrabajos;
 import com.ia.mensajes.agentemensajesia.services.SentimentAnalysisService;
+import com.ia.mensajes.agentemensajesia.util.ConfiguracionUtil;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.SecurityContext;
+import jakarta.ws.rs.core.StreamingOutput;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseEventSink;
 import org.glassfish.jersey.media.multipart.FormDataContentDisposition;
 import org.glassfish.jersey.media.multipart.FormDataParam;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
 
 @Path("/mensajes")
 public class MensajeResource {
@@ -49,46 +69,90 @@ public class MensajeResource {
     }
 
 
-    public static class JobStatus {
-        private String status;
-        private int progress;
-        public JobStatus(String status, int progress) { this.status = status; this.progress = progress; }
-        public String getStatus() { return status; }
-        public int getProgress() { return progress; }
-        public void setStatus(String status) { this.status = status; }
-        public void setProgress(int progress) { this.progress = progress; }
-    }
-
     private final MensajeService mensajeService = new MensajeService();
-    private final ExcelExportService excelExportService = new ExcelExportService();
-    
-    public static final Map<String, JobStatus> jobStatuses = new ConcurrentHashMap<>();
+    private final ExportacionService exportacionService = new ExportacionService();
+    private final PlanificadorExportaciones planificadorExportaciones = PlanificadorExportaciones.getInstance();
+    private final RegistroTrabajos registroTrabajos = RegistroTrabajos.getInstance();
+    private final PlanificadorLotes planificadorLotes = PlanificadorLotes.getInstance();
+    private static final boolean ORTOGRAFIA_DIFERIDA_POR_DEFECTO = ConfiguracionUtil.leerBooleano("ORTOGRAFIA_DIFERIDA", false);
+    private static final int TAMANO_PAGINA_MAX = 500;
 
     @POST
     @Path("/upload")
     @Consumes(MediaType.MULTIPART_FORM_DATA)
     @Produces(MediaType.APPLICATION_JSON)
-    public Response uploadFile(@FormDataParam("file") InputStream uploadedInputStream, @FormDataParam("file") FormDataContentDisposition fileDetail) {
+    public Response uploadFile(@FormDataParam("file") InputStream uploadedInputStream, @FormDataParam("file") FormDataContentDisposition fileDetail,
+                               @FormDataParam("prioridad") String prioridadParam,
+                               @FormDataParam("ortografia") String ortografiaParam) {
+        int prioridad = 0;
+        if (prioridadParam != null && !prioridadParam.trim().isEmpty()) {
+            try {
+                prioridad = Integer.parseInt(prioridadParam.trim());
+            } catch (NumberFormatException e) {
+                return Response.status(Response.Status.BAD_REQUEST).entity(Map.of("error", "La prioridad debe ser un número entero.")).type(MediaType.APPLICATION_JSON).build();
+            }
+        }
+        // "diferida": el lote queda listo con el análisis de riesgo y la ortografía se completa después.
+        boolean ortografiaDiferida = ORTOGRAFIA_DIFERIDA_POR_DEFECTO;
+        if (ortografiaParam != null && !ortografiaParam.trim().isEmpty()) {
+            String modo = ortografiaParam.trim().toLowerCase();
+            if (!modo.equals("diferida") && !modo.equals("inmediata")) {
+                return Response.status(Response.Status.BAD_REQUEST).entity(Map.of("error", "El modo de ortografía debe ser 'inmediata' o 'diferida'.")).type(MediaType.APPLICATION_JSON).build();
+            }
+            ortografiaDiferida = modo.equals("diferida");
+        }
+        java.nio.file.Path archivoTemporal = null;
         try {
-            final byte[] fileBytes = uploadedInputStream.readAllBytes();
+            // El archivo se vuelca a disco en lugar de a memoria; el lector SAX lo recorre desde ahí.
+            archivoTemporal = Files.createTempFile("lote-", ".xlsx");
+            Files.copy(uploadedInputStream, archivoTemporal, StandardCopyOption.REPLACE_EXISTING);
             final String loteId = java.util.UUID.randomUUID().toString();
-            jobStatuses.put(loteId, new JobStatus("INICIANDO", 0));
-            new Thread(() -> {
-                try (InputStream safeInputStream = new ByteArrayInputStream(fileBytes)) {
-                    mensajeService.procesarYGuardarMensajesDesdeExcel(safeInputStream, loteId);
-                    jobStatuses.put(loteId, new JobStatus("COMPLETADO", 100));
-                } catch (Exception e) {
-                    jobStatuses.put(loteId, new JobStatus("FALLIDO", 0));
-                    e.printStackTrace();
-                }
-            }).start();
+            planificadorLotes.encolar(loteId, archivoTemporal.toFile(), prioridad, ortografiaDiferida);
             return Response.status(Response.Status.ACCEPTED).entity(Map.of("mensaje", "Archivo recibido. Procesando en segundo plano...", "loteId", loteId)).type(MediaType.APPLICATION_JSON).build();
+        } catch (RejectedExecutionException e) {
+            borrarTemporal(archivoTemporal);
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE).entity(Map.of("error", e.getMessage())).type(MediaType.APPLICATION_JSON).build();
         } catch (IOException e) {
+            borrarTemporal(archivoTemporal);
             e.printStackTrace();
             return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity(Map.of("error", "Error crítico al leer el archivo subido.")).type(MediaType.APPLICATION_JSON).build();
         }
     }
 
+    private void borrarTemporal(java.nio.file.Path archivo) {
+        if (archivo == null) return;
+        try {
+            Files.deleteIfExists(archivo);
+        } catch (IOException e) {
+            System.err.println("No se pudo borrar el archivo temporal " + archivo + ": " + e.getMessage());
+        }
+    }
+
+    @DELETE
+    @Path("/lotes/{loteId}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response cancelarLote(@PathParam("loteId") String loteId) {
+        try {
+            if (planificadorLotes.cancelar(loteId)) {
+                return Response.status(Response.Status.ACCEPTED).entity(Map.of("mensaje", "Cancelación solicitada.", "loteId", loteId)).build();
+            }
+            TrabajoLote trabajo = registroTrabajos.obtener(loteId);
+            if (trabajo == null) {
+                return Response.status(Response.Status.NOT_FOUND).entity(Map.of("error", "No existe el lote " + loteId)).build();
+            }
+            // El lote lo tiene otra réplica: se deja la solicitud en la BD y esa réplica lo cancela.
+            if (!trabajo.isFinalizado() && registroTrabajos.solicitarCancelacion(loteId)) {
+                return Response.status(Response.Status.ACCEPTED).entity(Map.of("mensaje", "Cancelación solicitada a la réplica " + trabajo.getNodo() + ".", "loteId", loteId)).build();
+            }
+            trabajo = registroTrabajos.obtener(loteId);
+            String estado = trabajo != null ? trabajo.getStatus() : TrabajoLote.NO_ENCONTRADO;
+            return Response.status(Response.Status.CONFLICT).entity(Map.of("error", "El lote ya finalizó con estado " + estado + ".")).build();
+        } catch (Exception e) {
+            e.printStackTrace();
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity(Map.of("error", "Error al cancelar el lote " + loteId)).build();
+        }
+    }
+
     @POST
     @Path("/probar-sentimiento")
     @Consumes(MediaType.TEXT_PLAIN)
@@ -112,20 +176,47 @@ public class MensajeResource {
     @Path("/lotes/{loteId}/status")
     @Produces(MediaType.APPLICATION_JSON)
     public Response getLoteStatus(@PathParam("loteId") String loteId) {
-        JobStatus status = jobStatuses.getOrDefault(loteId, new JobStatus("NO_ENCONTRADO", 0));
-        return Response.ok(status).build();
+        try {
+            TrabajoLote trabajo = registroTrabajos.obtener(loteId);
+            if (trabajo == null) {
+                return Response.ok(new TrabajoLote(loteId, TrabajoLote.NO_ENCONTRADO)).build();
+            }
+            // En la réplica que tiene el lote la posición se calcula al momento; en las demás, la guardada.
+            Integer posicion = TrabajoLote.EN_COLA.equals(trabajo.getStatus()) ? planificadorLotes.posicionEnCola(loteId) : null;
+            if (posicion != null) {
+                trabajo.setPosicionCola(posicion);
+            }
+            return Response.ok(trabajo).build();
+        } catch (Exception e) {
+            e.printStackTrace();
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity(Map.of("error", "Error al consultar el estado del lote " + loteId)).build();
+        }
+    }
+
+    /**
+     * Progreso del lote por Server-Sent Events (alternativa a consultar /status periódicamente).
+     * Como EventSource no permite cabeceras, el token puede ir en el parámetro ?token=.
+     */
+    @GET
+    @Path("/lotes/{loteId}/eventos")
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    public void eventosLote(@PathParam("loteId") String loteId, @Context SseEventSink sink, @Context Sse sse) {
+        DifusorProgresoLotes.getInstance().suscribir(loteId, sink, sse);
     }
 
+    /**
+     * Mensajes del más reciente al más antiguo, paginados por cursor: la respuesta trae
+     * siguienteCursor, que se envía en "cursor" para la página siguiente. Con conTotal=true se
+     * incluye el total (leído de la tabla agregada de estadísticas) y con clasificacion=Alerta
+     * solo las alertas. El parámetro "page" mantiene la paginación antigua por número de página,
+     * más lenta en páginas profundas.
+     */
     @GET
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getMensajesPaginados(@QueryParam("page") @DefaultValue("0") int page, @QueryParam("size") @DefaultValue("10") int size, @QueryParam("asesor") String asesor) {
-        try {
-            PaginatedResponse<Mensaje> paginatedResponse = mensajeService.obtenerMensajesPaginado(asesor, page, size);
-            return Response.ok(paginatedResponse).build();
-        } catch(Exception e) {
-            e.printStackTrace();
-            return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity(Map.of("error", "Error al obtener mensajes paginados")).build();
-        }
+    public Response getMensajesPaginados(@QueryParam("page") Integer page, @QueryParam("size") @DefaultValue("10") int size, @QueryParam("asesor") String asesor,
+                                         @QueryParam("cursor") String cursor, @QueryParam("conTotal") @DefaultValue("false") boolean conTotal,
+                                         @QueryParam("clasificacion") String clasificacion) {
+        return paginar(null, asesor, clasificacion, page, size, cursor, conTotal, "Error al obtener mensajes paginados");
     }
     
     @GET
@@ -154,32 +245,262 @@ public class MensajeResource {
         }
     }
     
+    /**
+     * El archivo se escribe en la respuesta a medida que se leen los mensajes (ver ExportacionService).
+     * Si algo falla a mitad del envío ya no se puede cambiar el estado HTTP: la descarga queda cortada.
+     * Para exportaciones grandes es mejor POST /export/trabajos, que no ocupa la petición.
+     * Formato: parámetro formato (xlsx, csv, csv.gz, parquet) o, si no viene, la cabecera Accept; por defecto xlsx.
+     * Filtros opcionales: lote, asesor y rango de fecha del mensaje (desde/hasta, yyyy-MM-dd, ambos inclusive).
+     */
     @GET
     @Path("/export")
-    @Produces("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet")
-    public Response exportMensajes() {
-        try {
-            List<Mensaje> mensajes = mensajeService.obtenerTodosLosMensajes();
-            ByteArrayInputStream excelStream = excelExportService.exportarMensajesAExcel(mensajes);
-            String fecha = new SimpleDateFormat("yyyy-MM-dd").format(new Date());
-            String header = "attachment; filename=Reporte_Mensajes_" + fecha + ".xlsx";
-            return Response.ok(excelStream).header("Content-Disposition", header).build();
+    public Response exportMensajes(@QueryParam("lote") String lote, @QueryParam("asesor") String asesor,
+                                   @QueryParam("desde") String desde, @QueryParam("hasta") String hasta,
+                                   @QueryParam("formato") String formatoParam, @HeaderParam("Accept") String accept) {
+        FormatoExportacion formato;
+        FiltroExportacion filtro;
+        try {
+            formato = FormatoExportacion.elegir(formatoParam, accept);
+            filtro = leerFiltroExportacion(lote, asesor, desde, hasta);
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST).type(MediaType.APPLICATION_JSON).entity(Map.of("error", e.getMessage())).build();
+        }
+        StreamingOutput archivo = salida -> {
+            try {
+                exportacionService.exportar(filtro, formato, salida);
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Error al generar la exportación " + formato + ": " + e.getMessage());
+                e.printStackTrace();
+                throw e;
+            }
+        };
+        return Response.ok(archivo, formato.getTipoMime()).header("Content-Disposition", disposicion(formato, new Date())).build();
+    }
+
+    /**
+     * Lanza la exportación en segundo plano (mismos parámetros que GET /export) y responde 202 con
+     * el trabajo. Si ya existe el archivo para esos filtros y datos, el trabajo llega COMPLETADO.
+     */
+    @POST
+    @Path("/export/trabajos")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response crearTrabajoExportacion(@QueryParam("lote") String lote, @QueryParam("asesor") String asesor,
+                                            @QueryParam("desde") String desde, @QueryParam("hasta") String hasta,
+                                            @QueryParam("formato") String formatoParam, @HeaderParam("Accept") String accept) {
+        try {
+            FormatoExportacion formato = FormatoExportacion.elegir(formatoParam, accept);
+            FiltroExportacion filtro = leerFiltroExportacion(lote, asesor, desde, hasta);
+            TrabajoExportacion trabajo = planificadorExportaciones.solicitar(filtro, formato);
+            return Response.status(Response.Status.ACCEPTED)
+                    .header("Location", "mensajes/export/trabajos/" + trabajo.getId())
+                    .entity(trabajo).build();
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST).entity(Map.of("error", e.getMessage())).build();
+        } catch (RejectedExecutionException e) {
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE).entity(Map.of("error", e.getMessage())).build();
         } catch (Exception e) {
             e.printStackTrace();
-            return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity("Error al generar el archivo Excel.").build();
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity(Map.of("error", "Error al registrar la exportación.")).build();
         }
     }
 
+    @GET
+    @Path("/export/trabajos/{id}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getTrabajoExportacion(@PathParam("id") String id) {
+        TrabajoExportacion trabajo = planificadorExportaciones.obtener(id);
+        if (trabajo == null) {
+            return Response.status(Response.Status.NOT_FOUND).entity(Map.of("error", "La exportación no existe o ya caducó.")).build();
+        }
+        return Response.ok(trabajo).build();
+    }
+
+    /**
+     * Descarga el archivo de una exportación terminada. Admite un rango de bytes (Range: bytes=a-b,
+     * a- o -n) para reanudar descargas cortadas; con If-Range solo se respeta el rango si el ETag
+     * coincide. Varios rangos en la misma petición se responden con el archivo completo.
+     * Si el trabajo lo terminó otra réplica y esta no ve su archivo (EXPORTACION_SPOOL_DIR no
+     * compartido), se vuelve a generar en la respuesta con los filtros guardados, sin rangos.
+     */
+    @GET
+    @Path("/export/trabajos/{id}/archivo")
+    public Response descargarExportacion(@PathParam("id") String id, @HeaderParam("Range") String rango,
+                                         @HeaderParam("If-Range") String siRango) {
+        TrabajoExportacion trabajo = planificadorExportaciones.obtener(id);
+        if (trabajo == null || !trabajo.isFinalizado()) {
+            String error = trabajo == null ? "La exportación no existe o ya caducó." : "La exportación todavía no ha terminado.";
+            return Response.status(trabajo == null ? Response.Status.NOT_FOUND : Response.Status.CONFLICT).type(MediaType.APPLICATION_JSON).entity(Map.of("error", error)).build();
+        }
+        PlanificadorExportaciones.ArchivoExportado exportado = planificadorExportaciones.obtenerArchivo(trabajo);
+        if (exportado == null && TrabajoExportacion.COMPLETADO.equals(trabajo.getEstado())) {
+            return regenerarExportacion(trabajo);
+        }
+        if (exportado == null) {
+            return Response.status(Response.Status.GONE).type(MediaType.APPLICATION_JSON)
+                    .entity(Map.of("error", TrabajoExportacion.FALLIDO.equals(trabajo.getEstado()) ? "La exportación falló: " + trabajo.getMensajeError() : "El archivo ya no está disponible; solicite la exportación de nuevo."))
+                    .build();
+        }
+        try {
+            long tamano = Files.size(exportado.getArchivo());
+            String etag = "\"" + exportado.getClave() + "\"";
+            long desdeByte = 0;
+            long hastaByte = tamano - 1;
+            boolean parcial = false;
+            if (rango != null && (siRango == null || siRango.equals(etag))) {
+                long[] limites = leerRango(rango, tamano);
+                if (limites == null) {
+                    return Response.status(Response.Status.REQUESTED_RANGE_NOT_SATISFIABLE).header("Content-Range", "bytes */" + tamano).build();
+                }
+                if (limites.length == 2) {
+                    desdeByte = limites[0];
+                    hastaByte = limites[1];
+                    parcial = true;
+                }
+            }
+            final long inicio = desdeByte;
+            final long largo = hastaByte - desdeByte + 1;
+            StreamingOutput cuerpo = salida -> {
+                try (FileChannel canal = FileChannel.open(exportado.getArchivo(), StandardOpenOption.READ)) {
+                    WritableByteChannel destino = Channels.newChannel(salida);
+                    long enviados = 0;
+                    while (enviados < largo) {
+                        enviados += canal.transferTo(inicio + enviados, largo - enviados, destino);
+                    }
+                }
+            };
+            Response.ResponseBuilder respuesta = Response.status(parcial ? Response.Status.PARTIAL_CONTENT : Response.Status.OK)
+                    .entity(cuerpo)
+                    .type(exportado.getFormato().getTipoMime())
+                    .header("Accept-Ranges", "bytes")
+                    .header("ETag", etag)
+                    .header("Content-Length", largo)
+                    .header("Content-Disposition", disposicion(exportado.getFormato(), exportado.getFecha()));
+            if (parcial) {
+                respuesta.header("Content-Range", "bytes " + desdeByte + "-" + hastaByte + "/" + tamano);
+            }
+            return respuesta.build();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR).type(MediaType.APPLICATION_JSON).entity(Map.of("error", "No se pudo leer el archivo exportado.")).build();
+        }
+    }
+
+    // Sin ETag ni Accept-Ranges: el contenido refleja los datos actuales y puede no coincidir
+    // byte a byte con el archivo de la otra réplica.
+    private Response regenerarExportacion(TrabajoExportacion trabajo) {
+        FormatoExportacion formato = FormatoExportacion.elegir(trabajo.getFormato(), null);
+        System.out.println("La exportación " + trabajo.getId() + " se generó en " + trabajo.getNodo() + " y su archivo no está en esta réplica; se genera de nuevo.");
+        StreamingOutput cuerpo = salida -> {
+            try {
+                exportacionService.exportar(trabajo.toFiltro(), formato, salida);
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Error al regenerar la exportación " + trabajo.getId() + ": " + e.getMessage());
+                e.printStackTrace();
+                throw e;
+            }
+        };
+        return Response.ok(cuerpo)
+                .type(formato.getTipoMime())
+                .header("Content-Disposition", disposicion(formato, trabajo.getFechaCreacion()))
+                .build();
+    }
+
+    /**
+     * @return {desde, hasta} del rango pedido; un arreglo vacío si la cabecera no se entiende o pide
+     *         varios rangos (se sirve el archivo completo); null si el rango no cabe en el archivo.
+     */
+    private static long[] leerRango(String rango, long tamano) {
+        if (!rango.startsWith("bytes=") || rango.indexOf(',') >= 0) return new long[0];
+        String especificacion = rango.substring("bytes=".length()).trim();
+        int guion = especificacion.indexOf('-');
+        if (guion < 0) return new long[0];
+        try {
+            String primero = especificacion.substring(0, guion).trim();
+            String ultimo = especificacion.substring(guion + 1).trim();
+            if (primero.isEmpty()) {
+                // bytes=-n: los últimos n bytes.
+                long sufijo = Long.parseLong(ultimo);
+                if (sufijo <= 0 || tamano == 0) return null;
+                return new long[] {Math.max(0, tamano - sufijo), tamano - 1};
+            }
+            long desde = Long.parseLong(primero);
+            long hasta = ultimo.isEmpty() ? tamano - 1 : Math.min(Long.parseLong(ultimo), tamano - 1);
+            if (desde >= tamano || hasta < desde) return null;
+            return new long[] {desde, hasta};
+        } catch (NumberFormatException e) {
+            return new long[0];
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException Si las fechas no tienen el formato yyyy-MM-dd o el rango está invertido.
+     */
+    private static FiltroExportacion leerFiltroExportacion(String lote, String asesor, String desde, String hasta) {
+        try {
+            LocalDate fechaDesde = (desde == null || desde.isEmpty()) ? null : LocalDate.parse(desde);
+            LocalDate fechaHasta = (hasta == null || hasta.isEmpty()) ? null : LocalDate.parse(hasta);
+            if (fechaDesde != null && fechaHasta != null && fechaHasta.isBefore(fechaDesde)) {
+                throw new IllegalArgumentException("'hasta' no puede ser anterior a 'desde'.");
+            }
+            return new FiltroExportacion(
+                    (lote == null || lote.isEmpty()) ? null : lote,
+                    asesor,
+                    fechaDesde != null ? fechaDesde.atStartOfDay() : null,
+                    fechaHasta != null ? fechaHasta.plusDays(1).atStartOfDay() : null);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Las fechas deben tener el formato yyyy-MM-dd.");
+        }
+    }
+
+    private static String disposicion(FormatoExportacion formato, Date fecha) {
+        return "attachment; filename=Reporte_Mensajes_" + new SimpleDateFormat("yyyy-MM-dd").format(fecha) + "." + formato.getExtension();
+    }
+
     @GET
     @Path("/lote/{loteId}")
     @Produces(MediaType.APPLICATION_JSON)
-    public Response getMensajesPorLote(@PathParam("loteId") String loteId, @QueryParam("page") @DefaultValue("0") int page, @QueryParam("size") @DefaultValue("10") int size) {
+    public Response getMensajesPorLote(@PathParam("loteId") String loteId, @QueryParam("page") Integer page, @QueryParam("size") @DefaultValue("10") int size,
+                                       @QueryParam("cursor") String cursor, @QueryParam("conTotal") @DefaultValue("false") boolean conTotal,
+                                       @QueryParam("clasificacion") String clasificacion) {
+        return paginar(loteId, null, clasificacion, page, size, cursor, conTotal, "Error al obtener mensajes del lote " + loteId);
+    }
+
+    private Response paginar(String loteId, String asesor, String clasificacion, Integer page, int size, String cursor, boolean conTotal, String mensajeError) {
+        if (size < 1 || size > TAMANO_PAGINA_MAX) {
+            return Response.status(Response.Status.BAD_REQUEST).entity(Map.of("error", "El tamaño de página debe estar entre 1 y " + TAMANO_PAGINA_MAX + ".")).build();
+        }
         try {
-            var paginatedResponse = mensajeService.obtenerMensajesPaginadoPorLote(loteId, page, size);
-            return Response.ok(paginatedResponse).build();
+            if (page != null) {
+                PaginatedResponse<Mensaje> paginatedResponse = loteId != null
+                        ? mensajeService.obtenerMensajesPaginadoPorLote(loteId, page, size)
+                        : mensajeService.obtenerMensajesPaginado(asesor, page, size);
+                return Response.ok(paginatedResponse).build();
+            }
+            return Response.ok(mensajeService.obtenerMensajesPorCursor(asesor, loteId, clasificacion, cursor, size, conTotal)).build();
+        } catch (IllegalArgumentException e) {
+            return Response.status(Response.Status.BAD_REQUEST).entity(Map.of("error", e.getMessage())).build();
+        } catch(Exception e) {
+            e.printStackTrace();
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity(Map.of("error", mensajeError)).build();
+        }
+    }
+    
+    /**
+     * Plantillas del lote (mensajes que solo cambian en nombres, montos, fechas o números), de la más repetida a la menos.
+     */
+    @GET
+    @Path("/lote/{loteId}/plantillas")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getPlantillasPorLote(@PathParam("loteId") String loteId, @QueryParam("limite") @DefaultValue("50") int limite) {
+        if (limite <= 0 || limite > 1000) {
+            return Response.status(Response.Status.BAD_REQUEST).entity(Map.of("error", "El límite debe estar entre 1 y 1000.")).build();
+        }
+        try {
+            List<PlantillaStats> stats = mensajeService.obtenerEstadisticasPorPlantilla(loteId, limite);
+            return Response.ok(stats).build();
         } catch(Exception e) {
             e.printStackTrace();
-            return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity(java.util.Map.of("error", "Error al obtener mensajes del lote " + loteId)).build();
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity(Map.of("error", "Error al calcular las plantillas del lote " + loteId)).build();
         }
     }
     
@@ -0,0 +1,60 @@
+package com.ia.mensajes.agentemensajesia.resources;
+
+import com.ia.mensajes.agentemensajesia.ia.ClasificadorMensajes;
+import com.ia.mensajes.agentemensajesia.util.JPAUtil;
+import jakarta.persistence.EntityManager;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Sondas para el orquestador de contenedores (no requieren token).
+ * /salud/vivo responde siempre que el proceso atiende peticiones (liveness);
+ * /salud/listo responde 503 hasta que los modelos de IA están cargados y calentados y la BD
+ * contesta (readiness), así el balanceador no envía lotes a una réplica que aún arranca.
+ */
+@Path("/salud")
+@Produces(MediaType.APPLICATION_JSON)
+public class SaludResource {
+
+    @GET
+    @Path("/vivo")
+    public Response vivo() {
+        return Response.ok(Map.of("estado", "VIVO")).build();
+    }
+
+    @GET
+    @Path("/listo")
+    public Response listo() {
+        Map<String, Object> modelos = ClasificadorMensajes.getInstance().getEstadoCarga();
+        boolean baseDeDatos = baseDeDatosDisponible();
+        boolean listo = Boolean.TRUE.equals(modelos.get("listo")) && baseDeDatos;
+
+        Map<String, Object> respuesta = new LinkedHashMap<>();
+        respuesta.put("estado", listo ? "LISTO" : "NO_LISTO");
+        respuesta.put("modelos", modelos);
+        respuesta.put("baseDeDatos", baseDeDatos ? "OK" : "ERROR");
+        return Response.status(listo ? Response.Status.OK : Response.Status.SERVICE_UNAVAILABLE)
+                .entity(respuesta).build();
+    }
+
+    private boolean baseDeDatosDisponible() {
+        EntityManager em = null;
+        try {
+            em = JPAUtil.getEntityManagerFactory().createEntityManager();
+            em.createNativeQuery("SELECT 1").getSingleResult();
+            return true;
+        } catch (Exception e) {
+            System.err.println("SaludResource: la base de datos no responde: " + e.getMessage());
+            return false;
+        } finally {
+            if (em != null && em.isOpen()) {
+                em.close();
+            }
+        }
+    }
+}
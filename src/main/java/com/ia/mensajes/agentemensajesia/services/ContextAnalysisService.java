@@ -1,8 +1,11 @@
 package com.ia.mensajes.agentemensajesia.services;
 
-import java.io.IOException;
-import java.io.InputStream;
+import com.ia.mensajes.agentemensajesia.ia.EjecutorClasificacion;
+import com.ia.mensajes.agentemensajesia.ia.RegistroModelos;
+import com.ia.mensajes.agentemensajesia.util.PoolDeInstancias;
+import java.io.UncheckedIOException;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 // Se elimina la importación del Parser, que no se necesita.
@@ -13,31 +16,38 @@ import opennlp.tools.tokenize.TokenizerModel;
 public class ContextAnalysisService {
 
     private static ContextAnalysisService instance;
-    private Tokenizer tokenizer;
+    private volatile TokenizerModel tokenizerModel;
+    // TokenizerME no es seguro entre hilos: se prestan instancias del pool sobre el mismo modelo.
+    private PoolDeInstancias<Tokenizer> poolTokenizers;
 
     // Palabras que indican un contexto seguro o de negación
-    private static final Set<String> PALABRAS_NEGACION = new HashSet<>(Arrays.asList(
+    public static final Set<String> PALABRAS_NEGACION = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
         "no", "sin", "evite", "evitar", "evitando", "libre", "excepto", "ningun", "ninguna"
-    ));
+    )));
+    // Cuántas palabras antes de la palabra de alerta se buscan negaciones.
+    public static final int VENTANA_NEGACION = 3;
 
     private ContextAnalysisService() {}
 
     public void init() {
-        if (this.tokenizer == null) {
+        if (this.tokenizerModel == null) {
             try {
                 System.out.println("Iniciando ContextAnalysisService (Versión Definitiva y Ligera)...");
-                // Ahora solo carga el modelo de Tokenizer, que ya tienes y funciona.
-                try (InputStream tokenModelIn = getClass().getResourceAsStream("/models/es/es-token.bin")) {
-                    if (tokenModelIn == null) throw new IOException("No se encontró el modelo de tokenizer: es-token.bin");
-                    this.tokenizer = new TokenizerME(new TokenizerModel(tokenModelIn));
-                }
+                // El modelo de tokenizer es el mismo que usa el clasificador: se comparte (ver RegistroModelos).
+                this.tokenizerModel = RegistroModelos.getInstance().getTokenizerModel();
+                this.poolTokenizers = new PoolDeInstancias<>("tokenizer-contexto", EjecutorClasificacion.getTamanoPoolNLP(),
+                        () -> new TokenizerME(tokenizerModel));
                 System.out.println("ContextAnalysisService iniciado correctamente.");
-            } catch (IOException e) {
+            } catch (UncheckedIOException e) {
                 throw new RuntimeException("Fallo al cargar el modelo de tokenizer", e);
             }
         }
     }
 
+    public PoolDeInstancias<Tokenizer> getPoolTokenizers() {
+        return poolTokenizers;
+    }
+
     public static synchronized ContextAnalysisService getInstance() {
         if (instance == null) {
             instance = new ContextAnalysisService();
@@ -46,13 +56,15 @@ public class ContextAnalysisService {
     }
 
     /**
+     * El clasificador ya no usa este método (DetectorTerminosAlerta resuelve las negaciones en la
+     * misma pasada que encuentra los términos); se mantiene para comparar ambos enfoques.
      * Analiza una oración para determinar si una palabra de alerta está en un contexto de riesgo.
      * @param sentence La oración completa a analizar.
      * @param alertWord La palabra de alerta encontrada.
      * @return `false` si la palabra está negada o en un contexto seguro, `true` en caso contrario.
      */
     public boolean esContextoDeRiesgo(String sentence, String alertWord) {
-        String[] tokens = tokenizer.tokenize(sentence.toLowerCase());
+        String[] tokens = poolTokenizers.usar(tokenizer -> tokenizer.tokenize(sentence.toLowerCase()));
         int alertWordIndex = -1;
         for (int i = 0; i < tokens.length; i++) {
             if (tokens[i].equals(alertWord)) {
@@ -63,7 +75,7 @@ public class ContextAnalysisService {
         if (alertWordIndex == -1) return true; // Si no la encuentra (raro), se asume riesgo
 
         // Revisa la "ventana" de 3 palabras antes de la palabra de alerta
-        int windowSize = 3; 
+        int windowSize = VENTANA_NEGACION;
         for (int i = Math.max(0, alertWordIndex - windowSize); i < alertWordIndex; i++) {
             if (PALABRAS_NEGACION.contains(tokens[i])) {
                 System.out.println("Contexto seguro detectado para '" + alertWord + "' debido a la palabra '" + tokens[i] + "'");
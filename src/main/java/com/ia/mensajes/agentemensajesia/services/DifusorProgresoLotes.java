@@ -0,0 +1,222 @@
+package com.ia.mensajes.agentemensajesia.services;
+
+import com.ia.mensajes.agentemensajesia.model.TrabajoLote;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.sse.OutboundSseEvent;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseEventSink;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Envía por Server-Sent Events el progreso de los lotes a los dashboards suscritos.
+ * Un único hilo revisa una vez por segundo el estado de cada lote con suscriptores (en memoria
+ * si lo procesa esta réplica, si no desde la BD a través de RegistroTrabajos) y solo emite cuando
+ * algo cambió, así el coste no crece con el número de pestañas abiertas.
+ * Eventos: "progreso" (contadores y filas/s), "fase" (cambio de estado) y "fin" (estado final;
+ * después se cierra la conexión).
+ */
+public class DifusorProgresoLotes {
+
+    private static DifusorProgresoLotes instance;
+
+    private static final long INTERVALO_MS = 1000;
+    // Comentario periódico para detectar conexiones cerradas y evitar cortes de proxies por inactividad.
+    private static final long INTERVALO_KEEPALIVE_MS = 15000;
+    private static final long RECONEXION_MS = 3000;
+
+    private final Map<String, Suscripcion> suscripciones = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService ticker;
+    private volatile Sse sse;
+    private long ultimoKeepAlive = System.currentTimeMillis();
+
+    private static class Suscripcion {
+        final Set<SseEventSink> sinks = new CopyOnWriteArraySet<>();
+        String ultimaFirma;
+        String ultimoEstado;
+        long ultimasFilas;
+        long ultimoInstante;
+        double filasPorSegundo;
+    }
+
+    private DifusorProgresoLotes() {
+        this.ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "difusor-progreso");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        ticker.scheduleAtFixedRate(this::revisar, INTERVALO_MS, INTERVALO_MS, TimeUnit.MILLISECONDS);
+    }
+
+    public static synchronized DifusorProgresoLotes getInstance() {
+        if (instance == null) {
+            instance = new DifusorProgresoLotes();
+        }
+        return instance;
+    }
+
+    /**
+     * Suscribe una conexión SSE al progreso de un lote. Recibe el estado actual de inmediato
+     * y después solo los cambios.
+     */
+    public void suscribir(String loteId, SseEventSink sink, Sse sse) {
+        this.sse = sse;
+        // Todos los envíos se hacen desde el hilo del ticker, así un sink nunca se usa desde dos hilos.
+        ticker.execute(() -> {
+            Suscripcion suscripcion = suscripciones.computeIfAbsent(loteId, id -> new Suscripcion());
+            suscripcion.sinks.add(sink);
+            TrabajoLote trabajo = obtenerEstado(loteId);
+            Map<String, Object> datos = construirDatos(loteId, trabajo, suscripcion);
+            enviar(sink, crearEvento(trabajo.isFinalizado() || TrabajoLote.NO_ENCONTRADO.equals(trabajo.getStatus()) ? "fin" : "progreso", datos));
+            if (suscripcion.ultimaFirma == null) {
+                suscripcion.ultimaFirma = firma(trabajo, datos);
+                suscripcion.ultimoEstado = trabajo.getStatus();
+            }
+            if (trabajo.isFinalizado() || TrabajoLote.NO_ENCONTRADO.equals(trabajo.getStatus())) {
+                cerrar(sink);
+                suscripcion.sinks.remove(sink);
+            }
+        });
+    }
+
+    private void revisar() {
+        try {
+            long ahora = System.currentTimeMillis();
+            boolean tocaKeepAlive = ahora - ultimoKeepAlive >= INTERVALO_KEEPALIVE_MS;
+            if (tocaKeepAlive) ultimoKeepAlive = ahora;
+
+            for (Map.Entry<String, Suscripcion> entrada : suscripciones.entrySet()) {
+                String loteId = entrada.getKey();
+                Suscripcion suscripcion = entrada.getValue();
+                suscripcion.sinks.removeIf(SseEventSink::isClosed);
+                if (suscripcion.sinks.isEmpty()) {
+                    suscripciones.remove(loteId);
+                    continue;
+                }
+
+                TrabajoLote trabajo = obtenerEstado(loteId);
+                Map<String, Object> datos = construirDatos(loteId, trabajo, suscripcion);
+                String firma = firma(trabajo, datos);
+                boolean terminado = trabajo.isFinalizado() || TrabajoLote.NO_ENCONTRADO.equals(trabajo.getStatus());
+
+                if (!trabajo.getStatus().equals(suscripcion.ultimoEstado) && !terminado) {
+                    difundir(suscripcion, crearEvento("fase", datos));
+                }
+                if (terminado) {
+                    difundir(suscripcion, crearEvento("fin", datos));
+                    suscripcion.sinks.forEach(this::cerrar);
+                    suscripciones.remove(loteId);
+                    continue;
+                }
+                if (!firma.equals(suscripcion.ultimaFirma)) {
+                    difundir(suscripcion, crearEvento("progreso", datos));
+                } else if (tocaKeepAlive) {
+                    difundir(suscripcion, sse.newEventBuilder().comment("keepalive").build());
+                }
+                suscripcion.ultimaFirma = firma;
+                suscripcion.ultimoEstado = trabajo.getStatus();
+            }
+        } catch (Exception e) {
+            System.err.println("DifusorProgresoLotes: error al revisar el progreso de los lotes: " + e.getMessage());
+        }
+    }
+
+    private TrabajoLote obtenerEstado(String loteId) {
+        TrabajoLote trabajo = RegistroTrabajos.getInstance().obtener(loteId);
+        if (trabajo == null) {
+            return new TrabajoLote(loteId, TrabajoLote.NO_ENCONTRADO);
+        }
+        if (TrabajoLote.EN_COLA.equals(trabajo.getStatus())) {
+            trabajo.setPosicionCola(PlanificadorLotes.getInstance().posicionEnCola(loteId));
+        }
+        return trabajo;
+    }
+
+    private Map<String, Object> construirDatos(String loteId, TrabajoLote trabajo, Suscripcion suscripcion) {
+        long ahora = System.currentTimeMillis();
+        long filas = trabajo.getFilasPersistidas();
+        if (suscripcion.ultimoInstante > 0 && ahora > suscripcion.ultimoInstante && filas >= suscripcion.ultimasFilas) {
+            suscripcion.filasPorSegundo = (filas - suscripcion.ultimasFilas) * 1000.0 / (ahora - suscripcion.ultimoInstante);
+        }
+        suscripcion.ultimasFilas = filas;
+        suscripcion.ultimoInstante = ahora;
+
+        double filasPorSegundoMedia = 0;
+        if (trabajo.getFechaInicio() != null) {
+            long fin = trabajo.getFechaFin() != null ? trabajo.getFechaFin().getTime() : ahora;
+            long duracion = fin - trabajo.getFechaInicio().getTime();
+            if (duracion > 0) filasPorSegundoMedia = filas * 1000.0 / duracion;
+        }
+
+        Map<String, Object> datos = new LinkedHashMap<>();
+        datos.put("loteId", loteId);
+        datos.put("status", trabajo.getStatus());
+        datos.put("progress", trabajo.getProgress());
+        datos.put("posicionCola", trabajo.getPosicionCola());
+        datos.put("filasLeidas", trabajo.getFilasLeidas());
+        datos.put("filasClasificadas", trabajo.getFilasClasificadas());
+        datos.put("filasPersistidas", filas);
+        datos.put("errores", trabajo.getErrores());
+        datos.put("filasPorSegundo", Math.round(suscripcion.filasPorSegundo));
+        datos.put("filasPorSegundoMedia", Math.round(filasPorSegundoMedia));
+        datos.put("mensajeError", trabajo.getMensajeError());
+        datos.put("ortografiaPendiente", trabajo.isOrtografiaPendiente());
+        return datos;
+    }
+
+    // Lo que, si cambia, merece un evento (las filas/s cambian solo si cambian los contadores).
+    private String firma(TrabajoLote trabajo, Map<String, Object> datos) {
+        return trabajo.getStatus() + "|" + trabajo.getProgress() + "|" + datos.get("posicionCola") + "|"
+                + trabajo.getFilasLeidas() + "|" + trabajo.getFilasClasificadas() + "|" + trabajo.getFilasPersistidas();
+    }
+
+    private OutboundSseEvent crearEvento(String nombre, Map<String, Object> datos) {
+        return sse.newEventBuilder()
+                .name(nombre)
+                .reconnectDelay(RECONEXION_MS)
+                .mediaType(MediaType.APPLICATION_JSON_TYPE)
+                .data(Map.class, datos)
+                .build();
+    }
+
+    private void difundir(Suscripcion suscripcion, OutboundSseEvent evento) {
+        for (SseEventSink sink : suscripcion.sinks) {
+            enviar(sink, evento);
+        }
+    }
+
+    private void enviar(SseEventSink sink, OutboundSseEvent evento) {
+        if (sink.isClosed()) return;
+        try {
+            sink.send(evento).whenComplete((r, falla) -> {
+                if (falla != null) cerrar(sink);
+            });
+        } catch (Exception e) {
+            cerrar(sink);
+        }
+    }
+
+    private void cerrar(SseEventSink sink) {
+        try {
+            sink.close();
+        } catch (Exception e) {
+            // La conexión ya estaba cerrada por el cliente.
+        }
+    }
+
+    public int getSuscriptores() {
+        return suscripciones.values().stream().mapToInt(s -> s.sinks.size()).sum();
+    }
+
+    public void shutdown() {
+        ticker.shutdownNow();
+        suscripciones.values().forEach(s -> s.sinks.forEach(this::cerrar));
+        suscripciones.clear();
+    }
+}
@@ -0,0 +1,98 @@
+package com.ia.mensajes.agentemensajesia.services;
+
+import com.ia.mensajes.agentemensajesia.model.Mensaje;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeFormatter;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * CSV según RFC 4180 (separador coma, fin de línea CRLF, comillas dobles solo en los campos que
+ * las necesitan) en UTF-8. A diferencia del Excel, cada fila sale hacia el cliente en cuanto se
+ * lee: solo se retiene el buffer de escritura. Con gzip la compresión se hace al vuelo sobre la
+ * misma salida. Las fechas van en ISO-8601: fechaHoraMensaje tal como viene del archivo y
+ * fechaProcesamiento en UTC.
+ */
+class EscritorCsv implements EscritorExportacion {
+
+    static final String[] COLUMNAS = {
+        "id", "lote", "asesor", "aplicacion", "id_cliente", "fecha_hora_mensaje",
+        "fecha_procesamiento", "clasificacion", "observacion", "plantilla_id", "texto"
+    };
+    private static final int TAMANO_BUFFER = 64 * 1024;
+
+    private final OutputStream salida;
+    private final GZIPOutputStream gzip;
+    private final Writer writer;
+
+    EscritorCsv(OutputStream salida, boolean comprimir) throws IOException {
+        this.salida = salida;
+        this.gzip = comprimir ? new GZIPOutputStream(salida, TAMANO_BUFFER) : null;
+        this.writer = new BufferedWriter(new OutputStreamWriter(comprimir ? gzip : salida, StandardCharsets.UTF_8), TAMANO_BUFFER);
+        escribirFila(COLUMNAS);
+    }
+
+    @Override
+    public void escribir(Mensaje mensaje) throws IOException {
+        escribirFila(new String[] {
+            String.valueOf(mensaje.getId()),
+            mensaje.getLote(),
+            mensaje.getNombreAsesor(),
+            mensaje.getAplicacion(),
+            mensaje.getIdCliente(),
+            mensaje.getFechaHoraMensaje() != null ? mensaje.getFechaHoraMensaje().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME) : null,
+            mensaje.getFechaProcesamiento() != null ? mensaje.getFechaProcesamiento().toInstant().toString() : null,
+            mensaje.getClasificacion(),
+            mensaje.getObservacion(),
+            mensaje.getPlantillaId(),
+            mensaje.getTexto()
+        });
+    }
+
+    @Override
+    public void terminar() throws IOException {
+        writer.flush();
+        if (gzip != null) {
+            // Escribe el final del gzip sin cerrar la respuesta.
+            gzip.finish();
+        }
+        salida.flush();
+    }
+
+    private void escribirFila(String[] valores) throws IOException {
+        for (int i = 0; i < valores.length; i++) {
+            if (i > 0) writer.write(',');
+            escribirCampo(valores[i]);
+        }
+        writer.write("\r\n");
+    }
+
+    // Un valor nulo queda como campo vacío.
+    private void escribirCampo(String valor) throws IOException {
+        if (valor == null || valor.isEmpty()) return;
+        if (!necesitaComillas(valor)) {
+            writer.write(valor);
+            return;
+        }
+        writer.write('"');
+        for (int i = 0; i < valor.length(); i++) {
+            char c = valor.charAt(i);
+            if (c == '"') writer.write('"');
+            writer.write(c);
+        }
+        writer.write('"');
+    }
+
+    private static boolean necesitaComillas(String valor) {
+        for (int i = 0; i < valor.length(); i++) {
+            char c = valor.charAt(i);
+            if (c == ',' || c == '"' || c == '\r' || c == '\n') return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,126 @@
+package com.ia.mensajes.agentemensajesia.services;
+
+import com.ia.mensajes.agentemensajesia.model.Mensaje;
+import com.ia.mensajes.agentemensajesia.util.ConfiguracionUtil;
+import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * El informe en Excel: una sola pasada que reparte cada fila a la hoja de todos y a la de su
+ * clasificación, escrito con SXSSF, que solo mantiene en memoria las últimas EXPORTACION_VENTANA
+ * filas de cada hoja (por defecto 100) y vuelca el resto a un temporal comprimido. El ancho de
+ * las columnas se calcula con las primeras filas de cada hoja en lugar de autoSizeColumn, que
+ * tendría que medir la hoja entera. El libro solo se serializa en terminar(), así que nada llega
+ * a la salida hasta que se leyó el último mensaje.
+ */
+class EscritorExcel implements EscritorExportacion {
+
+    private static final String[] COLUMNAS = {"ID", "Asesor", "Aplicación", "ID Cliente", "Fecha Mensaje", "Mensaje", "Clasificación", "Observación"};
+    private static final DateTimeFormatter FORMATO_FECHA = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss");
+
+    private static final int VENTANA_FILAS = ConfiguracionUtil.leerEnteroPositivo("EXPORTACION_VENTANA", 100);
+    // Filas de cada hoja que se miden para fijar el ancho de las columnas.
+    private static final int FILAS_MUESTRA = 500;
+    private static final int ANCHO_MAXIMO = 80;
+
+    private final OutputStream salida;
+    private final SXSSFWorkbook workbook;
+    private final HojaDeReporte todos;
+    private final HojaDeReporte buenos;
+    private final HojaDeReporte alertas;
+
+    EscritorExcel(OutputStream salida) {
+        this.salida = salida;
+        this.workbook = new SXSSFWorkbook(VENTANA_FILAS);
+        workbook.setCompressTempFiles(true);
+        CellStyle estiloEncabezado = crearEstiloEncabezado(workbook);
+        this.todos = new HojaDeReporte(workbook, "Todos los Mensajes", estiloEncabezado);
+        this.buenos = new HojaDeReporte(workbook, "Mensajes Buenos", estiloEncabezado);
+        this.alertas = new HojaDeReporte(workbook, "Mensajes Alerta", estiloEncabezado);
+    }
+
+    @Override
+    public void escribir(Mensaje mensaje) {
+        todos.escribir(mensaje);
+        if ("Bueno".equals(mensaje.getClasificacion())) {
+            buenos.escribir(mensaje);
+        } else if ("Alerta".equals(mensaje.getClasificacion())) {
+            alertas.escribir(mensaje);
+        }
+    }
+
+    @Override
+    public void terminar() throws IOException {
+        todos.ajustarColumnas();
+        buenos.ajustarColumnas();
+        alertas.ajustarColumnas();
+        workbook.write(salida);
+    }
+
+    @Override
+    public void close() throws IOException {
+        // Borra los temporales de las hojas.
+        workbook.dispose();
+        workbook.close();
+    }
+
+    private CellStyle crearEstiloEncabezado(Workbook workbook) {
+        Font headerFont = workbook.createFont();
+        headerFont.setBold(true);
+        CellStyle headerCellStyle = workbook.createCellStyle();
+        headerCellStyle.setFont(headerFont);
+        return headerCellStyle;
+    }
+
+    /**
+     * Una hoja que se va llenando fila a fila y mide el texto de las primeras FILAS_MUESTRA.
+     */
+    private static class HojaDeReporte {
+        private final SXSSFSheet sheet;
+        private final int[] anchos = new int[COLUMNAS.length];
+        private int rowIdx = 1;
+
+        HojaDeReporte(SXSSFWorkbook workbook, String nombreHoja, CellStyle estiloEncabezado) {
+            this.sheet = workbook.createSheet(nombreHoja);
+            Row headerRow = sheet.createRow(0);
+            for (int i = 0; i < COLUMNAS.length; i++) {
+                Cell cell = headerRow.createCell(i);
+                cell.setCellValue(COLUMNAS[i]);
+                cell.setCellStyle(estiloEncabezado);
+                anchos[i] = COLUMNAS[i].length();
+            }
+        }
+
+        void escribir(Mensaje mensaje) {
+            String fechaFormateada = mensaje.getFechaHoraMensaje() != null ? mensaje.getFechaHoraMensaje().format(FORMATO_FECHA) : "N/A";
+            String[] valores = {
+                null, mensaje.getNombreAsesor(), mensaje.getAplicacion(), mensaje.getIdCliente(), fechaFormateada,
+                mensaje.getTexto(), mensaje.getClasificacion(), mensaje.getObservacion()
+            };
+            Row row = sheet.createRow(rowIdx);
+            row.createCell(0).setCellValue(mensaje.getId());
+            for (int i = 1; i < valores.length; i++) {
+                row.createCell(i).setCellValue(valores[i]);
+            }
+            if (rowIdx <= FILAS_MUESTRA) {
+                anchos[0] = Math.max(anchos[0], String.valueOf(mensaje.getId()).length());
+                for (int i = 1; i < valores.length; i++) {
+                    if (valores[i] != null) anchos[i] = Math.max(anchos[i], valores[i].length());
+                }
+            }
+            rowIdx++;
+        }
+
+        void ajustarColumnas() {
+            for (int i = 0; i < anchos.length; i++) {
+                // El ancho se expresa en 1/256 de carácter; +2 de margen.
+                sheet.setColumnWidth(i, Math.min(anchos[i] + 2, ANCHO_MAXIMO) * 256);
+            }
+        }
+    }
+}
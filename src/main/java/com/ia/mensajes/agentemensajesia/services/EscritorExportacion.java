@@ -0,0 +1,20 @@
+package com.ia.mensajes.agentemensajesia.services;
+
+import com.ia.mensajes.agentemensajesia.model.Mensaje;
+import java.io.IOException;
+
+/**
+ * Escribe los mensajes de una exportación en un formato, fila a fila y a medida que se leen de la BD.
+ * terminar() completa el archivo (pies, índices, vaciado de buffers) sin cerrar la salida;
+ * close() libera los recursos propios (temporales) aunque la exportación haya fallado.
+ */
+interface EscritorExportacion extends AutoCloseable {
+
+    void escribir(Mensaje mensaje) throws IOException;
+
+    void terminar() throws IOException;
+
+    @Override
+    default void close() throws IOException {
+    }
+}
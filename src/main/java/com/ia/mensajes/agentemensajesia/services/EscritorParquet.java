@@ -0,0 +1,332 @@
+package com.ia.mensajes.agentemensajesia.services;
+
+import com.ia.mensajes.agentemensajesia.model.Mensaje;
+import com.ia.mensajes.agentemensajesia.util.ConfiguracionUtil;
+import org.apache.parquet.format.ColumnChunk;
+import org.apache.parquet.format.ColumnMetaData;
+import org.apache.parquet.format.CompressionCodec;
+import org.apache.parquet.format.ConvertedType;
+import org.apache.parquet.format.DataPageHeader;
+import org.apache.parquet.format.Encoding;
+import org.apache.parquet.format.FieldRepetitionType;
+import org.apache.parquet.format.FileMetaData;
+import org.apache.parquet.format.LogicalType;
+import org.apache.parquet.format.MilliSeconds;
+import org.apache.parquet.format.PageHeader;
+import org.apache.parquet.format.PageType;
+import org.apache.parquet.format.RowGroup;
+import org.apache.parquet.format.SchemaElement;
+import org.apache.parquet.format.StringType;
+import org.apache.parquet.format.TimeUnit;
+import org.apache.parquet.format.TimestampType;
+import org.apache.parquet.format.Type;
+import org.apache.parquet.format.Util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exportación en Parquet (columnar, comprimido con gzip) para cargar los mensajes en BI sin
+ * convertir nada. Se escribe directamente el formato con las estructuras Thrift oficiales
+ * (parquet-format-structures) en lugar de parquet-hadoop, que arrastra Hadoop y no escribe en un
+ * OutputStream. Las filas se acumulan por columnas hasta EXPORTACION_PARQUET_FILAS (por defecto
+ * 20000) y entonces se vuelca un grupo de filas con una página PLAIN por columna; la memoria queda
+ * acotada a un grupo y el pie con los metadatos se escribe en terminar().
+ */
+class EscritorParquet implements EscritorExportacion {
+
+    private static final byte[] MAGIA = "PAR1".getBytes(StandardCharsets.US_ASCII);
+    private static final int FILAS_POR_GRUPO = ConfiguracionUtil.leerEnteroPositivo("EXPORTACION_PARQUET_FILAS", 20000);
+
+    private final SalidaContada salida;
+    private final List<Columna> columnas;
+    private final List<RowGroup> grupos = new ArrayList<>();
+    private int filasEnGrupo = 0;
+    private long filasTotales = 0;
+
+    EscritorParquet(OutputStream salida) throws IOException {
+        this.salida = new SalidaContada(salida);
+        this.columnas = Arrays.asList(
+            new ColumnaEntera("id", false, null, Mensaje::getId),
+            new ColumnaTexto("lote", Mensaje::getLote),
+            new ColumnaTexto("asesor", Mensaje::getNombreAsesor),
+            new ColumnaTexto("aplicacion", Mensaje::getAplicacion),
+            new ColumnaTexto("id_cliente", Mensaje::getIdCliente),
+            // Hora local del archivo cargado, sin zona: isAdjustedToUTC=false.
+            new ColumnaEntera("fecha_hora_mensaje", true, new TimestampType(false, TimeUnit.MILLIS(new MilliSeconds())),
+                    m -> m.getFechaHoraMensaje() != null ? m.getFechaHoraMensaje().toInstant(ZoneOffset.UTC).toEpochMilli() : null),
+            new ColumnaEntera("fecha_procesamiento", true, new TimestampType(true, TimeUnit.MILLIS(new MilliSeconds())),
+                    m -> m.getFechaProcesamiento() != null ? m.getFechaProcesamiento().getTime() : null),
+            new ColumnaTexto("clasificacion", Mensaje::getClasificacion),
+            new ColumnaTexto("observacion", Mensaje::getObservacion),
+            new ColumnaTexto("plantilla_id", Mensaje::getPlantillaId),
+            new ColumnaTexto("texto", Mensaje::getTexto)
+        );
+        this.salida.write(MAGIA);
+    }
+
+    @Override
+    public void escribir(Mensaje mensaje) throws IOException {
+        for (Columna columna : columnas) {
+            columna.agregar(mensaje);
+        }
+        filasEnGrupo++;
+        filasTotales++;
+        if (filasEnGrupo >= FILAS_POR_GRUPO) {
+            volcarGrupo();
+        }
+    }
+
+    @Override
+    public void terminar() throws IOException {
+        if (filasEnGrupo > 0) {
+            volcarGrupo();
+        }
+        FileMetaData metadatos = new FileMetaData(1, crearEsquema(), filasTotales, grupos);
+        metadatos.setCreated_by("AgenteMensajesIA");
+        long inicioPie = salida.getPosicion();
+        Util.writeFileMetaData(metadatos, salida);
+        escribirEnteroLE(salida, (int) (salida.getPosicion() - inicioPie));
+        salida.write(MAGIA);
+        salida.flush();
+    }
+
+    private List<SchemaElement> crearEsquema() {
+        List<SchemaElement> esquema = new ArrayList<>();
+        esquema.add(new SchemaElement("mensaje").setNum_children(columnas.size()));
+        for (Columna columna : columnas) {
+            esquema.add(columna.elementoEsquema());
+        }
+        return esquema;
+    }
+
+    private void volcarGrupo() throws IOException {
+        long inicioGrupo = salida.getPosicion();
+        List<ColumnChunk> bloques = new ArrayList<>();
+        long bytesSinComprimir = 0;
+        for (Columna columna : columnas) {
+            ColumnMetaData metadatos = columna.volcar(salida, filasEnGrupo);
+            ColumnChunk bloque = new ColumnChunk(metadatos.getData_page_offset());
+            bloque.setMeta_data(metadatos);
+            bloques.add(bloque);
+            bytesSinComprimir += metadatos.getTotal_uncompressed_size();
+        }
+        RowGroup grupo = new RowGroup(bloques, bytesSinComprimir, filasEnGrupo);
+        grupo.setFile_offset(inicioGrupo);
+        grupo.setTotal_compressed_size(salida.getPosicion() - inicioGrupo);
+        grupos.add(grupo);
+        filasEnGrupo = 0;
+    }
+
+    /**
+     * Los valores de una columna del grupo en curso. Las columnas opcionales llevan además los
+     * niveles de definición (1 = hay valor, 0 = nulo) codificados como tramos RLE a medida que
+     * llegan; los nulos no ocupan espacio entre los valores.
+     */
+    private abstract static class Columna {
+        final String nombre;
+        final boolean opcional;
+        final ByteArrayOutputStream valores = new ByteArrayOutputStream();
+        final ByteArrayOutputStream niveles = new ByteArrayOutputStream();
+        private int nivelActual = -1;
+        private int largoTramo = 0;
+
+        Columna(String nombre, boolean opcional) {
+            this.nombre = nombre;
+            this.opcional = opcional;
+        }
+
+        abstract void agregar(Mensaje mensaje);
+
+        abstract Type tipo();
+
+        abstract SchemaElement elementoEsquema();
+
+        SchemaElement elementoBase() {
+            return new SchemaElement(nombre)
+                    .setType(tipo())
+                    .setRepetition_type(opcional ? FieldRepetitionType.OPTIONAL : FieldRepetitionType.REQUIRED);
+        }
+
+        void registrarNivel(boolean presente) {
+            if (!opcional) return;
+            int nivel = presente ? 1 : 0;
+            if (nivel != nivelActual && largoTramo > 0) {
+                cerrarTramo();
+            }
+            nivelActual = nivel;
+            largoTramo++;
+        }
+
+        private void cerrarTramo() {
+            // Tramo RLE del híbrido RLE/bit-packing: cabecera (largo << 1) en varint y el valor en un byte (ancho 1 bit).
+            escribirVarint(niveles, largoTramo << 1);
+            niveles.write(nivelActual);
+            largoTramo = 0;
+        }
+
+        /** Escribe la página de datos de la columna en la salida y deja la columna vacía para el siguiente grupo. */
+        ColumnMetaData volcar(SalidaContada salida, int filas) throws IOException {
+            ByteArrayOutputStream pagina = new ByteArrayOutputStream(niveles.size() + valores.size() + 8);
+            if (opcional) {
+                if (largoTramo > 0) cerrarTramo();
+                escribirEnteroLE(pagina, niveles.size());
+                niveles.writeTo(pagina);
+            }
+            valores.writeTo(pagina);
+            ByteArrayOutputStream comprimida = new ByteArrayOutputStream(pagina.size() / 2 + 64);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(comprimida)) {
+                pagina.writeTo(gzip);
+            }
+
+            PageHeader cabecera = new PageHeader(PageType.DATA_PAGE, pagina.size(), comprimida.size());
+            cabecera.setData_page_header(new DataPageHeader(filas, Encoding.PLAIN, Encoding.RLE, Encoding.RLE));
+            long inicio = salida.getPosicion();
+            Util.writePageHeader(cabecera, salida);
+            long largoCabecera = salida.getPosicion() - inicio;
+            comprimida.writeTo(salida);
+
+            ColumnMetaData metadatos = new ColumnMetaData(tipo(), Arrays.asList(Encoding.PLAIN, Encoding.RLE),
+                    List.of(nombre), CompressionCodec.GZIP, filas,
+                    largoCabecera + pagina.size(), largoCabecera + comprimida.size(), inicio);
+            valores.reset();
+            niveles.reset();
+            nivelActual = -1;
+            return metadatos;
+        }
+    }
+
+    private static class ColumnaTexto extends Columna {
+        private final Function<Mensaje, String> extractor;
+
+        ColumnaTexto(String nombre, Function<Mensaje, String> extractor) {
+            super(nombre, true);
+            this.extractor = extractor;
+        }
+
+        @Override
+        void agregar(Mensaje mensaje) {
+            String valor = extractor.apply(mensaje);
+            registrarNivel(valor != null);
+            if (valor != null) {
+                byte[] bytes = valor.getBytes(StandardCharsets.UTF_8);
+                escribirEnteroLE(valores, bytes.length);
+                valores.write(bytes, 0, bytes.length);
+            }
+        }
+
+        @Override
+        Type tipo() {
+            return Type.BYTE_ARRAY;
+        }
+
+        @Override
+        SchemaElement elementoEsquema() {
+            return elementoBase()
+                    .setLogicalType(LogicalType.STRING(new StringType()))
+                    .setConverted_type(ConvertedType.UTF8);
+        }
+    }
+
+    private static class ColumnaEntera extends Columna {
+        private final TimestampType tipoFecha;
+        private final Function<Mensaje, Long> extractor;
+
+        ColumnaEntera(String nombre, boolean opcional, TimestampType tipoFecha, Function<Mensaje, Long> extractor) {
+            super(nombre, opcional);
+            this.tipoFecha = tipoFecha;
+            this.extractor = extractor;
+        }
+
+        @Override
+        void agregar(Mensaje mensaje) {
+            Long valor = extractor.apply(mensaje);
+            registrarNivel(valor != null);
+            if (valor != null) {
+                long v = valor;
+                for (int i = 0; i < 8; i++) {
+                    valores.write((int) (v >>> (8 * i)));
+                }
+            }
+        }
+
+        @Override
+        Type tipo() {
+            return Type.INT64;
+        }
+
+        @Override
+        SchemaElement elementoEsquema() {
+            SchemaElement elemento = elementoBase();
+            if (tipoFecha != null) {
+                elemento.setLogicalType(LogicalType.TIMESTAMP(tipoFecha));
+                // El tipo convertido antiguo solo describe marcas de tiempo en UTC.
+                if (tipoFecha.isIsAdjustedToUTC()) {
+                    elemento.setConverted_type(ConvertedType.TIMESTAMP_MILLIS);
+                }
+            }
+            return elemento;
+        }
+    }
+
+    private static void escribirEnteroLE(OutputStream destino, int valor) throws IOException {
+        destino.write(valor);
+        destino.write(valor >>> 8);
+        destino.write(valor >>> 16);
+        destino.write(valor >>> 24);
+    }
+
+    private static void escribirEnteroLE(ByteArrayOutputStream destino, int valor) {
+        destino.write(valor);
+        destino.write(valor >>> 8);
+        destino.write(valor >>> 16);
+        destino.write(valor >>> 24);
+    }
+
+    private static void escribirVarint(ByteArrayOutputStream destino, int valor) {
+        while ((valor & ~0x7F) != 0) {
+            destino.write((valor & 0x7F) | 0x80);
+            valor >>>= 7;
+        }
+        destino.write(valor);
+    }
+
+    /** Lleva la posición en el archivo, que Parquet necesita para los desplazamientos del pie. No cierra la respuesta. */
+    private static class SalidaContada extends FilterOutputStream {
+        private long posicion = 0;
+
+        SalidaContada(OutputStream salida) {
+            super(salida);
+        }
+
+        long getPosicion() {
+            return posicion;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            posicion++;
+        }
+
+        @Override
+        public void write(byte[] b, int desde, int largo) throws IOException {
+            out.write(b, desde, largo);
+            posicion += largo;
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
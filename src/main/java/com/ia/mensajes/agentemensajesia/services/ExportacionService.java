@@ -0,0 +1,44 @@
+package com.ia.mensajes.agentemensajesia.services;
+
+import com.ia.mensajes.agentemensajesia.dao.MensajeDAO;
+import com.ia.mensajes.agentemensajesia.model.FiltroExportacion;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Exportación de los mensajes con memoria acotada en cualquiera de los FormatoExportacion: los
+ * mensajes se leen de la BD con un cursor (MensajeDAO.recorrerMensajes) en una sola pasada y cada
+ * uno se entrega al escritor del formato, que decide cuánto retiene (una ventana de filas en XLSX,
+ * el buffer de escritura en CSV, un grupo de filas en Parquet).
+ */
+public class ExportacionService {
+
+    private final MensajeDAO mensajeDAO = new MensajeDAO();
+
+    /**
+     * Escribe los mensajes del filtro en la salida con el formato pedido.
+     * @param filtro Los mensajes a exportar (lote, asesor, rango de fechas).
+     * @param formato El formato del archivo.
+     * @param salida El flujo de la respuesta; no se cierra.
+     * @return El número de mensajes exportados.
+     * @throws IOException Si ocurre un error al escribir el archivo.
+     */
+    public long exportar(FiltroExportacion filtro, FormatoExportacion formato, OutputStream salida) throws IOException {
+        try (EscritorExportacion escritor = formato.crearEscritor(salida)) {
+            long filas = mensajeDAO.recorrerMensajes(filtro, mensaje -> {
+                try {
+                    escritor.escribir(mensaje);
+                } catch (IOException e) {
+                    // El consumidor del cursor no admite excepciones comprobadas; se desenvuelve abajo.
+                    throw new UncheckedIOException(e);
+                }
+            });
+            escritor.terminar();
+            return filas;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+}
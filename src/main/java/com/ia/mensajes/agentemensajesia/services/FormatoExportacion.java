@@ -0,0 +1,58 @@
+package com.ia.mensajes.agentemensajesia.services;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Formatos de /mensajes/export. XLSX es el informe con hojas por clasificación; CSV y Parquet
+ * son para cargas masivas (BI): una fila por mensaje con todas las columnas y sin límite de filas.
+ */
+public enum FormatoExportacion {
+    XLSX("xlsx", "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet", "xlsx"),
+    CSV("csv", "text/csv; charset=UTF-8", "csv"),
+    CSV_GZ("csv.gz", "application/gzip", "csv.gz"),
+    PARQUET("parquet", "application/vnd.apache.parquet", "parquet");
+
+    private final String parametro;
+    private final String tipoMime;
+    private final String extension;
+
+    FormatoExportacion(String parametro, String tipoMime, String extension) {
+        this.parametro = parametro;
+        this.tipoMime = tipoMime;
+        this.extension = extension;
+    }
+
+    public String getTipoMime() { return tipoMime; }
+    public String getExtension() { return extension; }
+
+    /**
+     * Elige el formato por el parámetro "formato" o, si no viene, por la cabecera Accept.
+     * Sin ninguno de los dos (o con un Accept genérico) se usa XLSX.
+     * @throws IllegalArgumentException Si el parámetro no corresponde a ningún formato.
+     */
+    public static FormatoExportacion elegir(String parametro, String accept) {
+        if (parametro != null && !parametro.isEmpty()) {
+            for (FormatoExportacion formato : values()) {
+                if (formato.parametro.equalsIgnoreCase(parametro.trim())) return formato;
+            }
+            throw new IllegalArgumentException("Formato no soportado: '" + parametro + "'. Use xlsx, csv, csv.gz o parquet.");
+        }
+        if (accept != null) {
+            String tipos = accept.toLowerCase();
+            if (tipos.contains("application/vnd.apache.parquet")) return PARQUET;
+            if (tipos.contains("application/gzip")) return CSV_GZ;
+            if (tipos.contains("text/csv")) return CSV;
+        }
+        return XLSX;
+    }
+
+    EscritorExportacion crearEscritor(OutputStream salida) throws IOException {
+        switch (this) {
+            case CSV: return new EscritorCsv(salida, false);
+            case CSV_GZ: return new EscritorCsv(salida, true);
+            case PARQUET: return new EscritorParquet(salida);
+            default: return new EscritorExcel(salida);
+        }
+    }
+}
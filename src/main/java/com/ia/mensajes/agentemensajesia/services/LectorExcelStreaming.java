@@ -0,0 +1,242 @@
+package com.ia.mensajes.agentemensajesia.services;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Lector de Excel basado en eventos SAX (XSSFReader). A diferencia de XSSFWorkbook,
+ * nunca construye el árbol completo del libro: cada fila se entrega al consumidor
+ * apenas se termina de leer, por lo que la memoria usada no depende del número de filas.
+ */
+public class LectorExcelStreaming {
+
+    // Columnas del reporte del contact center que nos interesan.
+    private static final int COL_APLICACION = 0;
+    private static final int COL_ID_CLIENTE = 1;
+    private static final int COL_TEXTO = 7;
+    private static final int COL_ASESOR = 9;
+    private static final int COL_FECHA = 10;
+
+    /**
+     * Fila del Excel con solo las columnas que usa la clasificación.
+     */
+    public static class FilaExcel {
+        private final int numeroFila;
+        private String aplicacion;
+        private String idCliente;
+        private String texto;
+        private String nombreAsesor;
+        private LocalDateTime fechaHoraMensaje;
+
+        public FilaExcel(int numeroFila) { this.numeroFila = numeroFila; }
+
+        public int getNumeroFila() { return numeroFila; }
+        public String getAplicacion() { return aplicacion; }
+        public String getIdCliente() { return idCliente; }
+        public String getTexto() { return texto; }
+        public String getNombreAsesor() { return nombreAsesor; }
+        public LocalDateTime getFechaHoraMensaje() { return fechaHoraMensaje; }
+    }
+
+    /**
+     * Recorre la primera hoja del archivo fila por fila, saltando la fila de encabezados.
+     * @param archivo El archivo .xlsx a leer.
+     * @param consumidor Recibe cada fila con las columnas 0, 1, 7, 9 y 10.
+     * @param progreso Recibe el porcentaje aproximado (0-99) de la hoja ya leído.
+     * @throws Exception Si el archivo no es un .xlsx válido o falla el parseo.
+     */
+    public void leer(File archivo, Consumer<FilaExcel> consumidor, IntConsumer progreso) throws Exception {
+        OPCPackage paquete = OPCPackage.open(archivo, PackageAccess.READ);
+        try {
+            XSSFReader reader = new XSSFReader(paquete);
+            ReadOnlySharedStringsTable sharedStrings = new ReadOnlySharedStringsTable(paquete, false);
+            StylesTable estilos = reader.getStylesTable();
+            boolean fechas1904 = usaFechas1904(reader);
+
+            XSSFReader.SheetIterator hojas = (XSSFReader.SheetIterator) reader.getSheetsData();
+            if (!hojas.hasNext()) return;
+
+            try (InputStream hoja = hojas.next()) {
+                long tamanoHoja = hojas.getSheetPart().getSize();
+                InputStream hojaConProgreso = new ContadorDeBytes(hoja, tamanoHoja, progreso);
+
+                XMLReader parser = XMLHelper.newXMLReader();
+                ManejadorFilas manejador = new ManejadorFilas(consumidor);
+                parser.setContentHandler(new XSSFSheetXMLHandler(
+                        estilos, sharedStrings, manejador, new FormateadorFechasIso(fechas1904), false));
+                parser.parse(new InputSource(hojaConProgreso));
+                if (manejador.fechasInvalidas > 1) {
+                    System.err.println("Advertencia: " + manejador.fechasInvalidas + " celdas de fecha no se pudieron parsear y quedaron vacías.");
+                }
+            }
+        } finally {
+            // En modo solo lectura se debe usar revert() en lugar de close().
+            paquete.revert();
+        }
+    }
+
+    /**
+     * Lee de workbook.xml si el libro cuenta las fechas desde 1904 (workbookPr/@date1904, p. ej. libros
+     * creados en Excel para Mac); el número de una celda de fecha depende de ello.
+     */
+    private static boolean usaFechas1904(XSSFReader reader) throws Exception {
+        boolean[] fechas1904 = {false};
+        XMLReader parser = XMLHelper.newXMLReader();
+        parser.setContentHandler(new DefaultHandler() {
+            @Override
+            public void startElement(String uri, String nombreLocal, String nombre, Attributes atributos) {
+                if ("workbookPr".equals(nombreLocal)) {
+                    String valor = atributos.getValue("date1904");
+                    fechas1904[0] = "1".equals(valor) || "true".equalsIgnoreCase(valor);
+                }
+            }
+        });
+        try (InputStream libro = reader.getWorkbookData()) {
+            parser.parse(new InputSource(libro));
+        }
+        return fechas1904[0];
+    }
+
+    /**
+     * Recoge las celdas de una fila y la entrega completa al consumidor al terminarla.
+     */
+    private static class ManejadorFilas implements XSSFSheetXMLHandler.SheetContentsHandler {
+        private final Consumer<FilaExcel> consumidor;
+        private FilaExcel filaActual;
+        private boolean encabezadoLeido = false;
+        // Un archivo con fechas como texto las tiene así en todas las filas: se avisa solo de la primera.
+        private int fechasInvalidas = 0;
+
+        ManejadorFilas(Consumer<FilaExcel> consumidor) {
+            this.consumidor = consumidor;
+        }
+
+        @Override
+        public void startRow(int numeroFila) {
+            // La primera fila que trae la hoja son los encabezados, aunque no sea la fila 0
+            // (las filas vacías no aparecen en el XML).
+            if (!encabezadoLeido) {
+                encabezadoLeido = true;
+                filaActual = null;
+                return;
+            }
+            filaActual = new FilaExcel(numeroFila);
+        }
+
+        @Override
+        public void endRow(int numeroFila) {
+            if (filaActual != null) {
+                consumidor.accept(filaActual);
+                filaActual = null;
+            }
+        }
+
+        @Override
+        public void cell(String referencia, String valorFormateado, XSSFComment comentario) {
+            if (filaActual == null || referencia == null) return;
+            String valor = valorFormateado != null ? valorFormateado.trim() : null;
+            switch (new CellReference(referencia).getCol()) {
+                case COL_APLICACION: filaActual.aplicacion = valor; break;
+                case COL_ID_CLIENTE: filaActual.idCliente = valor; break;
+                case COL_TEXTO: filaActual.texto = valor; break;
+                case COL_ASESOR: filaActual.nombreAsesor = valor; break;
+                case COL_FECHA: filaActual.fechaHoraMensaje = parsearFecha(valor, referencia); break;
+                default: break;
+            }
+        }
+
+        private LocalDateTime parsearFecha(String valor, String referencia) {
+            if (valor == null || valor.isEmpty()) return null;
+            try {
+                return LocalDateTime.parse(valor);
+            } catch (DateTimeParseException e) {
+                if (fechasInvalidas++ == 0) {
+                    System.err.println("Advertencia: No se pudo parsear la fecha de la celda " + referencia + ". Valor: " + valor);
+                }
+                return null;
+            }
+        }
+    }
+
+    /**
+     * El handler SAX solo entrega texto formateado. Para no perder las fechas, las celdas
+     * numéricas con formato de fecha se formatean en ISO-8601 y se vuelven a parsear arriba.
+     */
+    private static class FormateadorFechasIso extends DataFormatter {
+        private final boolean fechas1904;
+
+        FormateadorFechasIso(boolean fechas1904) {
+            this.fechas1904 = fechas1904;
+        }
+
+        @Override
+        public String formatRawCellContents(double valor, int indiceFormato, String formato) {
+            if (DateUtil.isADateFormat(indiceFormato, formato) && DateUtil.isValidExcelDate(valor)) {
+                return DateUtil.getLocalDateTime(valor, fechas1904).toString();
+            }
+            return super.formatRawCellContents(valor, indiceFormato, formato);
+        }
+    }
+
+    /**
+     * Cuenta los bytes descomprimidos leídos de la hoja para estimar el progreso
+     * sin tener que contar las filas antes de procesarlas.
+     */
+    private static class ContadorDeBytes extends FilterInputStream {
+        private final long total;
+        private final IntConsumer progreso;
+        private long leidos = 0;
+        private int ultimoPorcentaje = -1;
+
+        ContadorDeBytes(InputStream in, long total, IntConsumer progreso) {
+            super(in);
+            this.total = total;
+            this.progreso = progreso;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) avanzar(1);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) avanzar(n);
+            return n;
+        }
+
+        private void avanzar(int n) {
+            leidos += n;
+            if (total <= 0 || progreso == null) return;
+            int porcentaje = (int) Math.min(99, (leidos * 100) / total);
+            if (porcentaje != ultimoPorcentaje) {
+                ultimoPorcentaje = porcentaje;
+                progreso.accept(porcentaje);
+            }
+        }
+    }
+}
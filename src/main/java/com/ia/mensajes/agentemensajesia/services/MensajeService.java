@@ -1,25 +1,24 @@
 package com.ia.mensajes.agentemensajesia.services;
 
+import com.ia.mensajes.agentemensajesia.dao.EscritorMensajes;
 import com.ia.mensajes.agentemensajesia.dao.MensajeDAO;
 import com.ia.mensajes.agentemensajesia.ia.ClasificadorMensajes;
-import com.ia.mensajes.agentemensajesia.ia.ResultadoClasificacion;
 import com.ia.mensajes.agentemensajesia.model.AsesorStats;
 import com.ia.mensajes.agentemensajesia.model.EstadisticaMensaje;
 import com.ia.mensajes.agentemensajesia.model.FeedbackRequest;
 import com.ia.mensajes.agentemensajesia.model.Mensaje;
+import com.ia.mensajes.agentemensajesia.model.PaginaCursor;
 import com.ia.mensajes.agentemensajesia.model.PaginatedResponse;
-import com.ia.mensajes.agentemensajesia.resources.MensajeResource;
-import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import com.ia.mensajes.agentemensajesia.model.PlantillaStats;
+import com.ia.mensajes.agentemensajesia.model.TrabajoLote;
 
-import java.io.InputStream;
-import java.time.LocalDateTime;
-import java.util.ArrayList;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
-import java.util.Objects;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
 import java.util.stream.Collectors;
 
 public class MensajeService {
@@ -42,75 +41,46 @@ public class MensajeService {
         }
     }
 
-    public void procesarYGuardarMensajesDesdeExcel(InputStream inputStream, String loteId) throws Exception {
+    /**
+     * @param cancelado Se consulta durante la lectura; si devuelve true el procesamiento se
+     *                  detiene con una CancellationException.
+     * @param ortografiaDiferida Si es true solo se hace el análisis de riesgo; la revisión
+     *                  ortográfica la completa después RevisorOrtografiaDiferida.
+     */
+    public void procesarYGuardarMensajesDesdeExcel(File archivo, String loteId, BooleanSupplier cancelado, boolean ortografiaDiferida) throws Exception {
         
         ClasificadorMensajes.getInstance().waitForReady();
 
-        mensajeDAO.borrarTodos();
-        
-        List<Row> rows = new ArrayList<>();
-        try (Workbook workbook = new XSSFWorkbook(inputStream)) {
-            Sheet sheet = workbook.getSheetAt(0);
-            sheet.rowIterator().forEachRemaining(rows::add);
-            if (!rows.isEmpty()) rows.remove(0);
-        }
-
-        if (rows.isEmpty()) return;
-
-        final long totalRows = rows.size();
-        final AtomicLong processedCount = new AtomicLong(0);
-        final DataFormatter formatter = new DataFormatter();
-
-        MensajeResource.jobStatuses.get(loteId).setStatus("PROCESANDO");
-
-        List<Mensaje> mensajesProcesados = rows.stream()
-            .map(row -> {
-                String textoMensaje = getCellValueAsString(row.getCell(7), formatter);
-                if (textoMensaje == null || textoMensaje.isEmpty()) return null;
-
-                long count = processedCount.incrementAndGet();
-                int progress = (int) (((double) count / totalRows) * 100);
-                MensajeResource.jobStatuses.get(loteId).setProgress(progress);
-
-                ClasificadorMensajes clasificador = ClasificadorMensajes.getInstance();
-                ResultadoClasificacion resultado = clasificador.clasificar(textoMensaje);
-
-                Mensaje nuevoMensaje = new Mensaje();
-                nuevoMensaje.setAplicacion(getCellValueAsString(row.getCell(0), formatter));
-                nuevoMensaje.setIdCliente(getCellValueAsString(row.getCell(1), formatter));
-                nuevoMensaje.setTexto(textoMensaje);
-                nuevoMensaje.setNombreAsesor(getCellValueAsString(row.getCell(9), formatter));
-                nuevoMensaje.setFechaHoraMensaje(getCellLocalDateTime(row.getCell(10), formatter));
-                nuevoMensaje.setClasificacion(resultado.getCategoria());
-                nuevoMensaje.setObservacion(resultado.getObservacion());
-                nuevoMensaje.setFechaProcesamiento(new Date());
-                nuevoMensaje.setLote(loteId);
-
-                return nuevoMensaje;
-            })
-            .filter(Objects::nonNull)
-            .collect(Collectors.toList());
-
-        if (!mensajesProcesados.isEmpty()) {
-            mensajeDAO.guardarVarios(mensajesProcesados);
+        RegistroTrabajos registro = RegistroTrabajos.getInstance();
+        registro.marcarProcesando(loteId);
+        if (ortografiaDiferida) registro.marcarOrtografiaPendiente(loteId, true);
+
+        // Otros lotes pueden estar procesándose a la vez: solo se borran los datos de cargas ya terminadas.
+        mensajeDAO.borrarTodosSalvoLotesEnCurso();
+
+        // Lectura, clasificación y escritura trabajan a la vez sobre colas acotadas (ver PipelineIngesta).
+        try (EscritorMensajes escritor = mensajeDAO.abrirEscritorMasivo()) {
+            PipelineIngesta pipeline = new PipelineIngesta(archivo, loteId, escritor, cancelado, ortografiaDiferida);
+            try {
+                pipeline.ejecutar(progreso -> registro.actualizar(loteId, t -> {
+                    t.setProgress(progreso);
+                    copiarContadores(pipeline, t);
+                }));
+            } finally {
+                registro.actualizar(loteId, t -> copiarContadores(pipeline, t));
+            }
         }
     }
 
-    private String getCellValueAsString(Cell cell, DataFormatter formatter) {
-        if (cell == null) return null;
-        return formatter.formatCellValue(cell).trim();
+    public int borrarMensajesDelLote(String loteId) {
+        return mensajeDAO.borrarPorLote(loteId);
     }
-    
-    private LocalDateTime getCellLocalDateTime(Cell cell, DataFormatter formatter) {
-        if (cell == null) return null;
-        try {
-            if (cell.getCellType() == CellType.NUMERIC && DateUtil.isCellDateFormatted(cell)) {
-                return cell.getLocalDateTimeCellValue();
-            }
-        } catch (Exception e) {
-            System.err.println("Advertencia: No se pudo parsear la fecha de la celda " + cell.getAddress() + ". Valor: " + getCellValueAsString(cell, formatter));
-        }
-        return null;
+
+    private static void copiarContadores(PipelineIngesta pipeline, TrabajoLote trabajo) {
+        trabajo.setFilasLeidas(pipeline.getFilasLeidas());
+        trabajo.setFilasClasificadas(pipeline.getFilasClasificadas());
+        trabajo.setFilasPersistidas(pipeline.getFilasPersistidas());
+        trabajo.setErrores(pipeline.getFilasConError());
     }
 
     public PaginatedResponse<Mensaje> obtenerMensajesPaginado(String asesorFiltro, int numeroPagina, int tamanoPagina) {
@@ -133,8 +103,47 @@ public class MensajeService {
         return new PaginatedResponse<>(mensajes, numeroPagina, totalPaginas, totalMensajes);
     }
 
-    public List<Mensaje> obtenerTodosLosMensajes() {
-        return mensajeDAO.buscarTodos();
+    /**
+     * Página de mensajes por cursor, del más reciente al más antiguo (ver MensajeDAO.buscarDesdeCursor).
+     * @param loteId Opcional; si se indica, solo los mensajes de ese lote.
+     * @param clasificacion Opcional; p. ej. "Alerta" para listar solo las alertas.
+     * @param cursor El siguienteCursor de la página anterior, o null para la primera.
+     * @param conTotal Si es true se incluye el total de mensajes del filtro (de la tabla agregada, ver MensajeDAO.contarMensajes).
+     * @throws IllegalArgumentException Si el cursor no es válido.
+     */
+    public PaginaCursor<Mensaje> obtenerMensajesPorCursor(String asesorFiltro, String loteId, String clasificacion, String cursor, int tamano, boolean conTotal) {
+        Date desdeFecha = null;
+        Long desdeId = null;
+        if (cursor != null && !cursor.isEmpty()) {
+            long[] clave = decodificarCursor(cursor);
+            desdeFecha = new Date(clave[0]);
+            desdeId = clave[1];
+        }
+        // Se pide una fila de más para saber si hay página siguiente sin contar.
+        List<Mensaje> mensajes = mensajeDAO.buscarDesdeCursor(asesorFiltro, loteId, clasificacion, desdeFecha, desdeId, tamano + 1);
+        String siguienteCursor = null;
+        if (mensajes.size() > tamano) {
+            mensajes = mensajes.subList(0, tamano);
+            Mensaje ultimo = mensajes.get(tamano - 1);
+            siguienteCursor = codificarCursor(ultimo.getFechaProcesamiento().getTime(), ultimo.getId());
+        }
+        Long total = conTotal ? mensajeDAO.contarMensajes(asesorFiltro, loteId, clasificacion) : null;
+        return new PaginaCursor<>(mensajes, siguienteCursor, tamano, total);
+    }
+
+    // El cursor es la clave del último mensaje devuelto, "fechaEnMilisegundos:id" en base64 URL.
+    static String codificarCursor(long fechaMs, long id) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString((fechaMs + ":" + id).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    static long[] decodificarCursor(String cursor) {
+        try {
+            String clave = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+            int separador = clave.indexOf(':');
+            return new long[]{Long.parseLong(clave.substring(0, separador)), Long.parseLong(clave.substring(separador + 1))};
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Cursor de paginación no válido.");
+        }
     }
 
     public EstadisticaMensaje calcularEstadisticas() {
@@ -152,8 +161,22 @@ public class MensajeService {
                         (String) res[0],
                         (Long) res[1],
                         (Long) res[2],
-                        (Long) res[3]
+                        (Long) res[3],
+                        (Long) res[4],
+                        (Long) res[5]
+                ))
+                .collect(Collectors.toList());
+    }
+
+    public List<PlantillaStats> obtenerEstadisticasPorPlantilla(String loteId, int limite) {
+        List<Object[]> resultados = mensajeDAO.contarMensajesPorPlantilla(loteId, limite);
+        return resultados.stream()
+                .map(res -> new PlantillaStats(
+                        (String) res[0],
+                        (Long) res[1],
+                        (Long) res[2],
+                        (String) res[3]
                 ))
                 .collect(Collectors.toList());
     }
-}
\ No newline at end of file
+}
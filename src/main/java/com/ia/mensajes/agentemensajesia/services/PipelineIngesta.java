@@ -0,0 +1,237 @@
+package com.ia.mensajes.agentemensajesia.services;
+
+import com.ia.mensajes.agentemensajesia.dao.EscritorMensajes;
+import com.ia.mensajes.agentemensajesia.ia.CanonizadorPlantillas;
+import com.ia.mensajes.agentemensajesia.ia.ClasificadorMensajes;
+import com.ia.mensajes.agentemensajesia.ia.EjecutorClasificacion;
+import com.ia.mensajes.agentemensajesia.ia.ResultadoClasificacion;
+import com.ia.mensajes.agentemensajesia.model.Mensaje;
+import com.ia.mensajes.agentemensajesia.util.ConfiguracionUtil;
+import java.io.File;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntConsumer;
+
+/**
+ * Ingesta de un lote en tres etapas que trabajan a la vez:
+ * lector SAX del Excel → hilos clasificadores (EjecutorClasificacion) → escritor en la BD.
+ * Un semáforo limita cuántas filas pueden estar leídas pero aún no guardadas, así la memoria
+ * queda acotada por esa capacidad y el lector se frena solo si la BD o la IA van más lentas.
+ * El escritor confirma por tramos, por lo que el lote se puede consultar mientras se procesa.
+ * Los mensajes que solo cambian en nombres, montos, fechas o números comparten plantilla
+ * (ver CanonizadorPlantillas): se clasifica el texto de la primera fila de cada plantilla y el
+ * resultado se reparte a todas sus filas. Se desactiva con DEDUP_PLANTILLAS_ACTIVA=false.
+ * Con la ortografía diferida solo se hace el análisis de riesgo y las filas quedan marcadas para
+ * que RevisorOrtografiaDiferida complete la clasificación después.
+ */
+public class PipelineIngesta {
+
+    private static final int CAPACIDAD = ConfiguracionUtil.leerEnteroPositivo("PIPELINE_CAPACIDAD", 1000);
+    // Si el escritor pasa este tiempo sin recibir mensajes, confirma lo pendiente para que sea visible.
+    private static final long ESPERA_CONFIRMACION_MS = 1000;
+
+    private static final Mensaje FIN = new Mensaje();
+
+    private static final boolean AGRUPAR_PLANTILLAS = ConfiguracionUtil.leerBooleano("DEDUP_PLANTILLAS_ACTIVA", true);
+    // Plantillas recordadas por lote; al superarlas se olvida la usada hace más tiempo.
+    private static final int PLANTILLAS_MAX = ConfiguracionUtil.leerEnteroPositivo("PIPELINE_PLANTILLAS_MAX", 50000);
+    private static final CanonizadorPlantillas CANONIZADOR = new CanonizadorPlantillas(ClasificadorMensajes::esPalabraReservada);
+
+    private final File archivo;
+    private final String loteId;
+    private final EscritorMensajes escritor;
+    private final BooleanSupplier cancelado;
+    private final boolean ortografiaDiferida;
+    private final LectorExcelStreaming lector = new LectorExcelStreaming();
+
+    private final Semaphore enVuelo = new Semaphore(CAPACIDAD);
+    private final BlockingQueue<Mensaje> colaEscritura = new ArrayBlockingQueue<>(CAPACIDAD + 1);
+    private final AtomicReference<Throwable> error = new AtomicReference<>();
+    // Solo lo usa el hilo lector, no necesita sincronización.
+    private final Map<String, CompletableFuture<ResultadoClasificacion>> clasificacionPorPlantilla =
+            new LinkedHashMap<>(1024, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CompletableFuture<ResultadoClasificacion>> eldest) {
+                    return size() > PLANTILLAS_MAX;
+                }
+            };
+    private long plantillasDistintas;
+
+    private final AtomicLong filasLeidas = new AtomicLong();
+    private final AtomicLong filasClasificadas = new AtomicLong();
+    private final AtomicLong filasPersistidas = new AtomicLong();
+    // Filas que la IA no pudo analizar (se guardan igualmente con la categoría de error).
+    private final AtomicLong filasConError = new AtomicLong();
+
+    public PipelineIngesta(File archivo, String loteId, EscritorMensajes escritor, BooleanSupplier cancelado, boolean ortografiaDiferida) {
+        this.archivo = archivo;
+        this.loteId = loteId;
+        this.escritor = escritor;
+        this.cancelado = cancelado;
+        this.ortografiaDiferida = ortografiaDiferida;
+    }
+
+    /**
+     * Los mensajes con la misma clave reciben el mismo resultado: la plantilla si se agrupan
+     * plantillas, si no el texto. La usa también la revisión diferida, para agrupar igual.
+     */
+    static String clavePlantilla(String texto) {
+        return AGRUPAR_PLANTILLAS ? CANONIZADOR.canonizar(texto).getId() : texto;
+    }
+
+    /**
+     * Ejecuta las tres etapas y espera a que terminen. La lectura corre en el hilo que llama.
+     * @param progreso Recibe el porcentaje aproximado del archivo ya leído.
+     * @throws Exception El primer error de cualquiera de las etapas, o CancellationException si se canceló.
+     */
+    public void ejecutar(IntConsumer progreso) throws Exception {
+        Thread hiloEscritor = new Thread(this::etapaEscritura, "escritor-lote-" + loteId);
+        hiloEscritor.start();
+        try {
+            lector.leer(archivo, fila -> {
+                if (fila.getTexto() == null || fila.getTexto().isEmpty()) return;
+                verificarError();
+                adquirirCupo();
+                filasLeidas.incrementAndGet();
+                CanonizadorPlantillas.Plantilla plantilla = CANONIZADOR.canonizar(fila.getTexto());
+                clasificar(fila.getTexto(), plantilla)
+                        .whenComplete((resultado, falla) -> {
+                            if (falla != null) {
+                                registrarError(falla);
+                                enVuelo.release();
+                            } else {
+                                filasClasificadas.incrementAndGet();
+                                if (resultado.getCategoria().startsWith("Error")) filasConError.incrementAndGet();
+                                colaEscritura.add(crearMensaje(fila, plantilla.getId(), resultado));
+                            }
+                        });
+            }, progreso);
+
+            // Cuando se recuperan todos los cupos, todo lo leído ya fue clasificado y escrito.
+            while (!enVuelo.tryAcquire(CAPACIDAD, 200, TimeUnit.MILLISECONDS)) {
+                verificarError();
+            }
+        } catch (Exception e) {
+            registrarError(e);
+        } finally {
+            colaEscritura.add(FIN);
+            hiloEscritor.join();
+        }
+
+        if (AGRUPAR_PLANTILLAS) {
+            System.out.println("PipelineIngesta: lote " + loteId + ": " + filasLeidas.get() + " filas, "
+                    + plantillasDistintas + " plantillas clasificadas.");
+        }
+        Throwable falla = error.get();
+        if (falla != null) {
+            throw falla instanceof Exception ? (Exception) falla : new RuntimeException(falla);
+        }
+    }
+
+    // Se clasifica el texto de la primera fila de la plantilla; las siguientes reciben el mismo
+    // futuro (aunque aún no haya terminado).
+    private CompletableFuture<ResultadoClasificacion> clasificar(String texto, CanonizadorPlantillas.Plantilla plantilla) {
+        if (!AGRUPAR_PLANTILLAS) {
+            return enviarAClasificar(texto);
+        }
+        CompletableFuture<ResultadoClasificacion> futuro = clasificacionPorPlantilla.get(plantilla.getId());
+        // Un error de análisis no se reparte: la siguiente fila de la plantilla lo vuelve a intentar.
+        if (futuro == null || (futuro.isDone() && futuro.getNow(null).getCategoria().startsWith("Error"))) {
+            futuro = enviarAClasificar(texto);
+            clasificacionPorPlantilla.put(plantilla.getId(), futuro);
+            plantillasDistintas++;
+        }
+        return futuro;
+    }
+
+    private CompletableFuture<ResultadoClasificacion> enviarAClasificar(String texto) {
+        EjecutorClasificacion ejecutor = EjecutorClasificacion.getInstance();
+        return ortografiaDiferida ? ejecutor.clasificarSoloRiesgoAsync(texto) : ejecutor.clasificarAsync(texto);
+    }
+
+    private void etapaEscritura() {
+        try {
+            while (true) {
+                Mensaje mensaje = colaEscritura.poll(ESPERA_CONFIRMACION_MS, TimeUnit.MILLISECONDS);
+                if (mensaje == null) {
+                    if (error.get() == null) escritor.confirmarTramo();
+                    continue;
+                }
+                if (mensaje == FIN) break;
+                try {
+                    // Tras un error se siguen vaciando la cola y liberando cupos, pero sin escribir.
+                    if (error.get() == null) {
+                        escritor.escribir(mensaje);
+                        filasPersistidas.incrementAndGet();
+                    }
+                } catch (Exception e) {
+                    registrarError(e);
+                } finally {
+                    enVuelo.release();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            registrarError(e);
+        } catch (Exception e) {
+            registrarError(e);
+        }
+    }
+
+    private void adquirirCupo() {
+        try {
+            while (!enVuelo.tryAcquire(200, TimeUnit.MILLISECONDS)) {
+                verificarError();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Lectura del lote " + loteId + " interrumpida", e);
+        }
+    }
+
+    private void verificarError() {
+        if (error.get() == null && cancelado.getAsBoolean()) {
+            registrarError(new CancellationException("Lote " + loteId + " cancelado"));
+        }
+        if (error.get() != null) {
+            throw new IllegalStateException("Se detiene la lectura del lote " + loteId + " por un error en el pipeline", error.get());
+        }
+    }
+
+    private void registrarError(Throwable falla) {
+        if (error.compareAndSet(null, falla)) {
+            System.err.println("PipelineIngesta: error en el lote " + loteId + ": " + falla.getMessage());
+        }
+    }
+
+    private Mensaje crearMensaje(LectorExcelStreaming.FilaExcel fila, String plantillaId, ResultadoClasificacion resultado) {
+        Mensaje nuevoMensaje = new Mensaje();
+        nuevoMensaje.setAplicacion(fila.getAplicacion());
+        nuevoMensaje.setIdCliente(fila.getIdCliente());
+        nuevoMensaje.setTexto(fila.getTexto());
+        nuevoMensaje.setNombreAsesor(fila.getNombreAsesor());
+        nuevoMensaje.setFechaHoraMensaje(fila.getFechaHoraMensaje());
+        nuevoMensaje.setClasificacion(resultado.getCategoria());
+        nuevoMensaje.setObservacion(resultado.getObservacion());
+        nuevoMensaje.setFechaProcesamiento(new Date());
+        nuevoMensaje.setLote(loteId);
+        nuevoMensaje.setPlantillaId(plantillaId);
+        nuevoMensaje.setOrtografiaPendiente(ortografiaDiferida);
+        return nuevoMensaje;
+    }
+
+    public long getFilasLeidas() { return filasLeidas.get(); }
+    public long getFilasClasificadas() { return filasClasificadas.get(); }
+    public long getFilasPersistidas() { return filasPersistidas.get(); }
+    public long getFilasConError() { return filasConError.get(); }
+}
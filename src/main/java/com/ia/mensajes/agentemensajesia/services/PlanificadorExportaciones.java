@@ -0,0 +1,402 @@
+package com.ia.mensajes.agentemensajesia.services;
+
+import com.ia.mensajes.agentemensajesia.dao.MensajeDAO;
+import com.ia.mensajes.agentemensajesia.dao.TrabajoExportacionDAO;
+import com.ia.mensajes.agentemensajesia.model.FiltroExportacion;
+import com.ia.mensajes.agentemensajesia.model.TrabajoExportacion;
+import com.ia.mensajes.agentemensajesia.util.ConfiguracionUtil;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Exportaciones en segundo plano: la petición solo registra el trabajo y los hilos
+ * exportador-N escriben el archivo en EXPORTACION_SPOOL_DIR (por defecto un directorio en el
+ * temporal del sistema), desde donde se descarga cuando termina.
+ * Cada archivo se nombra con una clave de los filtros, el formato y la huella de los datos
+ * (MensajeDAO.huellaDatos), así que pedir lo mismo sin que los datos hayan cambiado reutiliza el
+ * archivo ya generado (también tras un reinicio) y, si se está generando, devuelve ese mismo trabajo.
+ * Se generan EXPORTACION_HILOS archivos a la vez (por defecto 1) con hasta EXPORTACION_COLA_MAX
+ * en espera (por defecto 10). Los archivos sin usar durante EXPORTACION_CACHE_HORAS (por defecto
+ * 24) se borran.
+ * Los trabajos se guardan en la tabla trabajo_exportacion, así cualquier réplica responde por su
+ * estado. Con varias réplicas EXPORTACION_SPOOL_DIR debe ser un directorio compartido para que
+ * todas vean los archivos; si una réplica no ve el archivo de un trabajo terminado, la descarga
+ * lo vuelve a generar con los filtros guardados (ver MensajeResource.descargarExportacion).
+ */
+public class PlanificadorExportaciones {
+
+    private static PlanificadorExportaciones instance;
+
+    private static final long INTERVALO_LIMPIEZA_MIN = 10;
+    // Una exportación sin finalizar que lleva este tiempo sin actualizarse se da por abandonada.
+    private static final long LIMITE_SIN_ACTUALIZAR_MS = TimeUnit.MINUTES.toMillis(10);
+    // Las exportaciones en curso se guardan cada minuto para que no parezcan abandonadas.
+    private static final long INTERVALO_LATIDO_MIN = 1;
+
+    private final int hilos = ConfiguracionUtil.leerEnteroPositivo("EXPORTACION_HILOS", 1);
+    private final int maxEnCola = ConfiguracionUtil.leerEnteroPositivo("EXPORTACION_COLA_MAX", 10);
+    private final long ttlMs = TimeUnit.HOURS.toMillis(ConfiguracionUtil.leerEnteroPositivo("EXPORTACION_CACHE_HORAS", 24));
+    private final Path directorio = Paths.get(ConfiguracionUtil.leerTexto("EXPORTACION_SPOOL_DIR",
+            Paths.get(System.getProperty("java.io.tmpdir"), "agente-exportaciones").toString()));
+    private final String nodo = RegistroTrabajos.obtenerNombreNodo();
+
+    private final ThreadPoolExecutor executor;
+    private final ScheduledExecutorService limpieza;
+    private final Map<String, Tarea> tareas = new ConcurrentHashMap<>();
+    // Último trabajo (en curso o terminado) de cada clave. Protegido por this.
+    private final Map<String, Tarea> tareasPorClave = new ConcurrentHashMap<>();
+
+    private final ExportacionService exportacionService = new ExportacionService();
+    private final MensajeDAO mensajeDAO = new MensajeDAO();
+    private final TrabajoExportacionDAO trabajoExportacionDAO = new TrabajoExportacionDAO();
+
+    // Las escrituras en la BD de una tarea se hacen con su monitor tomado y con una copia del
+    // estado tomada dentro, así una copia anterior nunca se guarda después de una posterior.
+    private static class Tarea {
+        final TrabajoExportacion trabajo;
+        final String clave;
+        final FormatoExportacion formato;
+        final Path archivo;
+        // El último estado no se pudo guardar; el latido lo reintenta.
+        boolean sinGuardar;
+        Tarea(TrabajoExportacion trabajo, String clave, FormatoExportacion formato, Path archivo) {
+            this.trabajo = trabajo;
+            this.clave = clave;
+            this.formato = formato;
+            this.archivo = archivo;
+        }
+    }
+
+    /** El archivo terminado de un trabajo, para servirlo. */
+    public static class ArchivoExportado {
+        private final Path archivo;
+        private final FormatoExportacion formato;
+        private final String clave;
+        private final Date fecha;
+        ArchivoExportado(Path archivo, FormatoExportacion formato, String clave, Date fecha) {
+            this.archivo = archivo;
+            this.formato = formato;
+            this.clave = clave;
+            this.fecha = fecha;
+        }
+        public Path getArchivo() { return archivo; }
+        public FormatoExportacion getFormato() { return formato; }
+        // El contenido de una clave no cambia nunca: sirve de ETag.
+        public String getClave() { return clave; }
+        public Date getFecha() { return fecha; }
+    }
+
+    private PlanificadorExportaciones() {
+        AtomicInteger contador = new AtomicInteger(1);
+        this.executor = new ThreadPoolExecutor(
+                hilos, hilos, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                r -> {
+                    Thread hilo = new Thread(r, "exportador-" + contador.getAndIncrement());
+                    hilo.setDaemon(true);
+                    return hilo;
+                });
+        this.limpieza = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "limpieza-exportaciones");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        try {
+            Files.createDirectories(directorio);
+            borrarTemporalesHuerfanos();
+        } catch (IOException e) {
+            System.err.println("PlanificadorExportaciones: no se pudo preparar " + directorio + ": " + e.getMessage());
+        }
+        limpieza.scheduleWithFixedDelay(this::limpiar, INTERVALO_LIMPIEZA_MIN, INTERVALO_LIMPIEZA_MIN, TimeUnit.MINUTES);
+        limpieza.scheduleWithFixedDelay(this::latido, INTERVALO_LATIDO_MIN, INTERVALO_LATIDO_MIN, TimeUnit.MINUTES);
+        System.out.println("PlanificadorExportaciones iniciado en " + directorio + ": " + hilos + " a la vez, hasta " + maxEnCola + " en cola.");
+    }
+
+    public static synchronized PlanificadorExportaciones getInstance() {
+        if (instance == null) {
+            instance = new PlanificadorExportaciones();
+        }
+        return instance;
+    }
+
+    /**
+     * Registra una exportación. Si ya hay un archivo para los mismos filtros y datos, el trabajo
+     * nace COMPLETADO; si se está generando (aquí o en otra réplica), se devuelve ese trabajo.
+     * @throws RejectedExecutionException Si la cola está llena o la aplicación se está deteniendo.
+     */
+    public TrabajoExportacion solicitar(FiltroExportacion filtro, FormatoExportacion formato) {
+        // Fuera del bloqueo: son consultas a la BD.
+        String clave = calcularClave(filtro, formato, mensajeDAO.huellaDatos(filtro));
+        Path archivo = directorio.resolve(clave + "." + formato.getExtension());
+        Tarea nueva;
+        synchronized (this) {
+            nueva = registrarSolicitud(filtro, formato, clave, archivo);
+        }
+        if (nueva == null) {
+            TrabajoExportacion enOtraReplica = trabajoExportacionDAO.buscarEnCursoPorClave(clave, new Date(System.currentTimeMillis() - LIMITE_SIN_ACTUALIZAR_MS));
+            if (enOtraReplica != null) {
+                return enOtraReplica;
+            }
+            synchronized (this) {
+                nueva = encolar(filtro, formato, clave, archivo);
+            }
+        }
+        guardar(nueva);
+        synchronized (nueva.trabajo) {
+            return nueva.trabajo.copiar();
+        }
+    }
+
+    // El trabajo en curso en esta réplica o uno nuevo ya COMPLETADO si el archivo existe; null si
+    // hay que generarlo. Se llama con this tomado.
+    private Tarea registrarSolicitud(FiltroExportacion filtro, FormatoExportacion formato, String clave, Path archivo) {
+        Tarea anterior = tareasPorClave.get(clave);
+        if (anterior != null) {
+            synchronized (anterior.trabajo) {
+                if (!anterior.trabajo.isFinalizado()) {
+                    return anterior;
+                }
+            }
+        }
+        if (Files.exists(archivo)) {
+            TrabajoExportacion trabajo = nuevoTrabajo(filtro, formato, clave, TrabajoExportacion.COMPLETADO);
+            trabajo.setReutilizado(true);
+            trabajo.setFilas(anterior != null && TrabajoExportacion.COMPLETADO.equals(anterior.trabajo.getEstado()) ? anterior.trabajo.getFilas() : null);
+            try {
+                trabajo.setBytes(Files.size(archivo));
+                // La limpieza borra por fecha de modificación: un archivo que se sigue pidiendo no caduca.
+                Files.setLastModifiedTime(archivo, FileTime.fromMillis(System.currentTimeMillis()));
+                trabajo.setFechaFin(new Date());
+                Tarea tarea = new Tarea(trabajo, clave, formato, archivo);
+                registrar(tarea);
+                return tarea;
+            } catch (IOException e) {
+                // Lo borró la limpieza entre medias: se genera de nuevo.
+            }
+        }
+        return null;
+    }
+
+    private Tarea encolar(FiltroExportacion filtro, FormatoExportacion formato, String clave, Path archivo) {
+        // Otra petición igual pudo encolarla mientras se consultaba la BD.
+        Tarea anterior = registrarSolicitud(filtro, formato, clave, archivo);
+        if (anterior != null) return anterior;
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("La aplicación se está deteniendo; no se aceptan exportaciones nuevas.");
+        }
+        if (executor.getQueue().size() >= maxEnCola) {
+            throw new RejectedExecutionException("Hay " + maxEnCola + " exportaciones esperando; inténtalo más tarde.");
+        }
+        Tarea tarea = new Tarea(nuevoTrabajo(filtro, formato, clave, TrabajoExportacion.EN_COLA), clave, formato, archivo);
+        registrar(tarea);
+        executor.execute(() -> generar(tarea, filtro));
+        return tarea;
+    }
+
+    private TrabajoExportacion nuevoTrabajo(FiltroExportacion filtro, FormatoExportacion formato, String clave, String estado) {
+        TrabajoExportacion trabajo = new TrabajoExportacion(UUID.randomUUID().toString(), estado, formato.getExtension());
+        trabajo.setClave(clave);
+        trabajo.setFiltro(filtro);
+        trabajo.setNodo(nodo);
+        return trabajo;
+    }
+
+    /**
+     * Estado de un trabajo: el de memoria si es de esta réplica, si no el de la BD.
+     * @return El estado del trabajo, o null si no existe (o ya caducó).
+     */
+    public TrabajoExportacion obtener(String id) {
+        Tarea tarea = tareas.get(id);
+        if (tarea == null) return trabajoExportacionDAO.buscarPorId(id);
+        synchronized (tarea.trabajo) {
+            return tarea.trabajo.copiar();
+        }
+    }
+
+    /**
+     * @return El archivo del trabajo si está COMPLETADO y esta réplica lo ve en el directorio; si no, null.
+     */
+    public ArchivoExportado obtenerArchivo(TrabajoExportacion trabajo) {
+        if (!TrabajoExportacion.COMPLETADO.equals(trabajo.getEstado())) return null;
+        FormatoExportacion formato = FormatoExportacion.elegir(trabajo.getFormato(), null);
+        Path archivo = directorio.resolve(trabajo.getClave() + "." + formato.getExtension());
+        if (!Files.exists(archivo)) return null;
+        return new ArchivoExportado(archivo, formato, trabajo.getClave(), trabajo.getFechaCreacion());
+    }
+
+    private void registrar(Tarea tarea) {
+        tareas.put(tarea.trabajo.getId(), tarea);
+        tareasPorClave.put(tarea.clave, tarea);
+    }
+
+    private void guardar(Tarea tarea) {
+        synchronized (tarea) {
+            TrabajoExportacion copia;
+            synchronized (tarea.trabajo) {
+                tarea.trabajo.setUltimaActualizacion(new Date());
+                copia = tarea.trabajo.copiar();
+            }
+            try {
+                trabajoExportacionDAO.guardar(copia);
+                tarea.sinGuardar = false;
+            } catch (RuntimeException e) {
+                // El estado en memoria sigue siendo válido; el latido lo vuelve a intentar.
+                System.err.println("PlanificadorExportaciones: no se pudo guardar el estado de la exportación " + copia.getId() + ": " + e.getMessage());
+                tarea.sinGuardar = true;
+            }
+        }
+    }
+
+    private void generar(Tarea tarea, FiltroExportacion filtro) {
+        synchronized (tarea.trabajo) {
+            tarea.trabajo.setEstado(TrabajoExportacion.PROCESANDO);
+        }
+        guardar(tarea);
+        long inicio = System.currentTimeMillis();
+        Path temporal = null;
+        try {
+            // Se escribe a un temporal y se renombra: nadie descarga ni reutiliza un archivo a medias.
+            // Con el nodo en el nombre: en un directorio compartido cada réplica solo borra sus temporales.
+            temporal = Files.createTempFile(directorio, nodo + "-" + tarea.clave, ".tmp");
+            long filas;
+            try (OutputStream salida = new BufferedOutputStream(Files.newOutputStream(temporal), 64 * 1024)) {
+                filas = exportacionService.exportar(filtro, tarea.formato, salida);
+            }
+            Files.move(temporal, tarea.archivo, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            long bytes = Files.size(tarea.archivo);
+            synchronized (tarea.trabajo) {
+                tarea.trabajo.setFilas(filas);
+                tarea.trabajo.setBytes(bytes);
+                tarea.trabajo.setEstado(TrabajoExportacion.COMPLETADO);
+                tarea.trabajo.setFechaFin(new Date());
+            }
+            System.out.println("PlanificadorExportaciones: exportación " + tarea.trabajo.getId() + " (" + tarea.formato + ") completada: "
+                    + filas + " filas, " + bytes + " bytes en " + (System.currentTimeMillis() - inicio) + " ms.");
+        } catch (IOException | RuntimeException e) {
+            System.err.println("PlanificadorExportaciones: falló la exportación " + tarea.trabajo.getId() + ": " + e.getMessage());
+            e.printStackTrace();
+            String mensaje = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            synchronized (tarea.trabajo) {
+                tarea.trabajo.setEstado(TrabajoExportacion.FALLIDO);
+                tarea.trabajo.setMensajeError(mensaje.length() > 1000 ? mensaje.substring(0, 1000) : mensaje);
+                tarea.trabajo.setFechaFin(new Date());
+            }
+        } finally {
+            guardar(tarea);
+            if (temporal != null) {
+                try {
+                    Files.deleteIfExists(temporal);
+                } catch (IOException e) {
+                    System.err.println("PlanificadorExportaciones: no se pudo borrar " + temporal + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static String calcularClave(FiltroExportacion filtro, FormatoExportacion formato, String huella) {
+        String asesor = filtro.getAsesor() != null && !filtro.getAsesor().isEmpty() ? filtro.getAsesor() : null;
+        String texto = formato + "|" + filtro.getLoteId() + "|" + asesor + "|" + filtro.getDesde() + "|" + filtro.getHasta() + "|" + huella;
+        try {
+            byte[] resumen = MessageDigest.getInstance("SHA-256").digest(texto.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(resumen, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    private void borrarTemporalesHuerfanos() throws IOException {
+        try (DirectoryStream<Path> archivos = Files.newDirectoryStream(directorio, nodo + "-*.tmp")) {
+            for (Path archivo : archivos) {
+                Files.deleteIfExists(archivo);
+            }
+        }
+    }
+
+    private void limpiar() {
+        try {
+            long limite = System.currentTimeMillis() - ttlMs;
+            int borrados = 0;
+            synchronized (this) {
+                try (DirectoryStream<Path> archivos = Files.newDirectoryStream(directorio)) {
+                    for (Path archivo : archivos) {
+                        // Los temporales son de exportaciones en curso; se quitan al terminar.
+                        if (archivo.toString().endsWith(".tmp")) continue;
+                        if (Files.getLastModifiedTime(archivo).toMillis() < limite) {
+                            Files.deleteIfExists(archivo);
+                            borrados++;
+                        }
+                    }
+                }
+                tareas.values().removeIf(t -> caducada(t, limite));
+                tareasPorClave.values().removeIf(t -> caducada(t, limite));
+            }
+            if (borrados > 0) {
+                System.out.println("PlanificadorExportaciones: " + borrados + " archivos exportados eliminados por antigüedad.");
+            }
+
+            long ahora = System.currentTimeMillis();
+            for (TrabajoExportacion abandonado : trabajoExportacionDAO.buscarAbandonados(new Date(ahora - LIMITE_SIN_ACTUALIZAR_MS))) {
+                if (tareas.containsKey(abandonado.getId())) continue;
+                abandonado.setEstado(TrabajoExportacion.FALLIDO);
+                abandonado.setMensajeError("La exportación se interrumpió (la réplica " + abandonado.getNodo() + " dejó de responder).");
+                abandonado.setFechaFin(new Date(ahora));
+                abandonado.setUltimaActualizacion(new Date(ahora));
+                trabajoExportacionDAO.guardar(abandonado);
+            }
+            trabajoExportacionDAO.eliminarFinalizadosAntesDe(new Date(limite));
+        } catch (IOException | RuntimeException e) {
+            System.err.println("PlanificadorExportaciones: error en la limpieza periódica: " + e.getMessage());
+        }
+    }
+
+    // Las exportaciones en curso se vuelven a guardar para que otra réplica no las dé por
+    // abandonadas; las finalizadas cuyo estado no se pudo guardar, hasta que se guarde.
+    private void latido() {
+        for (Tarea tarea : tareas.values()) {
+            boolean enCurso;
+            synchronized (tarea.trabajo) {
+                enCurso = !tarea.trabajo.isFinalizado();
+            }
+            if (enCurso || tarea.sinGuardar) {
+                guardar(tarea);
+            }
+        }
+    }
+
+    private static boolean caducada(Tarea tarea, long limite) {
+        synchronized (tarea.trabajo) {
+            return tarea.trabajo.isFinalizado() && tarea.trabajo.getFechaFin().getTime() < limite;
+        }
+    }
+
+    /**
+     * Deja de aceptar exportaciones y abandona las que están en curso (sus temporales se borran
+     * en el siguiente arranque).
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+        limpieza.shutdownNow();
+    }
+}
@@ -0,0 +1,275 @@
+package com.ia.mensajes.agentemensajesia.services;
+
+import com.ia.mensajes.agentemensajesia.ia.ClasificadorMensajes;
+import com.ia.mensajes.agentemensajesia.util.ConfiguracionUtil;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cola de procesamiento de los lotes subidos.
+ * Como mucho LOTES_CONCURRENTES_MAX lotes (por defecto 2) se procesan a la vez; el resto espera
+ * ordenado por prioridad (mayor primero) y, a igual prioridad, por orden de llegada.
+ * La cola admite hasta LOTES_EN_COLA_MAX lotes (por defecto 20); por encima se rechazan.
+ * Al detener la aplicación se deja terminar a los lotes en curso durante LOTES_DRENAJE_SEG
+ * segundos (por defecto 60) y los que siguen en cola se cancelan.
+ * Los lotes con la ortografía diferida pasan al terminar a RevisorOrtografiaDiferida.
+ * Mientras los modelos de IA cargan, los lotes esperan aparte (sin ocupar un hilo) y entran en
+ * la cola cuando el clasificador está listo.
+ * Cada pocos segundos se guarda la posición en la cola de los lotes que esperan y se recogen las
+ * cancelaciones pedidas desde otras réplicas (ver RegistroTrabajos.solicitarCancelacion).
+ */
+public class PlanificadorLotes {
+
+    private static PlanificadorLotes instance;
+
+    private final int maxConcurrentes = ConfiguracionUtil.leerEnteroPositivo("LOTES_CONCURRENTES_MAX", 2);
+    private final int maxEnCola = ConfiguracionUtil.leerEnteroPositivo("LOTES_EN_COLA_MAX", 20);
+    private final int segundosDrenaje = ConfiguracionUtil.leerEnteroPositivo("LOTES_DRENAJE_SEG", 60);
+    private static final long INTERVALO_VIGILANCIA_SEG = 2;
+
+    private final ThreadPoolExecutor executor;
+    private final ScheduledExecutorService vigilancia;
+    private final AtomicLong secuencia = new AtomicLong();
+    // Lotes en cola o en curso en esta réplica.
+    private final Map<String, TareaLote> tareas = new ConcurrentHashMap<>();
+    // Lotes recibidos antes de que los modelos terminaran de cargar. Protegido por this.
+    private final List<TareaLote> esperandoModelos = new ArrayList<>();
+
+    private final MensajeService mensajeService = new MensajeService();
+    private final RegistroTrabajos registro = RegistroTrabajos.getInstance();
+
+    private PlanificadorLotes() {
+        AtomicInteger contador = new AtomicInteger(1);
+        // Las tareas se envían con execute() (no submit) para que la cola pueda ordenarlas por prioridad.
+        this.executor = new ThreadPoolExecutor(
+                maxConcurrentes, maxConcurrentes, 0L, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(),
+                r -> new Thread(r, "procesador-lotes-" + contador.getAndIncrement()));
+        this.vigilancia = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "vigilancia-lotes");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        vigilancia.scheduleWithFixedDelay(this::vigilar, INTERVALO_VIGILANCIA_SEG, INTERVALO_VIGILANCIA_SEG, TimeUnit.SECONDS);
+        System.out.println("PlanificadorLotes iniciado: " + maxConcurrentes + " lotes a la vez, hasta " + maxEnCola + " en cola.");
+    }
+
+    public static synchronized PlanificadorLotes getInstance() {
+        if (instance == null) {
+            instance = new PlanificadorLotes();
+        }
+        return instance;
+    }
+
+    /**
+     * Registra el lote y lo pone en la cola. El archivo se borra al terminar (o al cancelarlo).
+     * @throws RejectedExecutionException Si la cola está llena o la aplicación se está deteniendo.
+     */
+    public synchronized void encolar(String loteId, File archivo, int prioridad, boolean ortografiaDiferida) {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("La aplicación se está deteniendo; no se aceptan lotes nuevos.");
+        }
+        if (executor.getQueue().size() + esperandoModelos.size() >= maxEnCola) {
+            throw new RejectedExecutionException("Hay " + maxEnCola + " lotes esperando; inténtalo más tarde.");
+        }
+        TareaLote tarea = new TareaLote(loteId, archivo, prioridad, ortografiaDiferida, secuencia.incrementAndGet());
+        registro.crear(loteId, prioridad);
+        tareas.put(loteId, tarea);
+        ClasificadorMensajes clasificador = ClasificadorMensajes.getInstance();
+        if (clasificador.isReady()) {
+            executor.execute(tarea);
+            return;
+        }
+        esperandoModelos.add(tarea);
+        // Si la carga falla, el lote entra igual y termina con el error de waitForReady.
+        clasificador.iniciar().whenComplete((r, falla) -> liberar(tarea));
+    }
+
+    private synchronized void liberar(TareaLote tarea) {
+        if (!esperandoModelos.remove(tarea)) return; // Cancelado o descartado al detener.
+        if (executor.isShutdown()) {
+            descartar(tarea, "La aplicación se detuvo antes de procesar el lote.");
+        } else {
+            executor.execute(tarea);
+        }
+    }
+
+    private void descartar(TareaLote tarea, String motivo) {
+        tareas.remove(tarea.loteId);
+        registro.cancelar(tarea.loteId, motivo);
+        tarea.borrarArchivo();
+    }
+
+    /**
+     * Posición del lote en la cola (1 = el siguiente en empezar).
+     * @return La posición, o null si el lote no está esperando en esta réplica.
+     */
+    public Integer posicionEnCola(String loteId) {
+        TareaLote tarea = tareas.get(loteId);
+        if (tarea == null || tarea.iniciada) return null;
+        int posicion = enEspera().indexOf(tarea);
+        return posicion >= 0 ? posicion + 1 : null;
+    }
+
+    // Los lotes que esperan, en el orden en que van a empezar.
+    private List<TareaLote> enEspera() {
+        List<TareaLote> enCola = new ArrayList<>();
+        for (Runnable r : executor.getQueue()) {
+            enCola.add((TareaLote) r);
+        }
+        synchronized (this) {
+            enCola.addAll(esperandoModelos);
+        }
+        Collections.sort(enCola);
+        return enCola;
+    }
+
+    private void vigilar() {
+        if (tareas.isEmpty()) return;
+        try {
+            for (String loteId : registro.buscarCancelacionesSolicitadas(new ArrayList<>(tareas.keySet()))) {
+                TareaLote tarea = tareas.get(loteId);
+                if (tarea != null && !tarea.cancelada && cancelar(loteId)) {
+                    System.out.println("PlanificadorLotes: lote " + loteId + " cancelado a pedido de otra réplica.");
+                }
+            }
+            List<TareaLote> enCola = enEspera();
+            for (int i = 0; i < enCola.size(); i++) {
+                registro.marcarPosicionCola(enCola.get(i).loteId, i + 1);
+            }
+        } catch (Exception e) {
+            System.err.println("PlanificadorLotes: error al revisar la cola: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Cancela un lote de esta réplica. Si aún está en cola se retira; si ya se está procesando,
+     * el pipeline se detiene en la siguiente fila y se borran los mensajes ya guardados del lote.
+     * @return false si el lote no está en cola ni en curso en esta réplica.
+     */
+    public boolean cancelar(String loteId) {
+        TareaLote tarea = tareas.get(loteId);
+        if (tarea == null) return false;
+        tarea.cancelada = true;
+        boolean retirado;
+        synchronized (this) {
+            retirado = esperandoModelos.remove(tarea) || executor.remove(tarea);
+        }
+        if (retirado) {
+            descartar(tarea, "Cancelado antes de empezar.");
+            System.out.println("PlanificadorLotes: lote " + loteId + " retirado de la cola.");
+        }
+        return true;
+    }
+
+    public int getLotesEnCurso() {
+        return executor.getActiveCount();
+    }
+
+    public synchronized int getLotesEnCola() {
+        return executor.getQueue().size() + esperandoModelos.size();
+    }
+
+    /**
+     * Deja de aceptar lotes, cancela los que esperan y da a los que están en curso
+     * LOTES_DRENAJE_SEG segundos para terminar antes de cancelarlos también.
+     */
+    public void shutdown() {
+        vigilancia.shutdownNow();
+        List<Runnable> pendientes = new ArrayList<>();
+        synchronized (this) {
+            executor.shutdown();
+            pendientes.addAll(esperandoModelos);
+            esperandoModelos.clear();
+        }
+        executor.getQueue().drainTo(pendientes);
+        for (Runnable r : pendientes) {
+            descartar((TareaLote) r, "La aplicación se detuvo antes de procesar el lote.");
+        }
+        try {
+            if (!executor.awaitTermination(segundosDrenaje, TimeUnit.SECONDS)) {
+                System.err.println("PlanificadorLotes: hay lotes sin terminar tras " + segundosDrenaje + " s; se cancelan.");
+                tareas.values().forEach(t -> t.cancelada = true);
+                executor.awaitTermination(10, TimeUnit.SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        executor.shutdownNow();
+    }
+
+    private class TareaLote implements Runnable, Comparable<TareaLote> {
+        private final String loteId;
+        private final File archivo;
+        private final int prioridad;
+        private final boolean ortografiaDiferida;
+        private final long orden;
+        private volatile boolean cancelada = false;
+        private volatile boolean iniciada = false;
+
+        TareaLote(String loteId, File archivo, int prioridad, boolean ortografiaDiferida, long orden) {
+            this.loteId = loteId;
+            this.archivo = archivo;
+            this.prioridad = prioridad;
+            this.ortografiaDiferida = ortografiaDiferida;
+            this.orden = orden;
+        }
+
+        @Override
+        public void run() {
+            iniciada = true;
+            try {
+                if (cancelada) throw new CancellationException("Lote " + loteId + " cancelado");
+                registro.marcarIniciando(loteId);
+                mensajeService.procesarYGuardarMensajesDesdeExcel(archivo, loteId, () -> cancelada, ortografiaDiferida);
+                registro.completar(loteId);
+                if (ortografiaDiferida) RevisorOrtografiaDiferida.getInstance().programar(loteId);
+            } catch (CancellationException e) {
+                registro.cancelar(loteId, "Cancelado durante el procesamiento.");
+                try {
+                    int borrados = mensajeService.borrarMensajesDelLote(loteId);
+                    System.out.println("PlanificadorLotes: lote " + loteId + " cancelado (" + borrados + " mensajes descartados).");
+                } catch (RuntimeException ex) {
+                    System.err.println("PlanificadorLotes: no se pudieron borrar los mensajes del lote cancelado " + loteId + ": " + ex.getMessage());
+                }
+            } catch (Exception e) {
+                registro.fallar(loteId, e);
+                e.printStackTrace();
+            } finally {
+                tareas.remove(loteId);
+                borrarArchivo();
+            }
+        }
+
+        void borrarArchivo() {
+            try {
+                Files.deleteIfExists(archivo.toPath());
+            } catch (IOException e) {
+                System.err.println("No se pudo borrar el archivo temporal " + archivo + ": " + e.getMessage());
+            }
+        }
+
+        @Override
+        public int compareTo(TareaLote otra) {
+            if (prioridad != otra.prioridad) {
+                return Integer.compare(otra.prioridad, prioridad);
+            }
+            return Long.compare(orden, otra.orden);
+        }
+    }
+}
@@ -0,0 +1,338 @@
+package com.ia.mensajes.agentemensajesia.services;
+
+import com.ia.mensajes.agentemensajesia.dao.TrabajoLoteDAO;
+import com.ia.mensajes.agentemensajesia.model.TrabajoLote;
+import com.ia.mensajes.agentemensajesia.util.ConfiguracionUtil;
+import java.net.InetAddress;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Registro del estado de los lotes en procesamiento.
+ * Los lotes que procesa esta réplica se actualizan en memoria y se guardan en la tabla
+ * trabajo_lote como mucho una vez por segundo (y siempre al cambiar de estado), así las
+ * consultas de progreso no dependen de la réplica que atiende la petición ni se pierden
+ * en un reinicio. Los lotes finalizados se eliminan pasado TRABAJOS_TTL_HORAS (por defecto 24).
+ */
+public class RegistroTrabajos {
+
+    private static RegistroTrabajos instance;
+
+    private static final long INTERVALO_GUARDADO_MS = 1000;
+    // Vigencia de un estado leído de la BD antes de volver a consultarlo.
+    private static final long VIGENCIA_CONSULTA_MS = 1000;
+    // Un lote sin finalizar que lleva este tiempo sin actualizarse se da por abandonado.
+    private static final long LIMITE_SIN_ACTUALIZAR_MS = TimeUnit.MINUTES.toMillis(10);
+    private static final long INTERVALO_LIMPIEZA_MIN = 10;
+    // Los lotes en cola no cambian de estado; se guardan cada minuto para que no parezcan abandonados.
+    private static final long INTERVALO_LATIDO_MIN = 1;
+
+    private final TrabajoLoteDAO trabajoLoteDAO = new TrabajoLoteDAO();
+    private final long ttlMs = TimeUnit.HOURS.toMillis(ConfiguracionUtil.leerEnteroPositivo("TRABAJOS_TTL_HORAS", 24));
+    private final String nodo = obtenerNombreNodo();
+
+    // Lotes que procesa esta réplica: su estado en memoria es el más reciente.
+    private final Map<String, Activo> activos = new ConcurrentHashMap<>();
+    // Estados leídos de la BD (lotes finalizados o de otras réplicas).
+    private final Map<String, Consultado> consultados = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService limpieza;
+
+    private static class Activo {
+        final TrabajoLote trabajo;
+        // Serializa las escrituras en la BD del lote: la copia se toma y se guarda con el
+        // cerrojo tomado, así una copia anterior nunca se guarda después de una posterior.
+        final ReentrantLock escritura = new ReentrantLock();
+        long ultimoGuardado;
+        Activo(TrabajoLote trabajo) { this.trabajo = trabajo; }
+    }
+
+    private static class Consultado {
+        final TrabajoLote trabajo;
+        final long instante;
+        Consultado(TrabajoLote trabajo, long instante) { this.trabajo = trabajo; this.instante = instante; }
+    }
+
+    private RegistroTrabajos() {
+        this.limpieza = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "limpieza-trabajos");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        limpieza.scheduleWithFixedDelay(this::limpiar, 1, INTERVALO_LIMPIEZA_MIN, TimeUnit.MINUTES);
+        limpieza.scheduleWithFixedDelay(this::latido, INTERVALO_LATIDO_MIN, INTERVALO_LATIDO_MIN, TimeUnit.MINUTES);
+    }
+
+    public static synchronized RegistroTrabajos getInstance() {
+        if (instance == null) {
+            instance = new RegistroTrabajos();
+        }
+        return instance;
+    }
+
+    /**
+     * Registra un lote nuevo en estado EN_COLA y lo guarda de inmediato.
+     */
+    public TrabajoLote crear(String loteId, int prioridad) {
+        Date ahora = new Date();
+        TrabajoLote trabajo = new TrabajoLote(loteId, TrabajoLote.EN_COLA);
+        trabajo.setNodo(nodo);
+        trabajo.setPrioridad(prioridad);
+        trabajo.setFechaCreacion(ahora);
+        trabajo.setUltimaActualizacion(ahora);
+        Activo activo = new Activo(trabajo);
+        activos.put(loteId, activo);
+        guardar(activo, true);
+        return trabajo;
+    }
+
+    /**
+     * Aplica un cambio al estado de un lote de esta réplica. Los cambios de contadores se
+     * guardan en la BD como mucho una vez por segundo; los cambios de estado, siempre.
+     */
+    public void actualizar(String loteId, Consumer<TrabajoLote> cambio) {
+        Activo activo = activos.get(loteId);
+        if (activo == null) return;
+        boolean cambioDeEstado;
+        synchronized (activo.trabajo) {
+            String estadoAnterior = activo.trabajo.getStatus();
+            cambio.accept(activo.trabajo);
+            activo.trabajo.setUltimaActualizacion(new Date());
+            cambioDeEstado = !estadoAnterior.equals(activo.trabajo.getStatus());
+        }
+        guardar(activo, cambioDeEstado);
+    }
+
+    public void marcarProcesando(String loteId) {
+        actualizar(loteId, t -> {
+            t.setStatus(TrabajoLote.PROCESANDO);
+            t.setFechaInicio(new Date());
+        });
+    }
+
+    public void marcarIniciando(String loteId) {
+        actualizar(loteId, t -> {
+            t.setStatus(TrabajoLote.INICIANDO);
+            t.setPosicionCola(null);
+        });
+    }
+
+    /**
+     * Guarda la posición en la cola de un lote que sigue esperando, para que la vean las demás réplicas.
+     */
+    public void marcarPosicionCola(String loteId, Integer posicion) {
+        Activo activo = activos.get(loteId);
+        if (activo == null) return;
+        synchronized (activo.trabajo) {
+            if (!TrabajoLote.EN_COLA.equals(activo.trabajo.getStatus()) || Objects.equals(posicion, activo.trabajo.getPosicionCola())) return;
+            activo.trabajo.setPosicionCola(posicion);
+            activo.trabajo.setUltimaActualizacion(new Date());
+        }
+        guardar(activo, true);
+    }
+
+    public void completar(String loteId) {
+        finalizar(loteId, TrabajoLote.COMPLETADO, null);
+    }
+
+    public void fallar(String loteId, Throwable causa) {
+        String mensaje = causa.getMessage() != null ? causa.getMessage() : causa.getClass().getSimpleName();
+        finalizar(loteId, TrabajoLote.FALLIDO, mensaje.length() > 1000 ? mensaje.substring(0, 1000) : mensaje);
+    }
+
+    public void cancelar(String loteId, String motivo) {
+        finalizar(loteId, TrabajoLote.CANCELADO, motivo);
+    }
+
+    /**
+     * Marca si el lote espera la revisión ortográfica diferida. Puede llamarse cuando el lote ya
+     * finalizó: entonces se actualiza directamente la fila de la BD.
+     */
+    public void marcarOrtografiaPendiente(String loteId, boolean pendiente) {
+        if (activos.containsKey(loteId)) {
+            actualizar(loteId, t -> t.setOrtografiaPendiente(pendiente));
+            return;
+        }
+        TrabajoLote trabajo = trabajoLoteDAO.buscarPorId(loteId);
+        if (trabajo == null) return;
+        trabajo.setOrtografiaPendiente(pendiente);
+        trabajo.setUltimaActualizacion(new Date());
+        trabajoLoteDAO.guardar(trabajo);
+        consultados.put(loteId, new Consultado(trabajo, System.currentTimeMillis()));
+    }
+
+    /**
+     * Pide cancelar un lote que tiene otra réplica; esa réplica la recoge en unos segundos.
+     * @return false si el lote no existe o ya finalizó.
+     */
+    public boolean solicitarCancelacion(String loteId) {
+        boolean solicitada = trabajoLoteDAO.solicitarCancelacion(loteId) > 0;
+        consultados.remove(loteId);
+        return solicitada;
+    }
+
+    /**
+     * @return Los lotes indicados cuya cancelación se pidió desde otra réplica.
+     */
+    public List<String> buscarCancelacionesSolicitadas(Collection<String> loteIds) {
+        if (loteIds.isEmpty()) return List.of();
+        return trabajoLoteDAO.buscarCancelacionesSolicitadas(loteIds);
+    }
+
+    /**
+     * @return true si el lote lo procesa (o lo tiene en cola, o aún no guardó su estado final) esta réplica.
+     */
+    public boolean esLocal(String loteId) {
+        return activos.containsKey(loteId);
+    }
+
+    /**
+     * El lote deja de ser de esta réplica solo cuando su estado final está guardado en la BD; si no
+     * se pudo guardar, sigue en memoria y el latido lo reintenta (mientras tanto nadie lo da por abandonado).
+     */
+    private void finalizar(String loteId, String estado, String mensajeError) {
+        Activo activo = activos.get(loteId);
+        if (activo == null) return;
+        synchronized (activo.trabajo) {
+            activo.trabajo.setStatus(estado);
+            if (TrabajoLote.COMPLETADO.equals(estado)) activo.trabajo.setProgress(100);
+            activo.trabajo.setMensajeError(mensajeError);
+            activo.trabajo.setPosicionCola(null);
+            activo.trabajo.setFechaFin(new Date());
+            activo.trabajo.setUltimaActualizacion(new Date());
+        }
+        if (guardar(activo, true)) {
+            retirar(loteId, activo);
+        }
+    }
+
+    private void retirar(String loteId, Activo activo) {
+        if (activos.remove(loteId, activo)) {
+            consultados.put(loteId, new Consultado(activo.trabajo, Long.MAX_VALUE));
+        }
+    }
+
+    /**
+     * Estado de un lote: primero el de memoria si lo procesa esta réplica, si no el de la BD.
+     * @return El estado del lote, o null si no existe (o ya caducó).
+     */
+    public TrabajoLote obtener(String loteId) {
+        Activo activo = activos.get(loteId);
+        if (activo != null) {
+            synchronized (activo.trabajo) {
+                return activo.trabajo.copiar();
+            }
+        }
+        long ahora = System.currentTimeMillis();
+        Consultado consultado = consultados.get(loteId);
+        // Un lote finalizado ya no cambia (salvo la marca de ortografía pendiente), así que no hace falta volver a leerlo.
+        if (consultado != null && ((consultado.trabajo.isFinalizado() && !consultado.trabajo.isOrtografiaPendiente()) || ahora - consultado.instante < VIGENCIA_CONSULTA_MS)) {
+            return consultado.trabajo;
+        }
+        TrabajoLote trabajo = trabajoLoteDAO.buscarPorId(loteId);
+        if (trabajo != null) {
+            consultados.put(loteId, new Consultado(trabajo, ahora));
+        }
+        return trabajo;
+    }
+
+    /**
+     * @return true si el estado en memoria quedó guardado en la BD.
+     */
+    private boolean guardar(Activo activo, boolean forzar) {
+        // Un cambio de contadores no espera a otra escritura en curso: la siguiente lo recoge.
+        if (forzar) {
+            activo.escritura.lock();
+        } else if (!activo.escritura.tryLock()) {
+            return false;
+        }
+        try {
+            TrabajoLote copia;
+            synchronized (activo.trabajo) {
+                long ahora = System.currentTimeMillis();
+                if (!forzar && ahora - activo.ultimoGuardado < INTERVALO_GUARDADO_MS) return false;
+                activo.ultimoGuardado = ahora;
+                copia = activo.trabajo.copiar();
+            }
+            try {
+                trabajoLoteDAO.guardar(copia);
+                return true;
+            } catch (RuntimeException e) {
+                // El estado en memoria sigue siendo válido; se reintenta en la próxima actualización.
+                System.err.println("RegistroTrabajos: no se pudo guardar el estado del lote " + copia.getLoteId() + ": " + e.getMessage());
+                synchronized (activo.trabajo) {
+                    activo.ultimoGuardado = 0;
+                }
+                return false;
+            }
+        } finally {
+            activo.escritura.unlock();
+        }
+    }
+
+    private void latido() {
+        for (Map.Entry<String, Activo> entrada : activos.entrySet()) {
+            Activo activo = entrada.getValue();
+            boolean finalizado;
+            synchronized (activo.trabajo) {
+                if (activos.get(entrada.getKey()) != activo) continue;
+                // Un lote finalizado sigue aquí solo si no se pudo guardar su estado final: se reintenta tal cual.
+                finalizado = activo.trabajo.isFinalizado();
+                if (!finalizado) activo.trabajo.setUltimaActualizacion(new Date());
+            }
+            if (guardar(activo, true) && finalizado) {
+                retirar(entrada.getKey(), activo);
+            }
+        }
+    }
+
+    private void limpiar() {
+        try {
+            long ahora = System.currentTimeMillis();
+            for (TrabajoLote abandonado : trabajoLoteDAO.buscarAbandonados(new Date(ahora - LIMITE_SIN_ACTUALIZAR_MS))) {
+                if (activos.containsKey(abandonado.getLoteId())) continue;
+                abandonado.setStatus(TrabajoLote.FALLIDO);
+                abandonado.setMensajeError("El procesamiento se interrumpió (la réplica " + abandonado.getNodo() + " dejó de responder).");
+                abandonado.setFechaFin(new Date(ahora));
+                abandonado.setUltimaActualizacion(new Date(ahora));
+                trabajoLoteDAO.guardar(abandonado);
+                System.out.println("RegistroTrabajos: lote " + abandonado.getLoteId() + " marcado como FALLIDO por inactividad.");
+            }
+
+            int eliminados = trabajoLoteDAO.eliminarFinalizadosAntesDe(new Date(ahora - ttlMs));
+            if (eliminados > 0) {
+                System.out.println("RegistroTrabajos: " + eliminados + " lotes finalizados eliminados por antigüedad.");
+            }
+            consultados.entrySet().removeIf(e -> {
+                TrabajoLote t = e.getValue().trabajo;
+                if (t.isFinalizado()) {
+                    return t.getFechaFin() == null || ahora - t.getFechaFin().getTime() > ttlMs;
+                }
+                return ahora - e.getValue().instante > VIGENCIA_CONSULTA_MS;
+            });
+        } catch (Exception e) {
+            System.err.println("RegistroTrabajos: error en la limpieza periódica: " + e.getMessage());
+        }
+    }
+
+    public void shutdown() {
+        limpieza.shutdownNow();
+    }
+
+    static String obtenerNombreNodo() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            return "desconocido";
+        }
+    }
+}
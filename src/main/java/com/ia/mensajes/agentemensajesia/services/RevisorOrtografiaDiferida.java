@@ -0,0 +1,169 @@
+package com.ia.mensajes.agentemensajesia.services;
+
+import com.ia.mensajes.agentemensajesia.dao.MensajeDAO;
+import com.ia.mensajes.agentemensajesia.ia.ClasificadorMensajes;
+import com.ia.mensajes.agentemensajesia.ia.ResultadoClasificacion;
+import com.ia.mensajes.agentemensajesia.util.ConfiguracionUtil;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Segunda etapa de los lotes subidos con la ortografía diferida: el lote ya está guardado con el
+ * análisis de riesgo y aquí se completa la clasificación (con la revisión ortográfica) de sus
+ * mensajes, por tramos de ORTOGRAFIA_TRAMO filas (por defecto 200).
+ * Trabaja en un único hilo de baja prioridad y se detiene mientras haya lotes procesándose, para
+ * no quitarles CPU. Es idempotente: si se interrumpe, lo pendiente se retoma al volver a arrancar.
+ */
+public class RevisorOrtografiaDiferida {
+
+    private static RevisorOrtografiaDiferida instance;
+
+    private static final long ESPERA_LOTES_EN_CURSO_MS = 500;
+
+    private final int filasPorTramo = ConfiguracionUtil.leerEnteroPositivo("ORTOGRAFIA_TRAMO", 200);
+
+    private final MensajeDAO mensajeDAO = new MensajeDAO();
+    private final LinkedBlockingQueue<String> pendientes = new LinkedBlockingQueue<>();
+    // Lotes en la cola o en revisión, para no encolar dos veces el mismo.
+    private final Set<String> programados = ConcurrentHashMap.newKeySet();
+    private final Thread hilo;
+    private volatile boolean detenido = false;
+
+    private RevisorOrtografiaDiferida() {
+        this.hilo = new Thread(this::bucle, "revisor-ortografia");
+        hilo.setDaemon(true);
+        hilo.setPriority(Thread.MIN_PRIORITY);
+        hilo.start();
+    }
+
+    public static synchronized RevisorOrtografiaDiferida getInstance() {
+        if (instance == null) {
+            instance = new RevisorOrtografiaDiferida();
+        }
+        return instance;
+    }
+
+    /**
+     * Pone el lote en la cola de revisión (si no lo estaba ya).
+     */
+    public void programar(String loteId) {
+        if (!detenido && programados.add(loteId)) {
+            pendientes.add(loteId);
+        }
+    }
+
+    /**
+     * Vuelve a programar los lotes que quedaron con mensajes pendientes (p. ej. tras un reinicio).
+     */
+    public void retomarPendientes() {
+        try {
+            List<String> lotes = mensajeDAO.buscarLotesConOrtografiaPendiente();
+            lotes.forEach(this::programar);
+            if (!lotes.isEmpty()) {
+                System.out.println("RevisorOrtografiaDiferida: se retoma la revisión de " + lotes.size() + " lotes.");
+            }
+        } catch (RuntimeException e) {
+            System.err.println("RevisorOrtografiaDiferida: no se pudieron buscar lotes pendientes: " + e.getMessage());
+        }
+    }
+
+    public int getLotesPendientes() {
+        return programados.size();
+    }
+
+    private void bucle() {
+        while (!detenido) {
+            String loteId;
+            try {
+                loteId = pendientes.poll(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                break;
+            }
+            if (loteId == null) continue;
+            try {
+                revisarLote(loteId);
+            } catch (InterruptedException e) {
+                break;
+            } catch (Exception e) {
+                // Los mensajes siguen marcados; se reintentará en el próximo arranque.
+                System.err.println("RevisorOrtografiaDiferida: error al revisar el lote " + loteId + ": " + e.getMessage());
+                e.printStackTrace();
+            } finally {
+                programados.remove(loteId);
+            }
+        }
+    }
+
+    private void revisarLote(String loteId) throws InterruptedException {
+        ClasificadorMensajes.getInstance().waitForReady();
+        long inicio = System.currentTimeMillis();
+        long ultimoId = 0;
+        long revisados = 0;
+        long conError = 0;
+        while (!detenido) {
+            esperarLotesEnCurso();
+            List<Object[]> tramo = mensajeDAO.buscarPendientesDeOrtografia(loteId, ultimoId, filasPorTramo);
+            if (tramo.isEmpty()) break;
+
+            // Los mensajes con el mismo resultado se actualizan con una sola sentencia.
+            // Como en la ingesta: la primera fila de cada plantilla se clasifica por todas.
+            Map<String, ResultadoClasificacion> porPlantilla = new HashMap<>();
+            Map<ResultadoClasificacion, List<Long>> idsPorResultado = new LinkedHashMap<>();
+            for (Object[] fila : tramo) {
+                Long id = (Long) fila[0];
+                String texto = (String) fila[1];
+                ultimoId = id;
+                String clave = PipelineIngesta.clavePlantilla(texto);
+                ResultadoClasificacion resultado = porPlantilla.get(clave);
+                if (resultado == null) {
+                    resultado = ClasificadorMensajes.getInstance().clasificar(texto);
+                    // Un error de análisis no se guarda ni se reparte (como en la ingesta): la fila
+                    // conserva su resultado de riesgo y sigue pendiente para el próximo arranque.
+                    if (resultado.getCategoria().startsWith("Error")) {
+                        conError++;
+                        continue;
+                    }
+                    porPlantilla.put(clave, resultado);
+                }
+                idsPorResultado.computeIfAbsent(resultado, r -> new ArrayList<>()).add(id);
+            }
+            for (Map.Entry<ResultadoClasificacion, List<Long>> grupo : idsPorResultado.entrySet()) {
+                mensajeDAO.actualizarClasificacion(grupo.getValue(), grupo.getKey().getCategoria(), grupo.getKey().getObservacion());
+            }
+            revisados += tramo.size();
+        }
+        if (detenido) return;
+        if (conError > 0) {
+            System.err.println("RevisorOrtografiaDiferida: lote " + loteId + ": " + conError
+                    + " mensajes no se pudieron analizar y siguen pendientes de revisión.");
+            return;
+        }
+        RegistroTrabajos.getInstance().marcarOrtografiaPendiente(loteId, false);
+        System.out.println("RevisorOrtografiaDiferida: lote " + loteId + " revisado (" + revisados + " mensajes en "
+                + (System.currentTimeMillis() - inicio) + " ms).");
+    }
+
+    // La revisión cede la CPU a los lotes que se están procesando (el diagnóstico de riesgo va primero).
+    private void esperarLotesEnCurso() throws InterruptedException {
+        while (!detenido && PlanificadorLotes.getInstance().getLotesEnCurso() > 0) {
+            Thread.sleep(ESPERA_LOTES_EN_CURSO_MS);
+        }
+    }
+
+    public void shutdown() {
+        detenido = true;
+        hilo.interrupt();
+        try {
+            hilo.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,6 +1,6 @@
 package com.ia.mensajes.agentemensajesia.services;
 
-import java.text.Normalizer;
+import com.ia.mensajes.agentemensajesia.util.NormalizadorTexto;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -51,7 +51,7 @@ public class SentimentAnalysisService {
         LEXICON.put("fraude", -5);
         LEXICON.put("imposible", -2);
         LEXICON.put("incumplir", -3);
-        LEXICON.put("jamás", -2);
+        LEXICON.put("jamas", -2); // Las claves van normalizadas (sin tildes), como el texto que se compara.
         LEXICON.put("malo", -2);
         LEXICON.put("molesto", -2);
         LEXICON.put("nunca", -2);
@@ -92,7 +92,8 @@ public class SentimentAnalysisService {
             return "Neutral";
         }
 
-        String[] words = normalizar(text).split("\\s+");
+        // Tras normalizar, las palabras quedan separadas por un único espacio.
+        String[] words = NormalizadorTexto.normalizar(text).split(" ");
         int score = 0;
 
         for (String word : words) {
@@ -107,14 +108,4 @@ public class SentimentAnalysisService {
         }
         return "Neutral";
     }
-    
-    // Método de ayuda para limpiar el texto, consistente con el clasificador principal.
-    private String normalizar(String texto) {
-        if (texto == null) return "";
-        texto = texto.toLowerCase();
-        texto = Normalizer.normalize(texto, Normalizer.Form.NFD);
-        texto = texto.replaceAll("[\\p{InCombiningDiacriticalMarks}]", "");
-        texto = texto.replaceAll("[^a-zñ\\s]", " "); 
-        return texto.trim().replaceAll("\\s+", " ");
-    }
 }
\ No newline at end of file
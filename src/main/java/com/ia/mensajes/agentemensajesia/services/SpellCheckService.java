@@ -1,13 +1,24 @@
 package com.ia.mensajes.agentemensajesia.services;
 
+import com.ia.mensajes.agentemensajesia.ia.EjecutorClasificacion;
+import com.ia.mensajes.agentemensajesia.ia.RegistroModelos;
+import com.ia.mensajes.agentemensajesia.util.ConfiguracionUtil;
+import com.ia.mensajes.agentemensajesia.util.DiccionarioCompacto;
+import com.ia.mensajes.agentemensajesia.util.NormalizadorTexto;
+import com.ia.mensajes.agentemensajesia.util.PoolDeInstancias;
 import java.io.IOException;
-import java.text.Normalizer;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import org.languagetool.JLanguageTool;
-import org.languagetool.language.Spanish;
+import org.languagetool.Language;
 import org.languagetool.rules.Rule;
 import org.languagetool.rules.RuleMatch;
 import org.languagetool.rules.spelling.SpellingCheckRule;
@@ -15,44 +26,48 @@ import org.languagetool.rules.spelling.SpellingCheckRule;
 public class SpellCheckService {
 
     private static SpellCheckService instance;
-    private JLanguageTool langTool;
+
+    // --- DICCIONARIO PERSONALIZADO ---
+    // Palabras de negocio que no son errores; se comparan plegadas (sin importar mayúsculas ni tildes).
+    private static final DiccionarioCompacto DICCIONARIO_NEGOCIO = DiccionarioCompacto.cargar("/diccionario/negocio.txt");
+
+    // Palabras: letras (con sus marcas) y dígitos seguidos. Los enlaces y correos no se revisan.
+    private static final Pattern PATRON_PALABRA = Pattern.compile("[\\p{L}\\p{M}\\p{N}]+");
+    private static final Pattern PATRON_ENLACE = Pattern.compile(
+            "(?:https?://|www\\.)\\S+|\\S+@\\S+|\\S+\\.(?:com|co|net|org)\\b\\S*", Pattern.CASE_INSENSITIVE);
+    // Valor del memo para las palabras que LanguageTool dio por buenas.
+    private static final String PALABRA_CORRECTA = "";
+
+    // Memo por palabra delante de LanguageTool: el vocabulario de los mensajes es pequeño y muy
+    // repetido, así que casi todas las palabras ya se revisaron antes. Al superar el máximo sale
+    // la usada hace más tiempo.
+    private final int memoMaximo = ConfiguracionUtil.leerEnteroPositivo("ORTOGRAFIA_MEMO_MAX", 50000);
+    private final Map<String, String> memo = new LinkedHashMap<>(1024, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > memoMaximo;
+        }
+    };
+    private final AtomicLong aciertosMemo = new AtomicLong();
+    private final AtomicLong palabrasRevisadas = new AtomicLong();
+    private final AtomicLong llamadasLangTool = new AtomicLong();
+
+    // El objeto Language se comparte, pero JLanguageTool no es seguro entre hilos:
+    // cada revisión toma del pool su propia instancia ya configurada.
+    private volatile Language spanish;
+    private PoolDeInstancias<JLanguageTool> poolLangTool;
 
     private SpellCheckService() {}
 
     public void init() {
-        if (langTool == null) {
+        if (spanish == null) {
             try {
                 System.out.println("Iniciando SpellCheckService con Diccionario Personalizado Extendido...");
-                this.langTool = new JLanguageTool(new Spanish());
-
-                // --- DICCIONARIO PERSONALIZADO EXTENDIDO ---
-                // Se añaden todas las palabras de negocio. Se convierten a minúsculas
-                // para asegurar que la IA las reconozca sin importar el caso (mayúscula/minúscula).
-                List<String> palabrasDeNegocio = Arrays.asList(
-                    // Palabras originales
-                    "preaprobado", "credito", "whatsapp", "info", "wst",
-                    "frscompania", "inf", "t&c", "sobrecostos", "dto", "dcto", "sured",
-                    "billetecla", "dinerbacano", "morlong", "platanow", "platax",
-                    "transfelicia", "htt", "morloan", "tyc", "fintech", "dctos",
-                    // --- NUEVAS PALABRAS AÑADIDAS ---
-                    "whapp", "efecty", "pse"
-                );
-                
-                // Se busca la regla de ortografía y se le añaden nuestras palabras a la lista de excepciones.
-                for (Rule rule : langTool.getAllRules()) {
-                    if (rule instanceof SpellingCheckRule) {
-                        ((SpellingCheckRule) rule).addIgnoreTokens(palabrasDeNegocio);
-                    }
-                }
-                System.out.println("Diccionario personalizado cargado con " + palabrasDeNegocio.size() + " palabras de negocio.");
-                
-                // OPTIMIZACIÓN DE VELOCIDAD: Desactivamos el resto de reglas.
-                langTool.getAllRules().forEach(rule -> {
-                    if (!rule.isDictionaryBasedSpellingRule()) {
-                        langTool.disableRule(rule.getId());
-                    }
-                });
-                
+                this.spanish = RegistroModelos.getInstance().getIdiomaEspanol();
+                this.poolLangTool = new PoolDeInstancias<>("languagetool", EjecutorClasificacion.getTamanoPoolNLP(), this::crearLangTool);
+                // Se crea la primera instancia al arrancar para validar la configuración.
+                this.poolLangTool.precalentar(1);
+                System.out.println("Diccionario personalizado cargado con " + DICCIONARIO_NEGOCIO.size() + " palabras de negocio.");
                 System.out.println("SpellCheckService (LanguageTool) iniciado correctamente.");
             } catch (Exception e) {
                 throw new RuntimeException("Fallo al inicializar LanguageTool", e);
@@ -60,6 +75,33 @@ public class SpellCheckService {
         }
     }
 
+    private JLanguageTool crearLangTool() {
+        JLanguageTool nuevoLangTool = new JLanguageTool(spanish);
+
+        // Se busca la regla de ortografía y se le añaden nuestras palabras a la lista de excepciones.
+        for (Rule rule : nuevoLangTool.getAllRules()) {
+            if (rule instanceof SpellingCheckRule) {
+                ((SpellingCheckRule) rule).addIgnoreTokens(DICCIONARIO_NEGOCIO.getPalabras());
+            }
+        }
+
+        // OPTIMIZACIÓN DE VELOCIDAD: Desactivamos el resto de reglas.
+        nuevoLangTool.getAllRules().forEach(rule -> {
+            if (!rule.isDictionaryBasedSpellingRule()) {
+                nuevoLangTool.disableRule(rule.getId());
+            }
+        });
+        return nuevoLangTool;
+    }
+
+    public static List<String> getPalabrasDeNegocio() {
+        return DICCIONARIO_NEGOCIO.getPalabras();
+    }
+
+    public PoolDeInstancias<JLanguageTool> getPoolLangTool() {
+        return poolLangTool;
+    }
+
     public static synchronized SpellCheckService getInstance() {
         if (instance == null) {
             instance = new SpellCheckService();
@@ -67,35 +109,113 @@ public class SpellCheckService {
         return instance;
     }
 
+    /**
+     * Palabras mal escritas del texto con la primera sugerencia de LanguageTool, en el orden en que aparecen.
+     * Las palabras de negocio se aceptan sin consultar; las ya revisadas salen del memo; solo las
+     * nuevas se envían a LanguageTool, todas juntas en una única revisión.
+     */
     public Map<String, String> findMisspelledWordsWithSuggestions(String text) {
-        try {
-            List<RuleMatch> matches = langTool.check(text);
-            
-            return matches.stream()
-                    .filter(match -> match.getRule().isDictionaryBasedSpellingRule())
-                    .filter(match -> !match.getSuggestedReplacements().isEmpty())
-                    .filter(match -> {
-                        String originalWord = text.substring(match.getFromPos(), match.getToPos());
-                        if (originalWord.matches(".*\\d.*") || originalWord.length() <= 2) {
-                            return false;
-                        }
-                        String suggestedWord = match.getSuggestedReplacements().get(0);
-                        return !normalizeText(originalWord).equals(normalizeText(suggestedWord));
-                    })
-                    .collect(Collectors.toMap(
-                        match -> text.substring(match.getFromPos(), match.getToPos()),
-                        match -> match.getSuggestedReplacements().get(0),
-                        (existing, replacement) -> existing 
-                    ));
-        } catch (IOException e) {
-            System.err.println("Error al procesar el texto con LanguageTool: " + e.getMessage());
-            return Map.of();
+        if (text == null || text.isBlank()) return Map.of();
+        List<String> palabras = extraerPalabras(text);
+        Map<String, String> veredictos = new HashMap<>();
+        Set<String> nuevas = new LinkedHashSet<>();
+        for (String palabra : palabras) {
+            if (veredictos.containsKey(palabra) || nuevas.contains(palabra)) continue;
+            String memorizado;
+            synchronized (memo) {
+                memorizado = memo.get(palabra);
+            }
+            if (memorizado != null) {
+                aciertosMemo.incrementAndGet();
+                veredictos.put(palabra, memorizado);
+            } else {
+                nuevas.add(palabra);
+            }
+        }
+        if (!nuevas.isEmpty()) {
+            try {
+                veredictos.putAll(revisarConLanguageTool(nuevas));
+            } catch (IOException e) {
+                System.err.println("Error al procesar el texto con LanguageTool: " + e.getMessage());
+                return Map.of();
+            }
         }
+
+        Map<String, String> errores = new LinkedHashMap<>();
+        for (String palabra : palabras) {
+            String sugerencia = veredictos.get(palabra);
+            if (sugerencia != null && !PALABRA_CORRECTA.equals(sugerencia)) {
+                errores.putIfAbsent(palabra, sugerencia);
+            }
+        }
+        return errores;
+    }
+
+    // Palabras que podrían ser errores: se descartan enlaces, palabras con dígitos, de dos letras
+    // o menos y las del diccionario de negocio.
+    private static List<String> extraerPalabras(String text) {
+        String sinEnlaces = PATRON_ENLACE.matcher(text).replaceAll(" ");
+        List<String> palabras = new ArrayList<>();
+        Matcher m = PATRON_PALABRA.matcher(sinEnlaces);
+        while (m.find()) {
+            String palabra = m.group();
+            if (palabra.length() <= 2 || contieneDigito(palabra) || DICCIONARIO_NEGOCIO.contiene(palabra)) continue;
+            palabras.add(palabra);
+        }
+        return palabras;
+    }
+
+    private static boolean contieneDigito(String palabra) {
+        for (int i = 0; i < palabra.length(); i++) {
+            if (Character.isDigit(palabra.charAt(i))) return true;
+        }
+        return false;
+    }
+
+    private Map<String, String> revisarConLanguageTool(Set<String> palabras) throws IOException {
+        // El corrector ortográfico revisa palabra por palabra, así que basta con enviarlas separadas por espacios.
+        String consulta = String.join(" ", palabras);
+        llamadasLangTool.incrementAndGet();
+        palabrasRevisadas.addAndGet(palabras.size());
+        List<RuleMatch> matches = poolLangTool.usar(langTool -> langTool.check(consulta));
+
+        Map<String, String> veredictos = new HashMap<>();
+        for (String palabra : palabras) {
+            veredictos.put(palabra, PALABRA_CORRECTA);
+        }
+        for (RuleMatch match : matches) {
+            if (!match.getRule().isDictionaryBasedSpellingRule() || match.getSuggestedReplacements().isEmpty()) continue;
+            String originalWord = consulta.substring(match.getFromPos(), match.getToPos());
+            String suggestedWord = match.getSuggestedReplacements().get(0);
+            if (veredictos.containsKey(originalWord)
+                    && !NormalizadorTexto.plegar(originalWord).equals(NormalizadorTexto.plegar(suggestedWord))) {
+                veredictos.put(originalWord, suggestedWord);
+            }
+        }
+        synchronized (memo) {
+            memo.putAll(veredictos);
+        }
+        return veredictos;
     }
 
-    private String normalizeText(String texto) {
-        if (texto == null) return "";
-        String textoNormalizado = Normalizer.normalize(texto.toLowerCase(), Normalizer.Form.NFD);
-        return textoNormalizado.replaceAll("[\\p{InCombiningDiacriticalMarks}]", "");
+    public Map<String, Object> getMetricasMemo() {
+        Map<String, Object> metricas = new LinkedHashMap<>();
+        synchronized (memo) {
+            metricas.put("tamano", memo.size());
+        }
+        metricas.put("tamanoMaximo", memoMaximo);
+        metricas.put("aciertos", aciertosMemo.get());
+        metricas.put("palabrasRevisadas", palabrasRevisadas.get());
+        metricas.put("llamadasLanguageTool", llamadasLangTool.get());
+        metricas.put("palabrasDeNegocio", DICCIONARIO_NEGOCIO.size());
+        return metricas;
+    }
+
+    public int vaciarMemo() {
+        synchronized (memo) {
+            int tamano = memo.size();
+            memo.clear();
+            return tamano;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,37 @@
+package com.ia.mensajes.agentemensajesia.util;
+
+/**
+ * Lectura de parámetros de configuración desde variables de entorno,
+ * con valor por defecto cuando la variable no existe o no es válida.
+ */
+public class ConfiguracionUtil {
+
+    private ConfiguracionUtil() {}
+
+    public static String leerTexto(String variable, String porDefecto) {
+        String valor = System.getenv(variable);
+        return (valor == null || valor.trim().isEmpty()) ? porDefecto : valor.trim();
+    }
+
+    public static int leerEnteroPositivo(String variable, int porDefecto) {
+        String valor = System.getenv(variable);
+        if (valor == null || valor.trim().isEmpty()) return porDefecto;
+        try {
+            int numero = Integer.parseInt(valor.trim());
+            return numero > 0 ? numero : porDefecto;
+        } catch (NumberFormatException e) {
+            System.err.println("ADVERTENCIA: " + variable + " no es un número válido ('" + valor + "'). Usando " + porDefecto + ".");
+            return porDefecto;
+        }
+    }
+
+    public static boolean leerBooleano(String variable, boolean porDefecto) {
+        String valor = System.getenv(variable);
+        if (valor == null || valor.trim().isEmpty()) return porDefecto;
+        String v = valor.trim().toLowerCase();
+        if (v.equals("true") || v.equals("1") || v.equals("si") || v.equals("sí")) return true;
+        if (v.equals("false") || v.equals("0") || v.equals("no")) return false;
+        System.err.println("ADVERTENCIA: " + variable + " no es un valor booleano válido ('" + valor + "'). Usando " + porDefecto + ".");
+        return porDefecto;
+    }
+}
@@ -0,0 +1,147 @@
+package com.ia.mensajes.agentemensajesia.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Diccionario de solo lectura guardado como un trie aplanado en arrays: los hijos de cada nodo
+ * quedan contiguos y ordenados, así una búsqueda es una búsqueda binaria por carácter sin crear
+ * objetos. Las palabras se guardan y se buscan plegadas (minúsculas y sin tildes, ver NormalizadorTexto.plegar).
+ * Es inmutable y puede usarse desde varios hilos a la vez.
+ */
+public final class DiccionarioCompacto {
+
+    private static final int RAIZ = 0;
+
+    // Por nodo: la letra que lleva a él, dónde empiezan sus hijos y cuántos son.
+    private final char[] letras;
+    private final int[] primerHijo;
+    private final int[] cantidadHijos;
+    private final BitSet finDePalabra;
+    private final List<String> palabras;
+
+    private DiccionarioCompacto(Collection<String> entradas) {
+        TreeSet<String> ordenadas = new TreeSet<>();
+        for (String entrada : entradas) {
+            String palabra = NormalizadorTexto.plegar(entrada.trim());
+            if (!palabra.isEmpty()) ordenadas.add(palabra);
+        }
+        this.palabras = Collections.unmodifiableList(new ArrayList<>(ordenadas));
+
+        // 1. Trie con nodos temporales.
+        NodoTemporal raiz = new NodoTemporal();
+        int totalNodos = 1;
+        for (String palabra : palabras) {
+            NodoTemporal nodo = raiz;
+            for (int i = 0; i < palabra.length(); i++) {
+                NodoTemporal hijo = nodo.hijos.get(palabra.charAt(i));
+                if (hijo == null) {
+                    hijo = new NodoTemporal();
+                    nodo.hijos.put(palabra.charAt(i), hijo);
+                    totalNodos++;
+                }
+                nodo = hijo;
+            }
+            nodo.finDePalabra = true;
+        }
+
+        // 2. Se aplana por anchura, de modo que los hijos de cada nodo queden seguidos.
+        this.letras = new char[totalNodos];
+        this.primerHijo = new int[totalNodos];
+        this.cantidadHijos = new int[totalNodos];
+        this.finDePalabra = new BitSet(totalNodos);
+        ArrayDeque<NodoTemporal> cola = new ArrayDeque<>();
+        ArrayDeque<Integer> indices = new ArrayDeque<>();
+        cola.add(raiz);
+        indices.add(RAIZ);
+        int siguienteLibre = 1;
+        while (!cola.isEmpty()) {
+            NodoTemporal nodo = cola.remove();
+            int indice = indices.remove();
+            if (nodo.finDePalabra) finDePalabra.set(indice);
+            primerHijo[indice] = siguienteLibre;
+            cantidadHijos[indice] = nodo.hijos.size();
+            for (Map.Entry<Character, NodoTemporal> hijo : nodo.hijos.entrySet()) {
+                letras[siguienteLibre] = hijo.getKey();
+                cola.add(hijo.getValue());
+                indices.add(siguienteLibre);
+                siguienteLibre++;
+            }
+        }
+    }
+
+    private static class NodoTemporal {
+        final TreeMap<Character, NodoTemporal> hijos = new TreeMap<>();
+        boolean finDePalabra;
+    }
+
+    public static DiccionarioCompacto desde(Collection<String> palabras) {
+        return new DiccionarioCompacto(palabras);
+    }
+
+    /**
+     * Carga un diccionario del classpath: una palabra por línea; las vacías y las que empiezan con # se ignoran.
+     */
+    public static DiccionarioCompacto cargar(String recurso) {
+        try (InputStream in = DiccionarioCompacto.class.getResourceAsStream(recurso)) {
+            if (in == null) throw new IOException("No se encontró el recurso " + recurso);
+            List<String> entradas = new ArrayList<>();
+            BufferedReader lector = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            String linea;
+            while ((linea = lector.readLine()) != null) {
+                linea = linea.trim();
+                if (!linea.isEmpty() && !linea.startsWith("#")) entradas.add(linea);
+            }
+            return new DiccionarioCompacto(entradas);
+        } catch (IOException e) {
+            throw new RuntimeException("No se pudo cargar el diccionario " + recurso, e);
+        }
+    }
+
+    /**
+     * @param palabra La palabra tal como aparece en el texto; se compara plegada.
+     */
+    public boolean contiene(String palabra) {
+        String plegada = NormalizadorTexto.plegar(palabra);
+        int nodo = RAIZ;
+        for (int i = 0; i < plegada.length(); i++) {
+            nodo = buscarHijo(nodo, plegada.charAt(i));
+            if (nodo < 0) return false;
+        }
+        return finDePalabra.get(nodo);
+    }
+
+    private int buscarHijo(int nodo, char letra) {
+        int desde = primerHijo[nodo];
+        int hasta = desde + cantidadHijos[nodo] - 1;
+        while (desde <= hasta) {
+            int medio = (desde + hasta) >>> 1;
+            char actual = letras[medio];
+            if (actual < letra) desde = medio + 1;
+            else if (actual > letra) hasta = medio - 1;
+            else return medio;
+        }
+        return -1;
+    }
+
+    /** Las palabras del diccionario, plegadas y en orden alfabético. */
+    public List<String> getPalabras() {
+        return palabras;
+    }
+
+    public int size() {
+        return palabras.size();
+    }
+}
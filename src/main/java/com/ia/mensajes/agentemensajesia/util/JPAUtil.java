@@ -3,8 +3,14 @@ package com.ia.mensajes.agentemensajesia.util;
 import jakarta.persistence.EntityManagerFactory;
 import jakarta.persistence.Persistence;
 import java.net.URI;
+import java.sql.Connection;
+import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.Map;
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.output.MigrateResult;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
 
 public class JPAUtil {
     private static final String PERSISTENCE_UNIT_NAME = "AgenteMensajesIAPU";
@@ -46,9 +52,16 @@ public class JPAUtil {
                            jdbcUrl += "?" + dbUri.getQuery();
                         }
 
+                        // El driver reescribe cada lote JDBC de INSERTs como un único INSERT multi-fila.
+                        if (!jdbcUrl.contains("reWriteBatchedInserts")) {
+                           jdbcUrl += "&reWriteBatchedInserts=true";
+                        }
+
                         System.out.println("URL JDBC construida: " + jdbcUrl);
                         System.out.println("Usuario detectado: " + username);
 
+                        migrarEsquema(jdbcUrl, username, password);
+
                         Map<String, String> properties = new HashMap<>();
                         properties.put("jakarta.persistence.jdbc.url", jdbcUrl);
                         properties.put("jakarta.persistence.jdbc.user", username);
@@ -68,6 +81,51 @@ public class JPAUtil {
         return factory;
     }
 
+    /**
+     * Aplica las migraciones pendientes de db/migration antes de que Hibernate valide el esquema.
+     * Flyway toma un bloqueo en la BD, así que varias réplicas arrancando a la vez no chocan.
+     * Con DB_MIGRACIONES_ACTIVAS=false no se migra (p. ej. si las aplica el pipeline de despliegue).
+     */
+    private static void migrarEsquema(String jdbcUrl, String usuario, String password) {
+        if (!ConfiguracionUtil.leerBooleano("DB_MIGRACIONES_ACTIVAS", true)) {
+            System.out.println("Migraciones de esquema desactivadas (DB_MIGRACIONES_ACTIVAS=false).");
+            return;
+        }
+        MigrateResult resultado = Flyway.configure()
+                .dataSource(jdbcUrl, usuario, password)
+                .locations("classpath:db/migration")
+                // Una BD creada antes por hbm2ddl no tiene historial: se marca como versión 0 y V1 la
+                // adopta (crea solo lo que falte).
+                .baselineOnMigrate(true)
+                .baselineVersion("0")
+                .load()
+                .migrate();
+        System.out.println("Esquema de la BD en la versión " + resultado.targetSchemaVersion
+                + " (" + resultado.migrationsExecuted + " migraciones aplicadas).");
+    }
+
+    /**
+     * Presta una conexión JDBC del pool de Hibernate para operaciones que JPA no cubre
+     * (p. ej. COPY de PostgreSQL). Debe devolverse con liberarConexionJdbc.
+     */
+    public static Connection obtenerConexionJdbc() throws SQLException {
+        return getConnectionProvider().getConnection();
+    }
+
+    public static void liberarConexionJdbc(Connection conexion) {
+        if (conexion == null) return;
+        try {
+            getConnectionProvider().closeConnection(conexion);
+        } catch (SQLException e) {
+            System.err.println("Error al devolver la conexión JDBC al pool: " + e.getMessage());
+        }
+    }
+
+    private static ConnectionProvider getConnectionProvider() {
+        return getEntityManagerFactory().unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(ConnectionProvider.class);
+    }
+
     public static void shutdown() {
         if (factory != null && factory.isOpen()) {
             System.out.println("Cerrando EntityManagerFactory...");
@@ -0,0 +1,130 @@
+package com.ia.mensajes.agentemensajesia.util;
+
+import java.text.Normalizer;
+import java.util.Locale;
+
+/**
+ * Normalización de texto compartida por el clasificador y los servicios de sentimiento y ortografía.
+ * Hace en una sola pasada sobre los caracteres lo que antes eran Normalizer.normalize más tres
+ * replaceAll: pasar a minúsculas, quitar tildes y diéresis (conservando la ñ) y, en normalizar(),
+ * cambiar todo lo que no sea letra por un único espacio.
+ * Las equivalencias de los caracteres latinos (hasta U+024F) se calculan una vez al cargar la clase.
+ */
+public final class NormalizadorTexto {
+
+    private static final int LIMITE_TABLA = 0x250;
+    private static final char SEPARADOR = 0;
+
+    // Carácter en minúsculas y sin marcas diacríticas, o el propio carácter en minúsculas si no se puede plegar a uno solo.
+    private static final char[] PLEGADO = new char[LIMITE_TABLA];
+    // Letra a-z o ñ equivalente, o SEPARADOR.
+    private static final char[] LETRA = new char[LIMITE_TABLA];
+
+    static {
+        for (char c = 0; c < LIMITE_TABLA; c++) {
+            String minuscula = String.valueOf(c).toLowerCase(Locale.ROOT);
+            String sinMarcas = quitarMarcas(minuscula);
+            char plegado = sinMarcas.length() == 1 ? sinMarcas.charAt(0)
+                    : (minuscula.length() == 1 ? minuscula.charAt(0) : c);
+            if (c == 'ñ' || c == 'Ñ') plegado = 'ñ';
+            PLEGADO[c] = plegado;
+            LETRA[c] = ((plegado >= 'a' && plegado <= 'z') || plegado == 'ñ') ? plegado : SEPARADOR;
+        }
+    }
+
+    private NormalizadorTexto() {}
+
+    private static String quitarMarcas(String texto) {
+        String descompuesto = Normalizer.normalize(texto, Normalizer.Form.NFD);
+        StringBuilder sb = new StringBuilder(descompuesto.length());
+        for (int i = 0; i < descompuesto.length(); i++) {
+            if (!esMarcaCombinable(descompuesto.charAt(i))) sb.append(descompuesto.charAt(i));
+        }
+        return sb.toString();
+    }
+
+    // Tildes, diéresis, etc. sueltas (texto ya descompuesto): se descartan sin separar la palabra.
+    private static boolean esMarcaCombinable(char c) {
+        return c >= '\u0300' && c <= '\u036F';
+    }
+
+    private static char letra(char c) {
+        return c < LIMITE_TABLA ? LETRA[c] : SEPARADOR;
+    }
+
+    private static char plegado(char c) {
+        return c < LIMITE_TABLA ? PLEGADO[c] : Character.toLowerCase(c);
+    }
+
+    /**
+     * Minúsculas, sin tildes (conserva la ñ), solo letras y palabras separadas por un espacio,
+     * sin espacios al principio ni al final. Ej.: "¡Crédito  APROBADO, señor!" → "credito aprobado señor".
+     * Si el texto ya está normalizado se devuelve la misma instancia, sin copiarlo.
+     */
+    public static String normalizar(String texto) {
+        if (texto == null) return "";
+        int longitud = texto.length();
+        // Se busca el primer carácter que cambia; hasta ahí el texto ya está normalizado.
+        int i = 0;
+        for (; i < longitud; i++) {
+            char c = texto.charAt(i);
+            if (c == ' ') {
+                if (i == 0 || i == longitud - 1 || texto.charAt(i + 1) == ' ') break;
+            } else if (letra(c) != c) {
+                break;
+            }
+        }
+        if (i == longitud) return texto;
+
+        StringBuilder destino = new StringBuilder(longitud);
+        normalizar(texto, destino);
+        return destino.toString();
+    }
+
+    /**
+     * Igual que normalizar(String), pero escribe en un buffer del llamador (que se vacía antes),
+     * para reutilizarlo entre llamadas sin crear objetos.
+     */
+    public static void normalizar(CharSequence texto, StringBuilder destino) {
+        destino.setLength(0);
+        if (texto == null) return;
+        boolean espacioPendiente = false;
+        for (int i = 0, longitud = texto.length(); i < longitud; i++) {
+            char c = texto.charAt(i);
+            char l = letra(c);
+            if (l != SEPARADOR) {
+                if (espacioPendiente) {
+                    destino.append(' ');
+                    espacioPendiente = false;
+                }
+                destino.append(l);
+            } else if (!esMarcaCombinable(c) && destino.length() > 0) {
+                espacioPendiente = true;
+            }
+        }
+    }
+
+    /**
+     * Solo minúsculas y sin tildes (conserva la ñ y el resto de caracteres).
+     * Ej.: "Información" → "informacion". Si no hay nada que cambiar devuelve la misma instancia.
+     */
+    public static String plegar(String texto) {
+        if (texto == null) return "";
+        int longitud = texto.length();
+        int i = 0;
+        for (; i < longitud; i++) {
+            char c = texto.charAt(i);
+            if (plegado(c) != c || esMarcaCombinable(c)) break;
+        }
+        if (i == longitud) return texto;
+
+        char[] buffer = new char[longitud];
+        texto.getChars(0, i, buffer, 0);
+        int n = i;
+        for (; i < longitud; i++) {
+            char c = texto.charAt(i);
+            if (!esMarcaCombinable(c)) buffer[n++] = plegado(c);
+        }
+        return new String(buffer, 0, n);
+    }
+}
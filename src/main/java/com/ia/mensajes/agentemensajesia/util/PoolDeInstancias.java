@@ -0,0 +1,128 @@
+package com.ia.mensajes.agentemensajesia.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Pool acotado de objetos que no son seguros entre hilos (TokenizerME, JLanguageTool, ...).
+ * Cada instancia se presta a un solo hilo a la vez; las instancias se crean bajo demanda
+ * hasta el tamaño máximo y, a partir de ahí, quien pide una espera a que otra se devuelva.
+ * A diferencia de un ThreadLocal, las instancias no quedan atadas a los hilos del contenedor.
+ * @param <T> El tipo de instancia que se presta.
+ */
+public class PoolDeInstancias<T> {
+
+    /**
+     * Operación que se ejecuta con una instancia prestada.
+     */
+    @FunctionalInterface
+    public interface Operacion<T, R, E extends Exception> {
+        R aplicar(T instancia) throws E;
+    }
+
+    private final String nombre;
+    private final Supplier<T> fabrica;
+    private final int tamanoMaximo;
+    private final LinkedBlockingQueue<T> disponibles = new LinkedBlockingQueue<>();
+
+    private final AtomicInteger creadas = new AtomicInteger();
+    private final AtomicInteger enUso = new AtomicInteger();
+    private final AtomicLong prestamos = new AtomicLong();
+    private final AtomicLong esperas = new AtomicLong();
+    private final AtomicLong nanosEsperando = new AtomicLong();
+
+    public PoolDeInstancias(String nombre, int tamanoMaximo, Supplier<T> fabrica) {
+        if (tamanoMaximo <= 0) throw new IllegalArgumentException("El tamaño máximo del pool debe ser mayor que cero.");
+        this.nombre = nombre;
+        this.tamanoMaximo = tamanoMaximo;
+        this.fabrica = fabrica;
+    }
+
+    /**
+     * Presta una instancia, ejecuta la operación y la devuelve al pool aunque la operación falle.
+     */
+    public <R, E extends Exception> R usar(Operacion<T, R, E> operacion) throws E {
+        T instancia = tomar();
+        try {
+            return operacion.aplicar(instancia);
+        } finally {
+            devolver(instancia);
+        }
+    }
+
+    public T tomar() {
+        T instancia = disponibles.poll();
+        if (instancia == null) {
+            instancia = crearSiHayCupo();
+        }
+        if (instancia == null) {
+            esperas.incrementAndGet();
+            long inicio = System.nanoTime();
+            try {
+                instancia = disponibles.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrumpido esperando una instancia del pool " + nombre, e);
+            } finally {
+                nanosEsperando.addAndGet(System.nanoTime() - inicio);
+            }
+        }
+        enUso.incrementAndGet();
+        prestamos.incrementAndGet();
+        return instancia;
+    }
+
+    public void devolver(T instancia) {
+        if (instancia == null) return;
+        enUso.decrementAndGet();
+        disponibles.offer(instancia);
+    }
+
+    /**
+     * Crea una instancia por adelantado, p. ej. para validar la configuración al arrancar.
+     */
+    public void precalentar(int cantidad) {
+        for (int i = 0; i < cantidad; i++) {
+            T instancia = crearSiHayCupo();
+            if (instancia == null) return;
+            disponibles.offer(instancia);
+        }
+    }
+
+    private T crearSiHayCupo() {
+        while (true) {
+            int actuales = creadas.get();
+            if (actuales >= tamanoMaximo) return null;
+            if (creadas.compareAndSet(actuales, actuales + 1)) {
+                try {
+                    return fabrica.get();
+                } catch (RuntimeException e) {
+                    creadas.decrementAndGet();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    public Map<String, Object> getMetricas() {
+        Map<String, Object> metricas = new LinkedHashMap<>();
+        metricas.put("nombre", nombre);
+        metricas.put("tamanoMaximo", tamanoMaximo);
+        metricas.put("creadas", creadas.get());
+        metricas.put("enUso", enUso.get());
+        metricas.put("disponibles", disponibles.size());
+        metricas.put("prestamos", prestamos.get());
+        metricas.put("esperas", esperas.get());
+        metricas.put("msEsperando", TimeUnit.NANOSECONDS.toMillis(nanosEsperando.get()));
+        return metricas;
+    }
+}
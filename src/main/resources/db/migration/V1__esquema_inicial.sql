@@ -0,0 +1,65 @@
+-- Esquema inicial: el mismo que generaba Hibernate con hbm2ddl.auto=create.
+-- Usa IF NOT EXISTS para adoptar las bases de datos creadas por esa configuración anterior;
+-- las columnas añadidas después (plantillas, ortografía diferida) se agregan si faltan.
+
+CREATE SEQUENCE IF NOT EXISTS mensaje_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS mensaje (
+    id bigint NOT NULL,
+    aplicacion varchar(255),
+    idcliente varchar(255),
+    texto text,
+    nombreasesor varchar(255),
+    fechahoramensaje timestamp(6),
+    clasificacion varchar(255),
+    observacion text,
+    lote varchar(255),
+    fechaprocesamiento timestamp(6),
+    plantilla_id varchar(16),
+    ortografia_pendiente boolean NOT NULL DEFAULT false,
+    feedback_estado varchar(255),
+    feedback_motivo varchar(500),
+    feedback_usuario varchar(255),
+    feedback_fecha timestamp(6),
+    PRIMARY KEY (id)
+);
+
+ALTER TABLE mensaje ADD COLUMN IF NOT EXISTS plantilla_id varchar(16);
+ALTER TABLE mensaje ADD COLUMN IF NOT EXISTS ortografia_pendiente boolean NOT NULL DEFAULT false;
+
+CREATE TABLE IF NOT EXISTS trabajo_lote (
+    lote_id varchar(36) NOT NULL,
+    status varchar(20) NOT NULL,
+    progress integer NOT NULL,
+    prioridad integer NOT NULL,
+    nodo varchar(255),
+    mensaje_error varchar(1000),
+    filas_leidas bigint,
+    filas_clasificadas bigint,
+    filas_persistidas bigint,
+    errores bigint NOT NULL,
+    ortografia_pendiente boolean NOT NULL DEFAULT false,
+    fecha_creacion timestamp(6),
+    fecha_inicio timestamp(6),
+    fecha_fin timestamp(6),
+    ultima_actualizacion timestamp(6),
+    PRIMARY KEY (lote_id)
+);
+
+ALTER TABLE trabajo_lote ADD COLUMN IF NOT EXISTS ortografia_pendiente boolean NOT NULL DEFAULT false;
+
+CREATE TABLE IF NOT EXISTS usuarios (
+    id serial NOT NULL,
+    username varchar(50) NOT NULL UNIQUE,
+    password_hash varchar(255) NOT NULL,
+    nombre_completo varchar(100),
+    rol varchar(20) NOT NULL,
+    activo boolean NOT NULL,
+    fecha_creacion timestamp(6) NOT NULL,
+    PRIMARY KEY (id)
+);
+
+-- Paginación por cursor (fechaProcesamiento, id), sin filtro, por asesor y por lote.
+CREATE INDEX IF NOT EXISTS idx_mensaje_fecha_id ON mensaje (fechaprocesamiento, id);
+CREATE INDEX IF NOT EXISTS idx_mensaje_asesor_fecha_id ON mensaje (nombreasesor, fechaprocesamiento, id);
+CREATE INDEX IF NOT EXISTS idx_mensaje_lote_fecha_id ON mensaje (lote, fechaprocesamiento, id);
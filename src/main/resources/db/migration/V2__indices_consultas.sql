@@ -0,0 +1,16 @@
+-- Índices para las consultas del panel (ver MensajeDAO).
+
+-- Estadísticas por asesor (GROUP BY nombreAsesor con recuento por clasificación) y lista de
+-- asesores: se resuelven solo con el índice.
+CREATE INDEX IF NOT EXISTS idx_mensaje_asesor_clasificacion ON mensaje (nombreasesor, clasificacion);
+
+-- Plantillas de un lote: WHERE lote = ? GROUP BY plantilla_id con recuento de alertas.
+CREATE INDEX IF NOT EXISTS idx_mensaje_lote_plantilla ON mensaje (lote, plantilla_id, clasificacion);
+
+-- Listado de solo alertas por cursor. Parcial: las alertas son una fracción pequeña de la tabla.
+CREATE INDEX IF NOT EXISTS idx_mensaje_alertas_fecha_id ON mensaje (fechaprocesamiento, id)
+    WHERE clasificacion = 'Alerta';
+
+-- Revisión ortográfica diferida: filas pendientes de un lote en orden de id, y lotes con pendientes.
+CREATE INDEX IF NOT EXISTS idx_mensaje_ortografia_pendiente ON mensaje (lote, id)
+    WHERE ortografia_pendiente;
@@ -0,0 +1,87 @@
+-- Recuentos de mensajes agregados por asesor, lote, día del mensaje y clasificación, para que
+-- las estadísticas del panel lean unas pocas filas en lugar de recorrer la tabla mensaje.
+-- Los mantienen los disparadores de abajo en la misma transacción que cada escritura (carga
+-- masiva por COPY o JPA, revisión ortográfica diferida, feedback y borrados), así que siempre
+-- coinciden con la tabla. Las columnas de la clave no admiten NULL: un asesor, lote o
+-- clasificación NULL se guardan como chr(1), distinto de la cadena vacía, y un mensaje sin
+-- fecha con el día '-infinity'.
+
+CREATE TABLE IF NOT EXISTS estadistica_mensaje_agregada (
+    asesor varchar(255) NOT NULL,
+    lote varchar(255) NOT NULL,
+    dia date NOT NULL,
+    clasificacion varchar(255) NOT NULL,
+    total bigint NOT NULL,
+    feedback_correctas bigint NOT NULL,
+    feedback_incorrectas bigint NOT NULL,
+    PRIMARY KEY (asesor, lote, dia, clasificacion)
+);
+
+-- Los grupos que quedan a cero se borran; este índice los encuentra sin recorrer la tabla.
+CREATE INDEX IF NOT EXISTS idx_estadistica_mensaje_vacia ON estadistica_mensaje_agregada (asesor)
+    WHERE total = 0;
+
+-- Cada sentencia suma las filas nuevas y resta las anteriores (tablas de transición) y aplica
+-- solo los grupos que cambiaron: un feedback o una revisión que no cambia de grupo no mueve el
+-- total. Los grupos se actualizan en orden de clave para que dos cargas concurrentes no se
+-- bloqueen mutuamente.
+CREATE OR REPLACE FUNCTION acumular_estadistica_mensaje() RETURNS trigger
+LANGUAGE plpgsql AS $$
+DECLARE
+    cambios text[] := '{}';
+BEGIN
+    IF TG_OP IN ('INSERT', 'UPDATE') THEN
+        cambios := cambios || 'SELECT nombreasesor, lote, fechahoramensaje, clasificacion, feedback_estado, 1 AS signo FROM filas_nuevas'::text;
+    END IF;
+    IF TG_OP IN ('DELETE', 'UPDATE') THEN
+        cambios := cambios || 'SELECT nombreasesor, lote, fechahoramensaje, clasificacion, feedback_estado, -1 AS signo FROM filas_anteriores'::text;
+    END IF;
+    EXECUTE $q$
+        INSERT INTO estadistica_mensaje_agregada AS e
+            SELECT asesor, lote, dia, clasificacion, total, correctas, incorrectas
+            FROM (
+                SELECT COALESCE(nombreasesor, chr(1)) AS asesor, COALESCE(lote, chr(1)) AS lote,
+                       COALESCE(fechahoramensaje::date, '-infinity'::date) AS dia, COALESCE(clasificacion, chr(1)) AS clasificacion,
+                       sum(signo) AS total,
+                       COALESCE(sum(signo) FILTER (WHERE feedback_estado = 'CORRECTA'), 0) AS correctas,
+                       COALESCE(sum(signo) FILTER (WHERE feedback_estado = 'INCORRECTA'), 0) AS incorrectas
+                FROM ($q$ || array_to_string(cambios, ' UNION ALL ') || $q$) c
+                GROUP BY 1, 2, 3, 4
+            ) d
+            WHERE total <> 0 OR correctas <> 0 OR incorrectas <> 0
+            ORDER BY asesor, lote, dia, clasificacion
+        ON CONFLICT (asesor, lote, dia, clasificacion) DO UPDATE
+            SET total = e.total + EXCLUDED.total,
+                feedback_correctas = e.feedback_correctas + EXCLUDED.feedback_correctas,
+                feedback_incorrectas = e.feedback_incorrectas + EXCLUDED.feedback_incorrectas
+    $q$;
+    IF TG_OP <> 'INSERT' THEN
+        DELETE FROM estadistica_mensaje_agregada WHERE total = 0;
+    END IF;
+    RETURN NULL;
+END;
+$$;
+
+DROP TRIGGER IF EXISTS estadistica_mensaje_insercion ON mensaje;
+CREATE TRIGGER estadistica_mensaje_insercion AFTER INSERT ON mensaje
+    REFERENCING NEW TABLE AS filas_nuevas
+    FOR EACH STATEMENT EXECUTE FUNCTION acumular_estadistica_mensaje();
+
+DROP TRIGGER IF EXISTS estadistica_mensaje_actualizacion ON mensaje;
+CREATE TRIGGER estadistica_mensaje_actualizacion AFTER UPDATE ON mensaje
+    REFERENCING OLD TABLE AS filas_anteriores NEW TABLE AS filas_nuevas
+    FOR EACH STATEMENT EXECUTE FUNCTION acumular_estadistica_mensaje();
+
+DROP TRIGGER IF EXISTS estadistica_mensaje_borrado ON mensaje;
+CREATE TRIGGER estadistica_mensaje_borrado AFTER DELETE ON mensaje
+    REFERENCING OLD TABLE AS filas_anteriores
+    FOR EACH STATEMENT EXECUTE FUNCTION acumular_estadistica_mensaje();
+
+-- Los mensajes que ya estaban antes de esta migración.
+INSERT INTO estadistica_mensaje_agregada
+    SELECT COALESCE(nombreasesor, chr(1)), COALESCE(lote, chr(1)), COALESCE(fechahoramensaje::date, '-infinity'::date),
+           COALESCE(clasificacion, chr(1)), count(*),
+           count(*) FILTER (WHERE feedback_estado = 'CORRECTA'), count(*) FILTER (WHERE feedback_estado = 'INCORRECTA')
+    FROM mensaje
+    GROUP BY 1, 2, 3, 4
+ON CONFLICT (asesor, lote, dia, clasificacion) DO NOTHING;
@@ -0,0 +1,26 @@
+-- Exportaciones en segundo plano (ver PlanificadorExportaciones). Se guardan en la BD, como
+-- trabajo_lote, para que cualquier réplica responda por su estado; los filtros permiten que una
+-- réplica que no ve el archivo lo vuelva a generar.
+
+CREATE TABLE IF NOT EXISTS trabajo_exportacion (
+    id varchar(36) NOT NULL,
+    estado varchar(20) NOT NULL,
+    formato varchar(20) NOT NULL,
+    clave varchar(32) NOT NULL,
+    lote_id varchar(255),
+    asesor varchar(255),
+    desde timestamp(6),
+    hasta timestamp(6),
+    filas bigint,
+    bytes bigint NOT NULL,
+    reutilizado boolean NOT NULL,
+    mensaje_error varchar(1000),
+    nodo varchar(255),
+    fecha_creacion timestamp(6),
+    fecha_fin timestamp(6),
+    ultima_actualizacion timestamp(6),
+    PRIMARY KEY (id)
+);
+
+-- Una exportación igual en curso en otra réplica: WHERE clave = ? AND estado NOT IN (...).
+CREATE INDEX IF NOT EXISTS idx_trabajo_exportacion_clave ON trabajo_exportacion (clave, fecha_creacion);
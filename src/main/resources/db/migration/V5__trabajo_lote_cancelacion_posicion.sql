@@ -0,0 +1,7 @@
+-- Cancelación y posición en cola visibles desde cualquier réplica (ver PlanificadorLotes).
+
+-- La réplica que atiende el DELETE deja la solicitud aquí; la que tiene el lote la recoge y lo cancela.
+ALTER TABLE trabajo_lote ADD COLUMN IF NOT EXISTS cancelacion_solicitada boolean NOT NULL DEFAULT false;
+
+-- Posición en la cola de la réplica que tiene el lote, mientras espera.
+ALTER TABLE trabajo_lote ADD COLUMN IF NOT EXISTS posicion_cola integer;
@@ -1,5 +1,9 @@
 let currentLoteId = null;
 let currentPage = 0;
+// Cursor con el que se pidió cada página ya visitada (null = primera): permite volver atrás.
+let pageCursors = [null];
+let nextCursor = null;
+let totalMensajes = null;
 let currentAsesorFilter = '';
 
 document.addEventListener('DOMContentLoaded', () => {
@@ -223,10 +227,20 @@ function handleAsesorFilterChange(event) {
 }
 
 async function cargarMensajes(page = 0) {
+    if (page === 0) {
+        pageCursors = [null];
+    }
     currentPage = page;
     const messageList = document.getElementById('messageList');
     messageList.innerHTML = `<tr><td colspan="8">Cargando página ${page + 1}...</td></tr>`;
-    const params = new URLSearchParams({page, size: 10});
+    const params = new URLSearchParams({size: 10});
+    if (pageCursors[page]) {
+        params.append('cursor', pageCursors[page]);
+    }
+    // El total solo se pide en la primera página; al avanzar se reutiliza.
+    if (page === 0) {
+        params.append('conTotal', 'true');
+    }
     let url;
     if (currentLoteId) {
         url = `/api/mensajes/lote/${currentLoteId}?${params.toString()}`;
@@ -239,6 +253,10 @@ async function cargarMensajes(page = 0) {
     try {
         const paginatedData = await fetchAPI(url);
         const mensajes = paginatedData.content;
+        nextCursor = paginatedData.siguienteCursor;
+        if (paginatedData.totalElementos !== null && paginatedData.totalElementos !== undefined) {
+            totalMensajes = paginatedData.totalElementos;
+        }
         messageList.innerHTML = '';
         if (!mensajes || mensajes.length === 0) {
             let emptyMessage = 'No hay mensajes. Sube un archivo.';
@@ -247,7 +265,7 @@ async function cargarMensajes(page = 0) {
             if (currentAsesorFilter)
                 emptyMessage = `No se encontraron mensajes para el asesor: ${currentAsesorFilter}.`;
             messageList.innerHTML = `<tr><td colspan="8">${emptyMessage}</td></tr>`;
-            renderizarPaginacion(0, 0);
+            renderizarPaginacion();
             return;
         }
         mensajes.forEach(m => {
@@ -264,7 +282,10 @@ async function cargarMensajes(page = 0) {
             }
             messageList.innerHTML += `<tr class="${m.clasificacion === 'Alerta' ? 'row-alert' : ''}"><td>${m.id}</td><td>${m.nombreAsesor || 'N/A'}</td><td>${m.aplicacion || 'N/A'}</td><td>${m.texto}</td><td>${m.clasificacion}</td><td><pre>${m.observacion || 'N/A'}</pre></td><td>${fechaMensaje}</td><td>${feedbackHtml}</td></tr>`;
         });
-        renderizarPaginacion(paginatedData.totalPages, paginatedData.currentPage);
+        if (nextCursor) {
+            pageCursors[currentPage + 1] = nextCursor;
+        }
+        renderizarPaginacion();
     } catch (error) {
         messageList.innerHTML = `<tr><td colspan="8" class="error-message">Error al cargar mensajes: ${error.message}</td></tr>`;
 }
@@ -306,10 +327,10 @@ async function handleFeedbackClick(event) {
     }
 }
 
-function renderizarPaginacion(totalPages, currentPage) {
+function renderizarPaginacion() {
     const container = document.getElementById('pagination-container');
     container.innerHTML = '';
-    if (totalPages <= 1)
+    if (currentPage === 0 && !nextCursor)
         return;
     const prevButton = document.createElement('button');
     prevButton.innerHTML = '&laquo;';
@@ -319,13 +340,14 @@ function renderizarPaginacion(totalPages, currentPage) {
     container.appendChild(prevButton);
     const info = document.createElement('span');
     info.className = 'info-text';
-    info.textContent = `Página ${currentPage + 1} de ${totalPages}`;
+    const totalPages = totalMensajes !== null ? Math.max(1, Math.ceil(totalMensajes / 10)) : null;
+    info.textContent = totalPages !== null ? `Página ${currentPage + 1} de ${totalPages}` : `Página ${currentPage + 1}`;
     container.appendChild(info);
     const nextButton = document.createElement('button');
     nextButton.innerHTML = '&raquo;';
     nextButton.title = 'Página Siguiente';
     nextButton.dataset.page = currentPage + 1;
-    nextButton.disabled = currentPage >= totalPages - 1;
+    nextButton.disabled = !nextCursor;
     container.appendChild(nextButton);
 }
 
@@ -344,7 +366,23 @@ async function exportarMensajes() {
     button.textContent = 'Generando...';
     button.disabled = true;
     try {
-        const blob = await fetchAPI('/api/mensajes/export');
+        // Se exporta lo que se está viendo: el último lote o el asesor filtrado.
+        const params = new URLSearchParams();
+        if (currentLoteId) {
+            params.append('lote', currentLoteId);
+        } else if (currentAsesorFilter) {
+            params.append('asesor', currentAsesorFilter);
+        }
+        // La exportación corre en segundo plano; se consulta su estado hasta que el archivo está listo.
+        let trabajo = await fetchAPI(`/api/mensajes/export/trabajos?${params.toString()}`, {method: 'POST'});
+        while (trabajo.estado === 'EN_COLA' || trabajo.estado === 'PROCESANDO') {
+            await new Promise(resolve => setTimeout(resolve, 2000));
+            trabajo = await fetchAPI(`/api/mensajes/export/trabajos/${trabajo.id}`);
+        }
+        if (trabajo.estado !== 'COMPLETADO') {
+            throw new Error(trabajo.mensajeError || 'La exportación falló.');
+        }
+        const blob = await fetchAPI(`/api/mensajes/export/trabajos/${trabajo.id}/archivo`);
         const url = window.URL.createObjectURL(blob);
         const a = document.createElement('a');
         a.style.display = 'none';
@@ -403,13 +441,16 @@ async function handleFileUpload(event) {
     }
     const formData = new FormData();
     formData.append('file', fileInput.files[0]);
+    if (document.getElementById('ortografiaDiferida').checked) {
+        formData.append('ortografia', 'diferida');
+    }
     uploadMessage.textContent = '';
     progressContainer.style.display = 'block';
     submitButton.disabled = true;
     try {
         const result = await fetchAPI('/api/mensajes/upload', {method: 'POST', body: formData});
         uploadMessage.textContent = `${result.mensaje} Verificando estado...`;
-        pollLoteStatus(result.loteId);
+        seguirLote(result.loteId);
     } catch (error) {
         uploadMessage.textContent = `Error: ${error.message}`;
         progressContainer.style.display = 'none';
@@ -419,39 +460,41 @@ async function handleFileUpload(event) {
     }
 }
 
+function seguirLote(loteId) {
+    if (typeof EventSource === 'undefined') {
+        pollLoteStatus(loteId);
+        return;
+    }
+    // EventSource no admite cabeceras, así que el token va en la URL (solo este endpoint lo acepta).
+    const token = encodeURIComponent(localStorage.getItem('jwtToken'));
+    const source = new EventSource(`/api/mensajes/lotes/${loteId}/eventos?token=${token}`);
+    let terminado = false;
+    const onEvento = (event) => {
+        const estado = JSON.parse(event.data);
+        if (mostrarEstadoLote(loteId, estado)) {
+            terminado = true;
+            source.close();
+        }
+    };
+    source.addEventListener('progreso', onEvento);
+    source.addEventListener('fase', onEvento);
+    source.addEventListener('fin', onEvento);
+    source.onerror = () => {
+        // EventSource reintenta solo; si el navegador se rinde, se sigue consultando el estado.
+        if (!terminado && source.readyState === EventSource.CLOSED) {
+            pollLoteStatus(loteId);
+        }
+    };
+}
+
 function pollLoteStatus(loteId) {
     const uploadMessage = document.getElementById('uploadMessage');
-    const progressBar = document.getElementById('progress-bar');
-    const progressText = document.getElementById('progress-text');
     const progressContainer = document.getElementById('progress-container');
     const intervalId = setInterval(async () => {
         try {
             const statusResult = await fetchAPI(`/api/mensajes/lotes/${loteId}/status`);
-            progressBar.style.width = `${statusResult.progress}%`;
-            progressText.textContent = `${statusResult.progress}%`;
-            if (statusResult.status === 'COMPLETADO') {
-                clearInterval(intervalId);
-                uploadMessage.textContent = '¡Procesamiento completado! Actualizando tablas...';
-                progressBar.style.backgroundColor = 'var(--success-color)';
-                setTimeout(() => {
-                    localStorage.setItem('currentLoteId', loteId);
-                    currentAsesorFilter = '';
-                    document.getElementById('asesor-filter').value = '';
-                    showTargetView('mensajes');
-                    cargarMensajes(0);
-                    cargarEstadisticas();
-                    cargarFiltroAsesores();
-                    progressContainer.style.display = 'none';
-                    progressBar.style.width = '0%';
-                    progressBar.style.backgroundColor = 'var(--text-light)';
-                    uploadMessage.textContent = 'Tablas actualizadas.';
-                }, 2000);
-            } else if (statusResult.status === 'FALLIDO') {
+            if (mostrarEstadoLote(loteId, statusResult)) {
                 clearInterval(intervalId);
-                uploadMessage.textContent = 'Error: El procesamiento del archivo en el servidor ha fallado.';
-                progressBar.style.backgroundColor = 'var(--error-color)';
-            } else {
-                uploadMessage.textContent = `Procesando...`;
             }
         } catch (error) {
             clearInterval(intervalId);
@@ -459,4 +502,55 @@ function pollLoteStatus(loteId) {
             progressContainer.style.display = 'none';
         }
     }, 2000);
+}
+
+// Pinta el estado del lote; devuelve true cuando el lote ya terminó (bien, mal o cancelado).
+function mostrarEstadoLote(loteId, statusResult) {
+    const uploadMessage = document.getElementById('uploadMessage');
+    const progressBar = document.getElementById('progress-bar');
+    const progressText = document.getElementById('progress-text');
+    const progressContainer = document.getElementById('progress-container');
+    progressBar.style.width = `${statusResult.progress}%`;
+    progressText.textContent = `${statusResult.progress}%`;
+    if (statusResult.status === 'COMPLETADO') {
+        uploadMessage.textContent = '¡Procesamiento completado! Actualizando tablas...';
+        progressBar.style.backgroundColor = 'var(--success-color)';
+        setTimeout(() => {
+            localStorage.setItem('currentLoteId', loteId);
+            currentAsesorFilter = '';
+            document.getElementById('asesor-filter').value = '';
+            showTargetView('mensajes');
+            cargarMensajes(0);
+            cargarEstadisticas();
+            cargarFiltroAsesores();
+            progressContainer.style.display = 'none';
+            progressBar.style.width = '0%';
+            progressBar.style.backgroundColor = 'var(--text-light)';
+            uploadMessage.textContent = statusResult.ortografiaPendiente
+                ? 'Tablas actualizadas con el diagnóstico de riesgo. La revisión ortográfica continúa en segundo plano.'
+                : 'Tablas actualizadas.';
+        }, 2000);
+        return true;
+    } else if (statusResult.status === 'FALLIDO') {
+        uploadMessage.textContent = 'Error: El procesamiento del archivo en el servidor ha fallado.';
+        progressBar.style.backgroundColor = 'var(--error-color)';
+        return true;
+    } else if (statusResult.status === 'CANCELADO') {
+        uploadMessage.textContent = 'El procesamiento del archivo fue cancelado.';
+        progressContainer.style.display = 'none';
+        return true;
+    } else if (statusResult.status === 'NO_ENCONTRADO') {
+        uploadMessage.textContent = 'Error: El servidor no encuentra el lote.';
+        progressContainer.style.display = 'none';
+        return true;
+    } else if (statusResult.status === 'EN_COLA') {
+        uploadMessage.textContent = statusResult.posicionCola
+            ? `En cola (posición ${statusResult.posicionCola})...`
+            : 'En cola...';
+    } else if (statusResult.filasPorSegundo) {
+        uploadMessage.textContent = `Procesando... ${statusResult.filasPersistidas} mensajes guardados (${statusResult.filasPorSegundo} filas/s)`;
+    } else {
+        uploadMessage.textContent = `Procesando...`;
+    }
+    return false;
 }
\ No newline at end of file